@@ -0,0 +1,101 @@
+package my.project.othello;
+
+/**
+ *
+ * Fixed positions the benchmarks are run on, one from each stage of a game.
+ * The midgame and endgame positions come from random games, so they have the
+ * uneven shapes of real play rather than a textbook line.
+ *
+ * @author Aleksandr Popov
+ */
+public enum BenchmarkPosition {
+
+	// starting position, 60 empty squares and 4 moves
+	OPENING("--------" +
+			"--------" +
+			"--------" +
+			"---OX---" +
+			"---XO---" +
+			"--------" +
+			"--------" +
+			"--------"),
+
+	// 37 empty squares and 12 moves
+	MIDGAME("--------" +
+			"-----X--" +
+			"X---X---" +
+			"XO-XOOO-" +
+			"XOOXX---" +
+			"X-XOO-O-" +
+			"XXXXOO--" +
+			"X---O---"),
+
+	// 14 empty squares and 7 moves
+	ENDGAME("----XXX-" +
+			"XXXXXXX-" +
+			"OOOOOOXX" +
+			"OXOOOXO-" +
+			"OXXOXO-O" +
+			"-XOXOOOX" +
+			"-OOXXO--" +
+			"OOOXXX--");
+
+	private final long xBits;
+	private final long oBits;
+
+	/**
+	 *
+	 * Constructor for a BenchmarkPosition with X to move.
+	 *
+	 * @param squares
+	 *            the 64 squares row by row, 'X', 'O' or '-' for an empty
+	 *            square.
+	 */
+	BenchmarkPosition(String squares) {
+
+		long x = 0;
+		long o = 0;
+
+		for (int sq = 0; sq < 64; sq++) {
+
+			if (squares.charAt(sq) == 'X') {
+
+				x |= 1L << sq;
+			}
+
+			else if (squares.charAt(sq) == 'O') {
+
+				o |= 1L << sq;
+			}
+		}
+
+		xBits = x;
+		oBits = o;
+	}
+
+	/**
+	 *
+	 * Returns the bitboard of the squares occupied by a piece type.
+	 *
+	 * @param piece
+	 *            piece type whose bitboard is returned.
+	 *
+	 * @return bitboard of the squares occupied by the piece.
+	 */
+	public long getBits(char piece) {
+
+		return piece == 'X' ? xBits : oBits;
+	}
+
+	/**
+	 *
+	 * Returns the piece type that is next to move, which is X in every
+	 * position.
+	 *
+	 * @return piece type that is next to move.
+	 */
+	public char getNextMovePiece() {
+
+		return 'X';
+	}
+}
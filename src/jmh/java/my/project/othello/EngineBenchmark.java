@@ -0,0 +1,156 @@
+package my.project.othello;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * Benchmarks of the pieces a search is built from: finding the moves of a
+ * position, making a move, making and taking back a move in place, expanding
+ * a node and creating its children and playing a random game to the end.
+ * Run with the GC profiler to see how much each operation allocates.
+ *
+ * @author Aleksandr Popov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+	@Param({ "OPENING", "MIDGAME", "ENDGAME" })
+	private BenchmarkPosition position;
+
+	private long xBits;
+	private long oBits;
+	private char piece;
+	private Player player;
+	private int move;
+	private long flips;
+	private Position scratch;
+
+	/**
+	 *
+	 * Sets up the position and picks the first legal move as the move to make.
+	 */
+	@Setup
+	public void setUp() {
+
+		xBits = position.getBits('X');
+		oBits = position.getBits('O');
+		piece = position.getNextMovePiece();
+		player = new HumanPlayer(piece);
+		scratch = new Position(xBits, oBits, piece);
+
+		player.analyzeMoves(new Board(xBits, oBits));
+		move = Long.numberOfTrailingZeros(player.getPossibleMoves());
+		flips = player.getFlips(move);
+	}
+
+	/**
+	 *
+	 * Finds every move of the position and the pieces each one flips.
+	 *
+	 * @return whether the player has a move, so the work is not optimized away.
+	 */
+	@Benchmark
+	public boolean analyzeMoves() {
+
+		player.clearMoves();
+		player.analyzeMoves(piece == 'X' ? xBits : oBits, piece == 'X' ? oBits : xBits);
+
+		return player.hasMoves();
+	}
+
+	/**
+	 *
+	 * Makes a move on a copy of the position.
+	 *
+	 * @return board after the move.
+	 */
+	@Benchmark
+	public Board updateBoard() {
+
+		Board b = new Board(xBits, oBits);
+		b.updateBoard(piece, move, flips);
+
+		return b;
+	}
+
+	/**
+	 *
+	 * Makes a move on a reusable position and takes it back.
+	 *
+	 * @return pieces the move flipped.
+	 */
+	@Benchmark
+	public long makeUndoMove() {
+
+		long flipped = scratch.makeMove(move);
+		scratch.undoMove();
+
+		return flipped;
+	}
+
+	/**
+	 *
+	 * Expands a new node for the position, which finds its moves without
+	 * creating any children.
+	 *
+	 * @return expanded node.
+	 */
+	@Benchmark
+	public Node expand() {
+
+		Node node = new Node(xBits, oBits, piece, Move.NONE);
+		node.expand();
+
+		return node;
+	}
+
+	/**
+	 *
+	 * Expands a new node for the position and creates every child, without a
+	 * transposition table.
+	 *
+	 * @return node with all of its children.
+	 */
+	@Benchmark
+	public Node addChildren() {
+
+		Node node = new Node(xBits, oBits, piece, Move.NONE);
+		node.expand();
+
+		for (int i = 0; i < node.getChildCount(); i++) {
+
+			node.addChild(i, null);
+		}
+
+		return node;
+	}
+
+	/**
+	 *
+	 * Plays one random game from the position to the end.
+	 *
+	 * @return winner of the game.
+	 */
+	@Benchmark
+	public char playout() {
+
+		return Playout.play(xBits, oBits, piece);
+	}
+}
@@ -0,0 +1,82 @@
+package my.project.othello;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * Benchmark of a whole MonteCarloPlayer search. Every search runs a fixed
+ * number of simulations instead of searching until time runs out, so the
+ * score is the number of moves the player can decide per second and changes
+ * whenever the search itself gets faster or slower.
+ *
+ * @author Aleksandr Popov
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+	@Param({ "OPENING", "MIDGAME", "ENDGAME" })
+	private BenchmarkPosition position;
+
+	@Param({ "1000" })
+	private int simulations;
+
+	private Board board;
+	private SearchConfig config;
+	private MonteCarloPlayer player;
+
+	/**
+	 *
+	 * Sets up the position.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+
+		board = new Board(position.getBits('X'), position.getBits('O'));
+		// the endgame solver would take over the ENDGAME position, which is
+		// left to the simulations so that the scores stay comparable
+		config = new SearchConfig().setSimulationLimit(simulations).setTableSize(1 << 16).setEndgameEmpties(0);
+	}
+
+	/**
+	 *
+	 * Creates a new player for every search, so that no search reuses the tree
+	 * of the one before it.
+	 */
+	@Setup(Level.Invocation)
+	public void newPlayer() {
+
+		player = new MonteCarloPlayer(position.getNextMovePiece(), 1, false, config);
+		player.setQuiet(true);
+		player.analyzeMoves(board);
+	}
+
+	/**
+	 *
+	 * Searches the position and decides on a move.
+	 *
+	 * @return move the player decided on.
+	 */
+	@Benchmark
+	public int search() {
+
+		return player.getInput();
+	}
+}
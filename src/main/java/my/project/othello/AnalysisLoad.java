@@ -0,0 +1,420 @@
+package my.project.othello;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *
+ * Sends requests to an AnalysisServer from several clients at once and
+ * reports the throughput and the latencies of the answers. Every client asks
+ * for positions reached by random moves from the starting position, and
+ * follows some of them with a request for the position two random moves
+ * later, the way a program analysing a game would, so that the cache of
+ * search trees is put to use. Unless the address of a running server is
+ * given, a server is started in this program on a free port.
+ * <p>
+ * Usage: AnalysisLoad [-url address] [-clients n] [-requests n] [-ms n]
+ * [-followups share] [-warmup n] [-seed n] [-workers n] [-config spec], where
+ * requests is the number of requests of all clients together, ms the budget
+ * of each request, followups the share of requests that follow on from the
+ * client's previous position and warmup the number of requests of each
+ * client that are left out of the latencies. Workers and spec set up the
+ * server started by this program.
+ *
+ * @author Aleksandr Popov
+ */
+public final class AnalysisLoad {
+
+	// plies played from the starting position for a new position
+	private static final int MIN_PLIES = 4;
+	private static final int MAX_PLIES = 40;
+
+	// plies between a position and the one that follows on from it
+	private static final int FOLLOWUP_PLIES = 2;
+
+	private AnalysisLoad() {
+
+	}
+
+	/**
+	 *
+	 * Client that sends its requests one after the other and records how
+	 * they were answered.
+	 */
+	private static final class Client implements Callable<Void> {
+
+		private final String address;
+		private final int requests;
+		private final long millis;
+		private final double followups;
+		private final int warmup;
+		private final RandomSource random;
+		private final Position position = new Position();
+
+		private final long[] latencies;
+		private int recorded = 0;
+		private int rejected = 0;
+		private int failed = 0;
+		private int reused = 0;
+
+		private Client(String address, int requests, long millis, double followups, int warmup,
+				RandomSource random) {
+
+			this.address = address;
+			this.requests = requests;
+			this.millis = millis;
+			this.followups = followups;
+			this.warmup = warmup;
+			this.random = random;
+			latencies = new long[Math.max(0, requests - warmup)];
+		}
+
+		public Void call() {
+
+			for (int i = 0; i < requests; i++) {
+
+				if (i == 0 || random.nextDouble() >= followups || !play(FOLLOWUP_PLIES)) {
+
+					newPosition();
+				}
+
+				String url = address + "/analyze?position=" + AnalysisServer.toPosition(position.getBits('X'),
+						position.getBits('O'), position.getNextMovePiece()) + "&ms=" + millis;
+				long start = System.nanoTime();
+				int status;
+				String body;
+
+				try {
+					HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+					status = connection.getResponseCode();
+					body = read(status == 200 ? connection.getInputStream() : connection.getErrorStream());
+				} catch (IOException ioe) {
+
+					status = -1;
+					body = "";
+				}
+
+				long nanos = System.nanoTime() - start;
+
+				if (i < warmup) {
+
+					continue;
+				}
+
+				latencies[recorded++] = nanos;
+
+				if (status == 503) {
+
+					rejected++;
+				}
+
+				else if (status != 200) {
+
+					failed++;
+				}
+
+				else if (!body.contains("\"reused\":0,")) {
+
+					reused++;
+				}
+			}
+
+			return null;
+		}
+
+		/**
+		 *
+		 * Sets the position to one reached by random moves from the starting
+		 * position, that is not the end of the game.
+		 */
+		private void newPosition() {
+
+			do {
+				position.set(BitBoard.START_X, BitBoard.START_O, 'X');
+			} while (!play(MIN_PLIES + random.nextInt(MAX_PLIES - MIN_PLIES + 1)));
+		}
+
+		/**
+		 *
+		 * Makes random moves, passing when the player to move has none.
+		 *
+		 * @return false if the game ended first.
+		 */
+		private boolean play(int plies) {
+
+			for (int i = 0; i < plies; i++) {
+
+				long moves = position.legalMoves();
+
+				if (moves == 0) {
+
+					if (BitBoard.legalMoves(position.getOpp(), position.getOwn()) == 0) {
+
+						return false;
+					}
+
+					position.makeMove(Move.PASS);
+					continue;
+				}
+
+				for (int skip = random.nextInt(Long.bitCount(moves)); skip > 0; skip--) {
+
+					moves &= moves - 1;
+				}
+
+				position.makeMove(Long.numberOfTrailingZeros(moves));
+			}
+
+			return position.legalMoves() != 0;
+		}
+
+		private static String read(InputStream in) throws IOException {
+
+			if (in == null) {
+
+				return "";
+			}
+
+			StringBuilder sb = new StringBuilder();
+			byte[] buffer = new byte[1024];
+
+			try {
+				for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+
+					sb.append(new String(buffer, 0, n, "UTF-8"));
+				}
+			} finally {
+
+				in.close();
+			}
+
+			return sb.toString();
+		}
+	}
+
+	/**
+	 *
+	 * Returns a percentile of sorted latencies.
+	 */
+	private static double percentile(long[] sorted, double p) {
+
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+
+	/**
+	 *
+	 * Runs the clients with the settings given on the command line and prints
+	 * what they measured.
+	 *
+	 * @param args
+	 *            pairs of option names and values.
+	 */
+	public static void main(String[] args) {
+
+		String address = null;
+		int clients = Runtime.getRuntime().availableProcessors();
+		int requests = 1000;
+		long millis = 50;
+		double followups = 0.5;
+		int warmup = 10;
+		long seed = 1;
+		int workers = Runtime.getRuntime().availableProcessors();
+		SearchConfig config = new SearchConfig();
+
+		try {
+			if (args.length % 2 != 0) {
+
+				throw new IllegalArgumentException("Missing value for " + args[args.length - 1]);
+			}
+
+			for (int i = 0; i < args.length; i += 2) {
+
+				String option = args[i];
+				String value = args[i + 1];
+
+				if (option.equals("-url")) {
+
+					address = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+				}
+
+				else if (option.equals("-clients")) {
+
+					clients = Integer.parseInt(value);
+				}
+
+				else if (option.equals("-requests")) {
+
+					requests = Integer.parseInt(value);
+				}
+
+				else if (option.equals("-ms")) {
+
+					millis = Long.parseLong(value);
+				}
+
+				else if (option.equals("-followups")) {
+
+					followups = Double.parseDouble(value);
+				}
+
+				else if (option.equals("-warmup")) {
+
+					warmup = Integer.parseInt(value);
+				}
+
+				else if (option.equals("-seed")) {
+
+					seed = Long.parseLong(value);
+				}
+
+				else if (option.equals("-workers")) {
+
+					workers = Integer.parseInt(value);
+				}
+
+				else if (option.equals("-config")) {
+
+					config = Tournament.parseConfig(value);
+				}
+
+				else {
+
+					throw new IllegalArgumentException("Unknown option: " + option);
+				}
+			}
+
+			if (clients < 1 || requests < clients) {
+
+				throw new IllegalArgumentException("Every client needs a request: " + requests + " for "
+						+ clients);
+			}
+		} catch (IllegalArgumentException iae) {
+
+			System.err.println(iae.getMessage());
+			System.err.println("Usage: AnalysisLoad [-url address] [-clients n] [-requests n] [-ms n]"
+					+ " [-followups share] [-warmup n] [-seed n] [-workers n] [-config spec]");
+			return;
+		}
+
+		AnalysisServer server = null;
+
+		if (address == null) {
+
+			try {
+				server = new AnalysisServer(0, workers, config,
+						Runtime.getRuntime().maxMemory() / 4 / TreePruner.BYTES_PER_NODE);
+			} catch (IOException ioe) {
+
+				System.err.println("Could not start a server: " + ioe.getMessage());
+				return;
+			}
+
+			server.start();
+			address = "http://localhost:" + server.getPort();
+		}
+
+		System.out.println("Sending " + requests + " requests with " + millis + " ms budgets from " + clients
+				+ " clients to " + address);
+
+		RandomSource random = RandomSource.create(RandomGenerator.XOROSHIRO, seed);
+		List<Client> running = new ArrayList<Client>();
+		ExecutorService pool = Executors.newFixedThreadPool(clients);
+		long start = System.nanoTime();
+
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+			for (int i = 0; i < clients; i++) {
+
+				// shares out the requests, the first clients take the rest
+				int count = requests / clients + (i < requests % clients ? 1 : 0);
+				Client client = new Client(address, count, millis, followups, Math.min(warmup, count),
+						random.split());
+
+				running.add(client);
+				results.add(pool.submit(client));
+			}
+
+			for (Future<Void> result : results) {
+
+				result.get();
+			}
+		} catch (InterruptedException ie) {
+
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException ee) {
+
+			throw new IllegalStateException("Client failed", ee.getCause());
+		} finally {
+
+			pool.shutdownNow();
+
+			if (server != null) {
+
+				server.stop();
+			}
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long[] latencies = new long[0];
+		int rejected = 0;
+		int failed = 0;
+		int reused = 0;
+
+		for (Client client : running) {
+
+			int from = latencies.length;
+
+			latencies = Arrays.copyOf(latencies, from + client.recorded);
+			System.arraycopy(client.latencies, 0, latencies, from, client.recorded);
+			rejected += client.rejected;
+			failed += client.failed;
+			reused += client.reused;
+		}
+
+		System.out.printf("Throughput- %.1f requests/s%n", requests / seconds);
+
+		if (latencies.length == 0) {
+
+			System.out.println("Every request was a warmup request");
+			return;
+		}
+
+		Arrays.sort(latencies);
+
+		long total = 0;
+		int late = 0;
+
+		for (long latency : latencies) {
+
+			total += latency;
+
+			if (latency > millis * 1000000L) {
+
+				late++;
+			}
+		}
+
+		int n = latencies.length;
+
+		System.out.println("Requests measured- " + n + " (" + rejected + " rejected, " + failed + " failed)");
+		System.out.printf("Latency- mean %.1f ms, p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+				total / 1e6 / n, percentile(latencies, 0.5), percentile(latencies, 0.9),
+				percentile(latencies, 0.99), latencies[n - 1] / 1e6);
+		System.out.printf("Over budget- %d (%.1f%%)%n", late, 100.0 * late / n);
+		System.out.printf("Reused earlier searches- %d (%.1f%%)%n", reused, 100.0 * reused / n);
+	}
+}
@@ -0,0 +1,688 @@
+package my.project.othello;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ *
+ * Serves the best move and its win rate for any position within a time
+ * budget, at http://localhost:port/analyze?position=...&amp;ms=..., where the
+ * position is written as 64 squares row by row (X, O or - for an empty
+ * square) followed by the piece to move. The answer is a line of JSON such as
+ * {"square":26,"move":"4 3","winRate":0.5312,"simulations":48210,"reused":9120,"millis":98}
+ * giving the square (row * 8 + col) of the move, the share of its simulations
+ * that were won, the simulations of the whole search and how many of them
+ * were carried over from earlier searches. The win rate is null when the move
+ * came from the opening book or the endgame solver. A position without a
+ * legal move is answered with the square 64 for a pass, or -1 if the game is
+ * over.
+ * <p>
+ * Every request is handled on a thread of its own, which waits while the
+ * search runs on a fixed pool of search threads, one MonteCarloPlayer of each
+ * piece type per thread. Time spent waiting for a search thread counts
+ * against the budget, and a request whose budget runs out before its search
+ * starts is answered with 503. Search trees are kept in a TreeCache after
+ * every search, so a position that was asked for before, or one that follows
+ * from it within a few moves, carries on from the earlier search. Only listens
+ * on the loopback address.
+ * <p>
+ * Usage: AnalysisServer [-port n] [-workers n] [-cache nodes] [-config spec],
+ * where workers is the number of searches run at once (default one per
+ * processor), cache the number of nodes the kept trees may hold (default a
+ * quarter of the heap) and spec the search settings as in Tournament. The
+ * kept trees live long, so the answers are on time most evenly with the heap
+ * fixed at its largest size from the start (-Xms as large as -Xmx).
+ *
+ * @author Aleksandr Popov
+ */
+public class AnalysisServer {
+
+	private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	// longest budget of a request
+	private static final long MAX_MILLIS = 60000;
+
+	// kept back from the budget of a request for sending the answer
+	private static final long RESPONSE_MILLIS = 5;
+
+	static {
+
+		// the headers and the body of an answer are written separately, and
+		// without this the body waits for the client to acknowledge the headers
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService requestThreads;
+	private final ExecutorService searchThreads;
+	private final BlockingQueue<Engine> engines;
+	private final TreeCache cache;
+
+	/**
+	 *
+	 * Players that analyse positions on one search thread.
+	 */
+	private static final class Engine {
+
+		private final MonteCarloPlayer xPlayer;
+		private final MonteCarloPlayer oPlayer;
+
+		private Engine(SearchConfig config) {
+
+			xPlayer = new MonteCarloPlayer('X', new TimeManager(0), false, config);
+			oPlayer = new MonteCarloPlayer('O', new TimeManager(0), false, config);
+			xPlayer.setQuiet(true);
+			oPlayer.setQuiet(true);
+		}
+	}
+
+	/**
+	 *
+	 * Answer to a request for the best move of a position.
+	 */
+	public static final class Analysis {
+
+		private final int move;
+		private final long moveSimulations;
+		private final long moveWins;
+		private final long simulations;
+		private final long reused;
+		private final long millis;
+
+		private Analysis(int move, long moveSimulations, long moveWins, long simulations, long reused, long millis) {
+
+			this.move = move;
+			this.moveSimulations = moveSimulations;
+			this.moveWins = moveWins;
+			this.simulations = simulations;
+			this.reused = reused;
+			this.millis = millis;
+		}
+
+		/**
+		 *
+		 * Returns the best move.
+		 *
+		 * @return square (row * 8 + col) of the move, Move.PASS if the player
+		 *         to move has to pass or Move.NONE if the game is over.
+		 */
+		public int getMove() {
+
+			return move;
+		}
+
+		/**
+		 *
+		 * Returns the share of the simulations through the best move that were
+		 * won by the player to move.
+		 *
+		 * @return win rate between 0 and 1, or -1 if the move was not decided
+		 *         by simulations.
+		 */
+		public double getWinRate() {
+
+			return moveSimulations == 0 ? -1 : (double) moveWins / moveSimulations;
+		}
+
+		/**
+		 *
+		 * Returns the number of simulations of the position, both those of
+		 * this search and those carried over from earlier ones.
+		 *
+		 * @return simulations of the position.
+		 */
+		public long getSimulations() {
+
+			return simulations;
+		}
+
+		/**
+		 *
+		 * Returns the number of simulations carried over from earlier
+		 * searches.
+		 *
+		 * @return reused simulations, 0 if the search started from nothing.
+		 */
+		public long getReused() {
+
+			return reused;
+		}
+
+		/**
+		 *
+		 * Returns the time from the request to the answer.
+		 *
+		 * @return time in milliseconds.
+		 */
+		public long getMillis() {
+
+			return millis;
+		}
+
+		/**
+		 *
+		 * Returns the analysis as a line of JSON.
+		 *
+		 * @return JSON object.
+		 */
+		public String toJson() {
+
+			double winRate = getWinRate();
+
+			return "{\"square\":" + move + ",\"move\":\"" + Move.toString(move) + "\",\"winRate\":"
+					+ (winRate < 0 ? "null" : String.format(Locale.ROOT, "%.4f", winRate)) + ",\"simulations\":"
+					+ simulations + ",\"reused\":" + reused + ",\"millis\":" + millis + "}";
+		}
+	}
+
+	/**
+	 *
+	 * Constructor for an AnalysisServer object. The server does not accept
+	 * requests until it is started.
+	 *
+	 * @param port
+	 *            port to listen on, 0 for any free port.
+	 * @param workers
+	 *            number of searches run at once.
+	 * @param config
+	 *            settings of the searches. Pondering and snapshots are turned
+	 *            off, and unless it is set the node budget of a quarter of the
+	 *            heap is shared out between the searches.
+	 * @param cacheNodes
+	 *            most nodes the trees kept between searches may hold.
+	 *
+	 * @throws IOException
+	 *             if the port can not be opened.
+	 */
+	public AnalysisServer(int port, int workers, SearchConfig config, long cacheNodes) throws IOException {
+
+		if (workers < 1) {
+
+			throw new IllegalArgumentException("Workers must be at least 1: " + workers);
+		}
+
+		config.setPondering(false).setSnapshotFile(null);
+
+		if (config.getNodeBudget() == 0) {
+
+			config.setMemoryBudget(Runtime.getRuntime().maxMemory() / 4 / workers);
+		}
+
+		cache = new TreeCache(cacheNodes);
+		engines = new ArrayBlockingQueue<Engine>(workers);
+
+		for (int i = 0; i < workers; i++) {
+
+			engines.add(new Engine(config));
+		}
+
+		searchThreads = Executors.newFixedThreadPool(workers, threadFactory("analysis-search-"));
+
+		/*
+		 * a thread per request that only waits for its search, so a slow
+		 * search never holds up the other requests. Virtual threads would do
+		 * the same with less memory, but need a newer Java than this build
+		 */
+		requestThreads = Executors.newCachedThreadPool(threadFactory("analysis-request-"));
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(requestThreads);
+		server.createContext("/analyze", new HttpHandler() {
+
+			public void handle(HttpExchange exchange) throws IOException {
+
+				try {
+					if (!exchange.getRequestMethod().equals("GET")) {
+
+						exchange.sendResponseHeaders(405, -1);
+						return;
+					}
+
+					handleAnalyze(exchange);
+				} finally {
+
+					exchange.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 *
+	 * Returns a thread factory of daemon threads, so that the threads never
+	 * keep the program from exiting.
+	 */
+	private static ThreadFactory threadFactory(final String name) {
+
+		return new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+
+				Thread t = new Thread(r, name + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+
+	/**
+	 *
+	 * Reads the position and budget of a request, analyses the position and
+	 * sends the answer.
+	 */
+	private void handleAnalyze(HttpExchange exchange) throws IOException {
+
+		long received = System.nanoTime();
+		Map<String, String> params = query(exchange.getRequestURI().getRawQuery());
+		String position = params.get("position");
+		String ms = params.get("ms");
+		long xBits = 0;
+		long oBits = 0;
+		long millis;
+
+		if (position == null || position.length() != 65 || ms == null) {
+
+			send(exchange, 400, error("Expected position=<64 squares and the piece to move>&ms=<budget>"));
+			return;
+		}
+
+		for (int sq = 0; sq < 64; sq++) {
+
+			if (position.charAt(sq) == 'X') {
+
+				xBits |= 1L << sq;
+			}
+
+			else if (position.charAt(sq) == 'O') {
+
+				oBits |= 1L << sq;
+			}
+
+			// anything else would be analysed as an empty square
+			else if (position.charAt(sq) != '-') {
+
+				send(exchange, 400, error("Square " + sq + " must be X, O or -"));
+				return;
+			}
+		}
+
+		char piece = Character.toUpperCase(position.charAt(64));
+
+		try {
+			millis = Long.parseLong(ms);
+		} catch (NumberFormatException nfe) {
+
+			millis = -1;
+		}
+
+		if (piece != 'X' && piece != 'O') {
+
+			send(exchange, 400, error("Piece to move must be X or O: " + position.charAt(64)));
+			return;
+		}
+
+		if (millis < 1 || millis > MAX_MILLIS) {
+
+			send(exchange, 400, error("Budget must be between 1 and " + MAX_MILLIS + " ms: " + ms));
+			return;
+		}
+
+		Analysis analysis;
+
+		try {
+			analysis = analyze(xBits, oBits, piece, received + millis * NANOS_PER_MILLI, received);
+		} catch (InterruptedException ie) {
+
+			Thread.currentThread().interrupt();
+			send(exchange, 503, error("Server is shutting down"));
+			return;
+		}
+
+		if (analysis == null) {
+
+			send(exchange, 503, error("Budget ran out before a search thread was free"));
+			return;
+		}
+
+		send(exchange, 200, analysis.toJson());
+	}
+
+	/**
+	 *
+	 * Analyses a position on a search thread and waits for the answer.
+	 *
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
+	 * @param piece
+	 *            piece type that is next to move.
+	 * @param millis
+	 *            time (in milliseconds) the analysis may take, waiting for a
+	 *            search thread included.
+	 *
+	 * @return analysis of the position, or null if the time ran out before a
+	 *         search thread was free.
+	 *
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while it waits.
+	 */
+	public Analysis analyze(long xBits, long oBits, char piece, long millis) throws InterruptedException {
+
+		long received = System.nanoTime();
+
+		return analyze(xBits, oBits, piece, received + millis * NANOS_PER_MILLI, received);
+	}
+
+	private Analysis analyze(final long xBits, final long oBits, final char piece, final long deadline,
+			final long received) throws InterruptedException {
+
+		long own = piece == 'X' ? xBits : oBits;
+		long opp = piece == 'X' ? oBits : xBits;
+
+		// nothing to search, the player passes or the game is over
+		if (BitBoard.legalMoves(own, opp) == 0) {
+
+			int move = BitBoard.legalMoves(opp, own) != 0 ? Move.PASS : Move.NONE;
+
+			return new Analysis(move, 0, 0, 0, 0, (System.nanoTime() - received) / NANOS_PER_MILLI);
+		}
+
+		// claimed by whichever comes first, the search or the request giving up
+		final AtomicBoolean claimed = new AtomicBoolean();
+
+		Future<Analysis> result = searchThreads.submit(new Callable<Analysis>() {
+
+			public Analysis call() {
+
+				return claimed.compareAndSet(false, true) ? search(xBits, oBits, piece, deadline, received) : null;
+			}
+		});
+
+		try {
+			try {
+				return result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException te) {
+
+				// search never started
+				if (claimed.compareAndSet(false, true)) {
+
+					result.cancel(false);
+					return null;
+				}
+
+				// search is finishing, its answer is only a little late
+				return result.get();
+			}
+		} catch (InterruptedException ie) {
+
+			result.cancel(true);
+			throw ie;
+		} catch (ExecutionException ee) {
+
+			throw new IllegalStateException("Search thread failed", ee.getCause());
+		}
+	}
+
+	/**
+	 *
+	 * Searches a position that has legal moves with the engine of the
+	 * current search thread, carrying on from a kept tree if there is one.
+	 */
+	private Analysis search(long xBits, long oBits, char piece, long deadline, long received) {
+
+		long millis = (deadline - System.nanoTime()) / NANOS_PER_MILLI - RESPONSE_MILLIS;
+
+		if (millis < 1) {
+
+			return null;
+		}
+
+		// never waits, there is an engine for every search thread
+		Engine engine = engines.remove();
+		MonteCarloPlayer player = piece == 'X' ? engine.xPlayer : engine.oPlayer;
+
+		try {
+			Node tree = cache.take(xBits, oBits, piece);
+			long reused = tree == null ? 0 : tree.getSimulations();
+
+			player.setSearchTree(tree);
+			player.setClock(new TimeManager(millis));
+			player.analyzeMoves(piece == 'X' ? xBits : oBits, piece == 'X' ? oBits : xBits);
+
+			int move = player.getInput();
+			Node searched = player.getSearchTree();
+			long simulations = 0;
+
+			// moves from the opening book or the endgame solver leave no tree
+			if (searched != null) {
+
+				simulations = searched.getSimulations();
+				cache.put(searched, player.getTreeNodes());
+				player.setSearchTree(null);
+			}
+
+			return new Analysis(move, player.getLastSimulations(move), player.getLastWins(move), simulations,
+					reused, (System.nanoTime() - received) / NANOS_PER_MILLI);
+		} finally {
+
+			engines.add(engine);
+		}
+	}
+
+	private static Map<String, String> query(String rawQuery) throws UnsupportedEncodingException {
+
+		Map<String, String> params = new HashMap<String, String>();
+
+		if (rawQuery == null) {
+
+			return params;
+		}
+
+		for (String param : rawQuery.split("&")) {
+
+			String[] pair = param.split("=", 2);
+
+			if (pair.length == 2) {
+
+				params.put(URLDecoder.decode(pair[0], "UTF-8"), URLDecoder.decode(pair[1], "UTF-8"));
+			}
+		}
+
+		return params;
+	}
+
+	private static String error(String message) {
+
+		return "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+	}
+
+	private static void send(HttpExchange exchange, int status, String json) throws IOException {
+
+		byte[] body = (json + "\n").getBytes(StandardCharsets.UTF_8);
+
+		exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+		exchange.sendResponseHeaders(status, body.length);
+
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	/**
+	 *
+	 * Writes a position the way requests give it.
+	 *
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
+	 * @param piece
+	 *            piece type that is next to move.
+	 *
+	 * @return 64 squares row by row followed by the piece to move.
+	 */
+	public static String toPosition(long xBits, long oBits, char piece) {
+
+		StringBuilder sb = new StringBuilder(65);
+
+		for (int sq = 0; sq < 64; sq++) {
+
+			sb.append((xBits >>> sq & 1) != 0 ? 'X' : (oBits >>> sq & 1) != 0 ? 'O' : '-');
+		}
+
+		return sb.append(piece).toString();
+	}
+
+	/**
+	 *
+	 * Starts accepting requests.
+	 */
+	public void start() {
+
+		server.start();
+	}
+
+	/**
+	 *
+	 * Stops accepting requests, closes the port and releases the search
+	 * threads.
+	 */
+	public void stop() {
+
+		server.stop(0);
+		requestThreads.shutdownNow();
+		searchThreads.shutdownNow();
+
+		for (Engine engine : engines) {
+
+			engine.xPlayer.shutdown();
+			engine.oPlayer.shutdown();
+		}
+	}
+
+	/**
+	 *
+	 * Returns the port the server listens on.
+	 *
+	 * @return port number.
+	 */
+	public int getPort() {
+
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 *
+	 * Returns the cache of search trees.
+	 *
+	 * @return tree cache of the server.
+	 */
+	public TreeCache getCache() {
+
+		return cache;
+	}
+
+	/**
+	 *
+	 * Starts a server with the settings given on the command line.
+	 *
+	 * @param args
+	 *            pairs of option names and values.
+	 */
+	public static void main(String[] args) {
+
+		int port = 8080;
+		int workers = Runtime.getRuntime().availableProcessors();
+		long cacheNodes = Runtime.getRuntime().maxMemory() / 4 / TreePruner.BYTES_PER_NODE;
+		SearchConfig config = new SearchConfig();
+
+		try {
+			if (args.length % 2 != 0) {
+
+				throw new IllegalArgumentException("Missing value for " + args[args.length - 1]);
+			}
+
+			for (int i = 0; i < args.length; i += 2) {
+
+				String option = args[i];
+				String value = args[i + 1];
+
+				if (option.equals("-port")) {
+
+					port = Integer.parseInt(value);
+				}
+
+				else if (option.equals("-workers")) {
+
+					workers = Integer.parseInt(value);
+				}
+
+				else if (option.equals("-cache")) {
+
+					cacheNodes = Long.parseLong(value);
+				}
+
+				else if (option.equals("-config")) {
+
+					config = Tournament.parseConfig(value);
+				}
+
+				else {
+
+					throw new IllegalArgumentException("Unknown option: " + option);
+				}
+			}
+		} catch (IllegalArgumentException iae) {
+
+			System.err.println(iae.getMessage());
+			System.err.println("Usage: AnalysisServer [-port n] [-workers n] [-cache nodes] [-config spec]");
+			return;
+		}
+
+		AnalysisServer server;
+
+		try {
+			server = new AnalysisServer(port, workers, config, cacheNodes);
+		} catch (IOException ioe) {
+
+			System.err.println("Could not serve analysis on port " + port + ": " + ioe.getMessage());
+			return;
+		}
+
+		server.start();
+		System.out.println("Serving analysis at http://localhost:" + server.getPort() + "/analyze?position="
+				+ toPosition(BitBoard.START_X, BitBoard.START_O, 'X') + "&ms=100");
+	}
+}
@@ -0,0 +1,355 @@
+package my.project.othello;
+
+/**
+ *
+ * Bitboard utilities for a game of reversi. A position is stored as one long
+ * per piece type, where bit (row * 8 + col) is set when that piece occupies
+ * the square. Legal moves and flips are computed with shifts and masks instead
+ * of scanning the board square by square.
+ *
+ * @author Aleksandr Popov
+ */
+public final class BitBoard {
+
+	// every square except column 0 and every square except column 7
+	private static final long NOT_FIRST_COL = 0xfefefefefefefefeL;
+	private static final long NOT_LAST_COL = 0x7f7f7f7f7f7f7f7fL;
+
+	// starting position of the X and O pieces
+	public static final long START_X = (1L << 27) | (1L << 36);
+	public static final long START_O = (1L << 28) | (1L << 35);
+
+	private BitBoard() {
+
+	}
+
+	/**
+	 *
+	 * Returns every square the player owning the first bitboard can move to.
+	 *
+	 * @param own
+	 *            bitboard of the player that is to move.
+	 * @param opp
+	 *            bitboard of the opponent.
+	 *
+	 * @return bitboard with a bit set for every legal move.
+	 */
+	public static long legalMoves(long own, long opp) {
+
+		long empty = ~(own | opp);
+		long moves = 0;
+		long x;
+
+		// east and west, edge columns of the opponent can never be flipped
+		long inner = opp & 0x7e7e7e7e7e7e7e7eL;
+
+		x = inner & (own << 1);
+		x |= inner & (x << 1);
+		x |= inner & (x << 1);
+		x |= inner & (x << 1);
+		x |= inner & (x << 1);
+		x |= inner & (x << 1);
+		moves |= empty & (x << 1);
+
+		x = inner & (own >>> 1);
+		x |= inner & (x >>> 1);
+		x |= inner & (x >>> 1);
+		x |= inner & (x >>> 1);
+		x |= inner & (x >>> 1);
+		x |= inner & (x >>> 1);
+		moves |= empty & (x >>> 1);
+
+		// north and south
+		x = opp & (own << 8);
+		x |= opp & (x << 8);
+		x |= opp & (x << 8);
+		x |= opp & (x << 8);
+		x |= opp & (x << 8);
+		x |= opp & (x << 8);
+		moves |= empty & (x << 8);
+
+		x = opp & (own >>> 8);
+		x |= opp & (x >>> 8);
+		x |= opp & (x >>> 8);
+		x |= opp & (x >>> 8);
+		x |= opp & (x >>> 8);
+		x |= opp & (x >>> 8);
+		moves |= empty & (x >>> 8);
+
+		// diagonals
+		x = inner & (own << 9);
+		x |= inner & (x << 9);
+		x |= inner & (x << 9);
+		x |= inner & (x << 9);
+		x |= inner & (x << 9);
+		x |= inner & (x << 9);
+		moves |= empty & (x << 9);
+
+		x = inner & (own >>> 9);
+		x |= inner & (x >>> 9);
+		x |= inner & (x >>> 9);
+		x |= inner & (x >>> 9);
+		x |= inner & (x >>> 9);
+		x |= inner & (x >>> 9);
+		moves |= empty & (x >>> 9);
+
+		x = inner & (own << 7);
+		x |= inner & (x << 7);
+		x |= inner & (x << 7);
+		x |= inner & (x << 7);
+		x |= inner & (x << 7);
+		x |= inner & (x << 7);
+		moves |= empty & (x << 7);
+
+		x = inner & (own >>> 7);
+		x |= inner & (x >>> 7);
+		x |= inner & (x >>> 7);
+		x |= inner & (x >>> 7);
+		x |= inner & (x >>> 7);
+		x |= inner & (x >>> 7);
+		moves |= empty & (x >>> 7);
+
+		return moves;
+	}
+
+	/**
+	 *
+	 * Returns the opponent's pieces that are flipped when the player owning the
+	 * first bitboard moves to a square.
+	 *
+	 * @param own
+	 *            bitboard of the player that is moving.
+	 * @param opp
+	 *            bitboard of the opponent.
+	 * @param square
+	 *            square (row * 8 + col) the player is moving to.
+	 *
+	 * @return bitboard of the pieces that are flipped, empty if the move is
+	 *         not legal.
+	 */
+	public static long flips(long own, long opp, int square) {
+
+		long move = 1L << square;
+		long flipped = 0;
+		long line;
+		long x;
+
+		// east
+		line = 0;
+		x = (move << 1) & NOT_FIRST_COL;
+		while ((x & opp) != 0) {
+
+			line |= x;
+			x = (x << 1) & NOT_FIRST_COL;
+		}
+		if ((x & own) != 0) {
+
+			flipped |= line;
+		}
+
+		// west
+		line = 0;
+		x = (move >>> 1) & NOT_LAST_COL;
+		while ((x & opp) != 0) {
+
+			line |= x;
+			x = (x >>> 1) & NOT_LAST_COL;
+		}
+		if ((x & own) != 0) {
+
+			flipped |= line;
+		}
+
+		// south
+		line = 0;
+		x = move << 8;
+		while ((x & opp) != 0) {
+
+			line |= x;
+			x = x << 8;
+		}
+		if ((x & own) != 0) {
+
+			flipped |= line;
+		}
+
+		// north
+		line = 0;
+		x = move >>> 8;
+		while ((x & opp) != 0) {
+
+			line |= x;
+			x = x >>> 8;
+		}
+		if ((x & own) != 0) {
+
+			flipped |= line;
+		}
+
+		// south east
+		line = 0;
+		x = (move << 9) & NOT_FIRST_COL;
+		while ((x & opp) != 0) {
+
+			line |= x;
+			x = (x << 9) & NOT_FIRST_COL;
+		}
+		if ((x & own) != 0) {
+
+			flipped |= line;
+		}
+
+		// north west
+		line = 0;
+		x = (move >>> 9) & NOT_LAST_COL;
+		while ((x & opp) != 0) {
+
+			line |= x;
+			x = (x >>> 9) & NOT_LAST_COL;
+		}
+		if ((x & own) != 0) {
+
+			flipped |= line;
+		}
+
+		// south west
+		line = 0;
+		x = (move << 7) & NOT_LAST_COL;
+		while ((x & opp) != 0) {
+
+			line |= x;
+			x = (x << 7) & NOT_LAST_COL;
+		}
+		if ((x & own) != 0) {
+
+			flipped |= line;
+		}
+
+		// north east
+		line = 0;
+		x = (move >>> 7) & NOT_FIRST_COL;
+		while ((x & opp) != 0) {
+
+			line |= x;
+			x = (x >>> 7) & NOT_FIRST_COL;
+		}
+		if ((x & own) != 0) {
+
+			flipped |= line;
+		}
+
+		return flipped;
+	}
+
+	/**
+	 *
+	 * Returns the square (row * 8 + col) of a coordinate on the board.
+	 *
+	 * @param row
+	 *            row of a coordinate on the board.
+	 * @param col
+	 *            column of a coordinate on the board.
+	 *
+	 * @return square index of the coordinate.
+	 */
+	public static int square(int row, int col) {
+
+		return row * 8 + col;
+	}
+
+	/**
+	 *
+	 * Builds the bitboard of one piece type from a 2D char array.
+	 *
+	 * @param board
+	 *            board state (2D char array).
+	 * @param piece
+	 *            piece type whose squares will be set.
+	 *
+	 * @return bitboard of the squares occupied by the piece.
+	 */
+	public static long fromBoard(char[][] board, char piece) {
+
+		long bits = 0;
+
+		for (int row = 0; row < 8; row++) {
+			for (int col = 0; col < 8; col++) {
+
+				if (board[row][col] == piece) {
+
+					bits |= 1L << square(row, col);
+				}
+			}
+		}
+
+		return bits;
+	}
+
+	/**
+	 *
+	 * Builds a 2D char array from the bitboards of both piece types.
+	 *
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
+	 *
+	 * @return board state as a 2D char array.
+	 */
+	public static char[][] toBoard(long xBits, long oBits) {
+
+		char[][] board = new char[8][8];
+
+		for (int sq = 0; sq < 64; sq++) {
+
+			if ((xBits & (1L << sq)) != 0) {
+
+				board[sq / 8][sq % 8] = 'X';
+			}
+
+			else if ((oBits & (1L << sq)) != 0) {
+
+				board[sq / 8][sq % 8] = 'O';
+			}
+		}
+
+		return board;
+	}
+
+	/**
+	 *
+	 * Mirrors a bitboard in the diagonal from (0, 0) to (7, 7), so that the
+	 * piece on (row, col) moves to (col, row).
+	 *
+	 * @param bits
+	 *            bitboard to mirror.
+	 *
+	 * @return mirrored bitboard.
+	 */
+	public static long transpose(long bits) {
+
+		long t = 0x0f0f0f0f00000000L & (bits ^ (bits << 28));
+		bits ^= t ^ (t >>> 28);
+		t = 0x3333000033330000L & (bits ^ (bits << 14));
+		bits ^= t ^ (t >>> 14);
+		t = 0x5500550055005500L & (bits ^ (bits << 7));
+		bits ^= t ^ (t >>> 7);
+
+		return bits;
+	}
+
+	/**
+	 *
+	 * Rotates a bitboard by half a turn, so that the piece on (row, col) moves
+	 * to (7 - row, 7 - col).
+	 *
+	 * @param bits
+	 *            bitboard to rotate.
+	 *
+	 * @return rotated bitboard.
+	 */
+	public static long rotate(long bits) {
+
+		return Long.reverse(bits);
+	}
+}
@@ -1,8 +1,5 @@
 package my.project.othello;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  *
  * Represents the board used by a game of reversi.
@@ -11,7 +8,9 @@ import java.util.List;
  */
 public class Board {
 
-	private char[][] board = new char[8][8];
+	// one bitboard per piece type, bit (row * 8 + col) marks an occupied square
+	private long xBits = BitBoard.START_X;
+	private long oBits = BitBoard.START_O;
 
 	/**
 	 *
@@ -20,42 +19,44 @@ public class Board {
 	 */
 	public Board() {
 
-		board[3][3] = 'X';
-		board[4][3] = 'O';
-		board[3][4] = 'O';
-		board[4][4] = 'X';
-
 	}
 
 	/**
 	 *
-	 * Returns the piece type of the player that won the game given a board
-	 * state.
-	 *
-	 * @param board
-	 *            board state for which a winner will be determined.
+	 * Constructor for object of type Board with pieces already placed.
 	 *
-	 * @return piece type of the player that won.
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
 	 */
-	public static char getWinner(char[][] board) {
-
-		int xCount = 0;
-		int oCount = 0;
+	public Board(long xBits, long oBits) {
 
-		for (int i = 0; i < 8; i++) {
-			for (int j = 0; j < 8; j++) {
+		if ((xBits & oBits) != 0) {
 
-				if (board[i][j] == 'X') {
+			throw new IllegalArgumentException("Squares occupied by both pieces: " + Long.toHexString(xBits & oBits));
+		}
 
-					xCount++;
-				}
+		this.xBits = xBits;
+		this.oBits = oBits;
+	}
 
-				if (board[i][j] == 'O') {
+	/**
+	 *
+	 * Returns the piece type of the player that won the game given the
+	 * bitboards of both piece types.
+	 *
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
+	 *
+	 * @return piece type of the player that won.
+	 */
+	public static char getWinner(long xBits, long oBits) {
 
-					oCount++;
-				}
-			}
-		}
+		int xCount = Long.bitCount(xBits);
+		int oCount = Long.bitCount(oBits);
 
 		if (xCount > oCount) {
 
@@ -81,16 +82,21 @@ public class Board {
 	 */
 	public char[][] getBoard() {
 
-		char[][] temp = new char[8][8];
-
-		for (int row = 0; row < board.length; row++) {
-			for (int col = 0; col < board[0].length; col++) {
+		return BitBoard.toBoard(xBits, oBits);
+	}
 
-				temp[row][col] = board[row][col];
-			}
-		}
+	/**
+	 *
+	 * Returns the bitboard of the squares occupied by a piece type.
+	 *
+	 * @param piece
+	 *            piece type whose bitboard is returned.
+	 *
+	 * @return bitboard of the squares occupied by the piece.
+	 */
+	public long getBits(char piece) {
 
-		return temp;
+		return piece == 'X' ? xBits : oBits;
 	}
 
 	/**
@@ -99,21 +105,32 @@ public class Board {
 	 *
 	 * @param piece
 	 *            the piece that is making a move.
-	 * @param position
-	 *            the position to which a player is making a move.
-	 * @param list
-	 *            list of coordinates that should be flipped from the opponent's
-	 *            piece type to the piece passed as a parameter.
+	 * @param move
+	 *            square (row * 8 + col) to which a player is making a move, or
+	 *            Move.PASS.
+	 * @param flips
+	 *            bitboard of the pieces that should be flipped from the
+	 *            opponent's piece type to the piece passed as a parameter.
 	 */
-	public void updateBoard(char piece, String position, List<List<CoordinatePair>> list) {
+	public void updateBoard(char piece, int move, long flips) {
 
-		board[CoordinatePair.decodeRow(position)][CoordinatePair.decodeCol(position)] = piece;
+		if (move == Move.PASS) {
 
-		for (int i = 0; i < list.size(); i++) {
-			for (int j = 0; j < list.get(i).size(); j++) {
+			return;
+		}
 
-				board[list.get(i).get(j).getRow()][list.get(i).get(j).getCol()] = piece;
-			}
+		long changed = flips | (1L << move);
+
+		if (piece == 'X') {
+
+			xBits |= changed;
+			oBits &= ~changed;
+		}
+
+		else {
+
+			oBits |= changed;
+			xBits &= ~changed;
 		}
 	}
 
@@ -141,6 +158,8 @@ public class Board {
 
 		System.out.print(temp + "\n");
 
+		char[][] board = getBoard();
+
 		// rest of board
 		for (int i = 1; i < 9; i++) {
 
@@ -148,7 +167,7 @@ public class Board {
 
 			for (int j = 0; j < board.length; j++) {
 
-				if (p.hasKey(i - 1, j)) {
+				if (p.hasMove(Move.of(i - 1, j))) {
 
 					System.out.print(" ?");
 				}
@@ -0,0 +1,722 @@
+package my.project.othello;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ *
+ * Plays out the end of a game perfectly. A negamax alpha-beta search looks at
+ * every move to the end of the game and returns the final disc difference
+ * with best play from both sides, counting the empty squares left when the
+ * game ends for the winner.
+ * <p>
+ * The search first proves whether the position is a win, a loss or a draw,
+ * which takes far fewer nodes, and then finds the exact disc difference. If
+ * time runs out during the second search, the result of the first is still a
+ * provably best move as far as winning is concerned.
+ * <p>
+ * Moves that leave the opponent the fewest replies are tried first while many
+ * squares are empty, and moves into regions with an odd number of empty
+ * squares first near the end. Positions are stored in a hash table that is
+ * kept between searches. With a fork-join pool, the first move of a node is
+ * searched on its own and the remaining moves are then split across the pool
+ * (young brothers wait), as long as enough squares are empty to be worth it.
+ *
+ * @author Aleksandr Popov
+ */
+public class EndgameSolver {
+
+	// fewest empty squares at which positions are hashed and moves sorted
+	private static final int SORT_MIN_EMPTIES = 7;
+
+	// fewest empty squares at which the moves of a node are split across
+	// threads
+	private static final int SPLIT_MIN_EMPTIES = 12;
+
+	// nodes a thread searches between two looks at the clock
+	private static final int CHECK_INTERVAL = 4096;
+
+	// above any possible disc difference
+	private static final int INFINITY = 65;
+
+	// marks a move in the hash table as unknown
+	private static final int NO_MOVE = 64;
+
+	// four corner regions, for the parity of their empty squares
+	private static final long[] QUADRANTS = { 0x000000000f0f0f0fL, 0x00000000f0f0f0f0L, 0x0f0f0f0f00000000L,
+			0xf0f0f0f000000000L };
+
+	private static final long CORNERS = 0x8100000000000081L;
+
+	// two longs per entry, the key mixed with the data and the data itself
+	private final long[] table;
+	private final int mask;
+	private final ForkJoinPool pool;
+
+	private volatile long deadline;
+
+	/**
+	 *
+	 * Constructor for an EndgameSolver object.
+	 *
+	 * @param tableSize
+	 *            number of positions the hash table holds, rounded up to a
+	 *            power of two.
+	 * @param pool
+	 *            pool the search is split across, or null to search on the
+	 *            calling thread only.
+	 */
+	public EndgameSolver(int tableSize, ForkJoinPool pool) {
+
+		if (tableSize < 1) {
+
+			throw new IllegalArgumentException("Table size must be at least 1: " + tableSize);
+		}
+
+		int size = Integer.highestOneBit(Math.max(1, tableSize - 1)) << 1;
+
+		table = new long[2 * size];
+		mask = size - 1;
+		this.pool = pool;
+	}
+
+	/**
+	 *
+	 * Result of a solved position, from the side of the player to move.
+	 */
+	public static final class Result {
+
+		private final int move;
+		private final int score;
+		private final boolean exact;
+		private final long nodes;
+
+		private Result(int move, int score, boolean exact, long nodes) {
+
+			this.move = move;
+			this.score = score;
+			this.exact = exact;
+			this.nodes = nodes;
+		}
+
+		/**
+		 *
+		 * Returns the best move.
+		 *
+		 * @return square (row * 8 + col) of the move, -1 if the player has to
+		 *         pass.
+		 */
+		public int getMove() {
+
+			return move;
+		}
+
+		/**
+		 *
+		 * Returns the score of the best move. If the score is not exact only
+		 * its sign is known: positive for a win, negative for a loss and 0 for
+		 * a draw.
+		 *
+		 * @return final disc difference with best play.
+		 */
+		public int getScore() {
+
+			return score;
+		}
+
+		/**
+		 *
+		 * Returns whether the score is the exact disc difference, rather than
+		 * only whether the game is won, lost or drawn.
+		 *
+		 * @return true if the score is exact.
+		 */
+		public boolean isExact() {
+
+			return exact;
+		}
+
+		/**
+		 *
+		 * Returns the number of positions searched.
+		 *
+		 * @return number of nodes.
+		 */
+		public long getNodes() {
+
+			return nodes;
+		}
+	}
+
+	/**
+	 *
+	 * Solves a position without a time limit.
+	 *
+	 * @param own
+	 *            bitboard of the player to move.
+	 * @param opp
+	 *            bitboard of the other player.
+	 *
+	 * @return best move and exact score.
+	 */
+	public Result solve(long own, long opp) {
+
+		return solve(own, opp, Long.MAX_VALUE);
+	}
+
+	/**
+	 *
+	 * Solves a position, stopping when a deadline passes.
+	 *
+	 * @param own
+	 *            bitboard of the player to move.
+	 * @param opp
+	 *            bitboard of the other player.
+	 * @param deadlineNanos
+	 *            value of System.nanoTime at which the search gives up,
+	 *            Long.MAX_VALUE for no limit.
+	 *
+	 * @return best move and score, with an inexact score if only the win, loss
+	 *         or draw was proven in time, or null if not even that was.
+	 */
+	public Result solve(long own, long opp, long deadlineNanos) {
+
+		deadline = deadlineNanos;
+
+		long nodes = 0;
+		Result result = null;
+
+		try {
+			int[] move = new int[] { -1 };
+			Searcher searcher = new Searcher(null);
+			int score = root(searcher, own, opp, -1, 1, move);
+
+			nodes = searcher.nodes;
+			result = new Result(move[0], Integer.signum(score), false, nodes);
+
+			move[0] = -1;
+			searcher = new Searcher(null);
+			score = root(searcher, own, opp, -INFINITY, INFINITY, move);
+
+			nodes += searcher.nodes;
+			result = new Result(move[0], score, true, nodes);
+		} catch (Timeout t) {
+
+			// keeps the proven win, loss or draw if there is one
+		}
+
+		return result;
+	}
+
+	/**
+	 *
+	 * Searches the root position on the pool, or on the calling thread if
+	 * there is no pool.
+	 */
+	private int root(final Searcher searcher, final long own, final long opp, final int alpha, final int beta,
+			final int[] move) {
+
+		if (pool == null) {
+
+			return searcher.search(own, opp, alpha, beta, false, move);
+		}
+
+		return pool.invoke(new RecursiveTask<Integer>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected Integer compute() {
+
+				return searcher.search(own, opp, alpha, beta, false, move);
+			}
+		});
+	}
+
+	/**
+	 *
+	 * Returns the final disc difference of a finished game, giving the empty
+	 * squares to the winner.
+	 */
+	private static int finalScore(long own, long opp) {
+
+		int diff = Long.bitCount(own) - Long.bitCount(opp);
+		int empties = 64 - Long.bitCount(own | opp);
+
+		return diff > 0 ? diff + empties : diff < 0 ? diff - empties : 0;
+	}
+
+	private static long hash(long own, long opp) {
+
+		long h = own * 0x9e3779b97f4a7c15L ^ Long.rotateLeft(opp * 0xc2b2ae3d27d4eb4fL, 31);
+
+		return h ^ h >>> 29;
+	}
+
+	/**
+	 *
+	 * Looks a position up in the hash table.
+	 *
+	 * @return packed bounds and move, or 0 if the position is not stored.
+	 */
+	private long probe(long hash) {
+
+		int i = ((int) (hash >>> 32) & mask) << 1;
+		long data = table[i + 1];
+
+		// an entry torn by two threads writing it at once fails this check
+		return (table[i] ^ data) == hash ? data : 0;
+	}
+
+	private void store(long hash, int lower, int upper, int move) {
+
+		int i = ((int) (hash >>> 32) & mask) << 1;
+		long data = (lower + INFINITY) | (long) (upper + INFINITY) << 8 | (long) move << 16 | 1L << 24;
+
+		table[i] = hash ^ data;
+		table[i + 1] = data;
+	}
+
+	/**
+	 *
+	 * Thrown to unwind a search when the deadline has passed.
+	 */
+	private static final class Timeout extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		Timeout() {
+
+			super("Endgame search ran out of time", null, false, false);
+		}
+	}
+
+	/**
+	 *
+	 * Thrown to unwind a search whose result is no longer needed, because a
+	 * sibling at a split point above it already caused a cutoff.
+	 */
+	private static final class Cutoff extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		Cutoff() {
+
+			super("Endgame search was cut off", null, false, false);
+		}
+	}
+
+	/**
+	 *
+	 * Node whose remaining moves are being searched by several threads. Holds
+	 * the best score found so far, which later moves are searched against.
+	 */
+	private static final class SplitPoint {
+
+		private final SplitPoint parent;
+		private final int beta;
+		private volatile int alpha;
+		private volatile boolean cutoff = false;
+		private int best;
+		private int bestMove;
+
+		private SplitPoint(SplitPoint parent, int alpha, int beta, int best, int bestMove) {
+
+			this.parent = parent;
+			this.alpha = alpha;
+			this.beta = beta;
+			this.best = best;
+			this.bestMove = bestMove;
+		}
+
+		private synchronized void update(int score, int move) {
+
+			if (score > best) {
+
+				best = score;
+				bestMove = move;
+			}
+
+			if (score > alpha) {
+
+				alpha = score;
+			}
+
+			if (score >= beta) {
+
+				cutoff = true;
+			}
+		}
+
+		private boolean isStopped() {
+
+			for (SplitPoint p = this; p != null; p = p.parent) {
+
+				if (p.cutoff) {
+
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 *
+	 * Searches the moves of a split point after the first, one task per move.
+	 */
+	private final class MoveTask extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final SplitPoint split;
+		private final long own;
+		private final long opp;
+		private final int move;
+
+		private MoveTask(SplitPoint split, long own, long opp, int move) {
+
+			this.split = split;
+			this.own = own;
+			this.opp = opp;
+			this.move = move;
+		}
+
+		@Override
+		protected Long compute() {
+
+			Searcher searcher = new Searcher(split);
+
+			try {
+				if (split.isStopped()) {
+
+					return 0L;
+				}
+
+				int alpha = split.alpha;
+				int beta = split.beta;
+
+				// null window first, the move is expected to be worse
+				int score = -searcher.search(own, opp, -alpha - 1, -alpha, false, null);
+
+				if (score > alpha && score < beta) {
+
+					score = -searcher.search(own, opp, -beta, -split.alpha, false, null);
+				}
+
+				split.update(score, move);
+			} catch (Cutoff c) {
+
+				// a sibling made this move irrelevant
+			}
+
+			return searcher.nodes;
+		}
+	}
+
+	/**
+	 *
+	 * Search state of a single thread.
+	 */
+	private final class Searcher {
+
+		private final SplitPoint split;
+		private long nodes = 0;
+
+		private Searcher(SplitPoint split) {
+
+			this.split = split;
+		}
+
+		/**
+		 *
+		 * Negamax alpha-beta search of a position to the end of the game.
+		 *
+		 * @param own
+		 *            bitboard of the player to move.
+		 * @param opp
+		 *            bitboard of the other player.
+		 * @param alpha
+		 *            lower bound of the scores that matter.
+		 * @param beta
+		 *            upper bound of the scores that matter.
+		 * @param passed
+		 *            whether the move before was a pass.
+		 * @param bestMove
+		 *            if not null, its first element is set to the best move.
+		 *
+		 * @return score of the position, a bound if it is outside the window.
+		 */
+		private int search(long own, long opp, int alpha, int beta, boolean passed, int[] bestMove) {
+
+			if ((++nodes & (CHECK_INTERVAL - 1)) == 0) {
+
+				if (System.nanoTime() - deadline > 0) {
+
+					throw new Timeout();
+				}
+
+				if (split != null && split.isStopped()) {
+
+					throw new Cutoff();
+				}
+			}
+
+			long empty = ~(own | opp);
+			int empties = Long.bitCount(empty);
+
+			if (empties == 0) {
+
+				return finalScore(own, opp);
+			}
+
+			long moves = BitBoard.legalMoves(own, opp);
+
+			// player to move has to pass
+			if (moves == 0) {
+
+				// neither player can move, game is over
+				if (passed) {
+
+					return finalScore(own, opp);
+				}
+
+				return -search(opp, own, -beta, -alpha, true, null);
+			}
+
+			// the root goes through the full move loop, which records the best move
+			if (empties < SORT_MIN_EMPTIES && bestMove == null) {
+
+				return searchShallow(own, opp, alpha, beta, moves, empty);
+			}
+
+			long hash = hash(own, opp);
+			long entry = probe(hash);
+			int hashMove = NO_MOVE;
+			int originalAlpha = alpha;
+
+			if (entry != 0) {
+
+				int lower = (int) (entry & 0xff) - INFINITY;
+				int upper = (int) (entry >>> 8 & 0xff) - INFINITY;
+				hashMove = (int) (entry >>> 16 & 0xff);
+
+				if (bestMove == null) {
+
+					if (lower >= beta) {
+
+						return lower;
+					}
+
+					if (upper <= alpha) {
+
+						return upper;
+					}
+
+					if (lower == upper) {
+
+						return lower;
+					}
+				}
+
+				alpha = Math.max(alpha, lower);
+				beta = Math.min(beta, upper);
+			}
+
+			int count = Long.bitCount(moves);
+			int[] list = sortMoves(own, opp, moves, hashMove, count);
+			int best = -INFINITY;
+			int move = list[0];
+
+			// first move with the full window
+			long changed = BitBoard.flips(own, opp, list[0]) | 1L << list[0];
+			int score = -search(opp & ~changed, own | changed, -beta, -alpha, false, null);
+
+			best = score;
+
+			if (score > alpha) {
+
+				alpha = score;
+			}
+
+			// young brothers wait for the eldest, then are split across threads
+			if (score < beta && count > 1 && pool != null && empties >= SPLIT_MIN_EMPTIES) {
+
+				SplitPoint point = new SplitPoint(split, alpha, beta, best, move);
+				List<MoveTask> tasks = new ArrayList<MoveTask>(count - 1);
+
+				for (int i = 1; i < count; i++) {
+
+					changed = BitBoard.flips(own, opp, list[i]) | 1L << list[i];
+					tasks.add(new MoveTask(point, opp & ~changed, own | changed, list[i]));
+				}
+
+				for (MoveTask task : RecursiveTask.invokeAll(tasks)) {
+
+					nodes += task.join();
+				}
+
+				// a split point above was cut off, this result is not needed
+				if (split != null && split.isStopped()) {
+
+					throw new Cutoff();
+				}
+
+				best = point.best;
+				move = point.bestMove;
+			}
+
+			else {
+
+				for (int i = 1; i < count && alpha < beta; i++) {
+
+					changed = BitBoard.flips(own, opp, list[i]) | 1L << list[i];
+
+					// null window first, the move is expected to be worse
+					score = -search(opp & ~changed, own | changed, -alpha - 1, -alpha, false, null);
+
+					if (score > alpha && score < beta) {
+
+						score = -search(opp & ~changed, own | changed, -beta, -score, false, null);
+					}
+
+					if (score > best) {
+
+						best = score;
+						move = list[i];
+					}
+
+					if (score > alpha) {
+
+						alpha = score;
+					}
+				}
+			}
+
+			if (best <= originalAlpha) {
+
+				store(hash, -INFINITY, best, move);
+			}
+
+			else if (best >= beta) {
+
+				store(hash, best, INFINITY, move);
+			}
+
+			else {
+
+				store(hash, best, best, move);
+			}
+
+			if (bestMove != null) {
+
+				bestMove[0] = move;
+			}
+
+			return best;
+		}
+
+		/**
+		 *
+		 * Searches a position with only a few empty squares, trying moves in
+		 * regions with an odd number of empty squares first.
+		 */
+		private int searchShallow(long own, long opp, int alpha, int beta, long moves, long empty) {
+
+			long odd = 0;
+
+			for (int q = 0; q < QUADRANTS.length; q++) {
+
+				if ((Long.bitCount(empty & QUADRANTS[q]) & 1) != 0) {
+
+					odd |= QUADRANTS[q];
+				}
+			}
+
+			int best = -INFINITY;
+
+			for (int pass = 0; pass < 2; pass++) {
+
+				long group = pass == 0 ? moves & odd : moves & ~odd;
+
+				while (group != 0) {
+
+					int square = Long.numberOfTrailingZeros(group);
+					long changed = BitBoard.flips(own, opp, square) | 1L << square;
+					group &= group - 1;
+
+					int score = -search(opp & ~changed, own | changed, -beta, -Math.max(alpha, best), false, null);
+
+					if (score > best) {
+
+						best = score;
+
+						if (score >= beta) {
+
+							return best;
+						}
+					}
+				}
+			}
+
+			return best;
+		}
+
+		/**
+		 *
+		 * Orders moves so that the move from the hash table comes first,
+		 * followed by the moves that leave the opponent the fewest replies,
+		 * with corners preferred.
+		 *
+		 * @return squares of the moves, best first.
+		 */
+		private int[] sortMoves(long own, long opp, long moves, int hashMove, int size) {
+
+			int count = 0;
+			int[] list = new int[size];
+			int[] keys = new int[size];
+
+			while (moves != 0) {
+
+				int square = Long.numberOfTrailingZeros(moves);
+				long changed = BitBoard.flips(own, opp, square) | 1L << square;
+				moves &= moves - 1;
+
+				int key;
+
+				if (square == hashMove) {
+
+					key = -1000;
+				}
+
+				else {
+
+					key = Long.bitCount(BitBoard.legalMoves(opp & ~changed, own | changed)) * 4;
+
+					if ((CORNERS & 1L << square) != 0) {
+
+						key -= 6;
+					}
+				}
+
+				// insertion sort, the lists are short
+				int i = count++;
+
+				while (i > 0 && keys[i - 1] > key) {
+
+					keys[i] = keys[i - 1];
+					list[i] = list[i - 1];
+					i--;
+				}
+
+				keys[i] = key;
+				list[i] = square;
+			}
+
+			return list;
+		}
+	}
+}
@@ -0,0 +1,487 @@
+package my.project.othello;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Reads recorded games from WTHOR database files and from text files of move
+ * lists. A file is cut into splits that can be read by different threads,
+ * and every split is mapped into memory and decoded in place, so no part of
+ * the file is copied onto the heap however large it is.
+ * <p>
+ * A WTHOR file (ending in .wtb) starts with a 16 byte header that holds the
+ * number of games, followed by one 68 byte record per game: the tournament
+ * and both players (2 bytes each), the final number of black discs and the
+ * theoretical score (1 byte each), then 60 moves of one byte each written as
+ * row * 10 + col counting from 1, with 0 after the last move. Passes are not
+ * recorded.
+ * <p>
+ * Any other file is read as text with one game per line, its moves written
+ * in standard notation such as f5d6c3, with or without spaces between them.
+ * Passes may be written as "pass", "pa" or "--" but are not needed. Empty
+ * lines are skipped and anything after a # is a comment. A line with any
+ * other token on it is skipped as malformed, rather than cut short at the
+ * token.
+ * <p>
+ * Both formats have black moving first from the standard starting position,
+ * which is the position of this program mirrored left to right with black
+ * playing the X pieces. Moves are mirrored as they are decoded.
+ *
+ * @author Aleksandr Popov
+ */
+public final class GameDatabase {
+
+	private static final int WTHOR_HEADER_BYTES = 16;
+	private static final int WTHOR_RECORD_BYTES = 68;
+	private static final int WTHOR_MOVES_OFFSET = 8;
+
+	// longest line of a text file, longer lines are skipped as malformed
+	private static final int MAX_LINE_BYTES = 4096;
+
+	private GameDatabase() {
+
+	}
+
+	/**
+	 *
+	 * Receives the games of a split as they are decoded.
+	 */
+	public interface GameHandler {
+
+		/**
+		 *
+		 * Handles one game. The array of moves is reused for the next game, so
+		 * it must not be kept.
+		 *
+		 * @param moves
+		 *            squares (row * 8 + col) of the moves in the order they were
+		 *            made, without passes.
+		 * @param count
+		 *            number of moves.
+		 * @param blackDiscs
+		 *            final number of black discs recorded with the game, -1 if
+		 *            the format does not record it.
+		 */
+		void game(int[] moves, int count, int blackDiscs);
+
+		/**
+		 *
+		 * Counts a record that could not be decoded.
+		 */
+		void malformed();
+	}
+
+	/**
+	 *
+	 * Part of a database file that is read as a whole by one thread.
+	 */
+	public static final class Split {
+
+		private final Path file;
+		private final boolean wthor;
+		private final long start;
+		private final long end;
+
+		private Split(Path file, boolean wthor, long start, long end) {
+
+			this.file = file;
+			this.wthor = wthor;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 *
+		 * Returns the number of bytes of the file this split covers.
+		 *
+		 * @return length of the split.
+		 */
+		public long getLength() {
+
+			return end - start;
+		}
+
+		@Override
+		public String toString() {
+
+			return file + " [" + start + ", " + end + ")";
+		}
+	}
+
+	/**
+	 *
+	 * Returns whether a file is read as a WTHOR database.
+	 *
+	 * @param file
+	 *            database file.
+	 *
+	 * @return true if the file name ends in .wtb.
+	 */
+	public static boolean isWthor(Path file) {
+
+		return file.getFileName().toString().toLowerCase().endsWith(".wtb");
+	}
+
+	/**
+	 *
+	 * Cuts a database file into splits of about the same length. WTHOR files
+	 * are cut between records, text files anywhere, as the reader of a text
+	 * split starts at the first full line and finishes the line it ends in.
+	 *
+	 * @param file
+	 *            database file.
+	 * @param splitBytes
+	 *            most bytes in a split.
+	 *
+	 * @return splits of the file, in order.
+	 *
+	 * @throws IOException
+	 *             if the file can not be read or is not a WTHOR database it
+	 *             claims to be.
+	 */
+	public static List<Split> split(Path file, long splitBytes) throws IOException {
+
+		if (splitBytes < WTHOR_RECORD_BYTES || splitBytes > Integer.MAX_VALUE - MAX_LINE_BYTES) {
+
+			throw new IllegalArgumentException("Split length out of range: " + splitBytes);
+		}
+
+		List<Split> splits = new ArrayList<Split>();
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+
+		try {
+			long size = channel.size();
+			long start = 0;
+			long step = splitBytes;
+			boolean wthor = isWthor(file);
+
+			if (wthor) {
+
+				size = wthorEnd(channel, file);
+				start = WTHOR_HEADER_BYTES;
+				step -= splitBytes % WTHOR_RECORD_BYTES;
+			}
+
+			for (; start < size; start += step) {
+
+				splits.add(new Split(file, wthor, start, Math.min(size, start + step)));
+			}
+		} finally {
+
+			channel.close();
+		}
+
+		return splits;
+	}
+
+	/**
+	 *
+	 * Reads the header of a WTHOR file and returns where its last record
+	 * ends.
+	 */
+	private static long wthorEnd(FileChannel channel, Path file) throws IOException {
+
+		if (channel.size() < WTHOR_HEADER_BYTES) {
+
+			throw new IOException("Not a WTHOR database: " + file);
+		}
+
+		MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, WTHOR_HEADER_BYTES);
+		header.order(ByteOrder.LITTLE_ENDIAN);
+
+		long games = header.getInt(4) & 0xffffffffL;
+		int boardSize = header.get(12);
+
+		// 10x10 boards have longer records
+		if (boardSize != 0 && boardSize != 8) {
+
+			throw new IOException("Not an 8x8 WTHOR database: " + file);
+		}
+
+		// a truncated file keeps the games it has
+		return Math.min(channel.size(), WTHOR_HEADER_BYTES + games * WTHOR_RECORD_BYTES);
+	}
+
+	/**
+	 *
+	 * Maps a split into memory and hands every game in it to a handler.
+	 *
+	 * @param split
+	 *            split to read.
+	 * @param handler
+	 *            handler of the games.
+	 *
+	 * @throws IOException
+	 *             if the file can not be read.
+	 */
+	public static void read(Split split, GameHandler handler) throws IOException {
+
+		FileChannel channel = FileChannel.open(split.file, StandardOpenOption.READ);
+
+		try {
+			// a text split may finish a line past its end, and needs the byte
+			// before its start to know whether it starts on a new line
+			long from = split.wthor || split.start == 0 ? split.start : split.start - 1;
+			long to = split.wthor ? split.end : Math.min(channel.size(), split.end + MAX_LINE_BYTES);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+
+			if (split.wthor) {
+
+				readWthor(buffer, handler);
+			}
+
+			else {
+
+				readText(buffer, (int) (split.start - from), (int) (split.end - from), handler);
+			}
+		} finally {
+
+			channel.close();
+		}
+	}
+
+	private static void readWthor(MappedByteBuffer buffer, GameHandler handler) {
+
+		int[] moves = new int[60];
+
+		for (int record = 0; record + WTHOR_RECORD_BYTES <= buffer.limit(); record += WTHOR_RECORD_BYTES) {
+
+			int count = 0;
+			boolean valid = true;
+
+			for (int i = 0; i < 60; i++) {
+
+				int move = buffer.get(record + WTHOR_MOVES_OFFSET + i) & 0xff;
+
+				if (move == 0) {
+
+					break;
+				}
+
+				int row = move / 10;
+				int col = move % 10;
+
+				if (row < 1 || row > 8 || col < 1 || col > 8) {
+
+					valid = false;
+					break;
+				}
+
+				moves[count++] = square(row, col);
+			}
+
+			if (valid && count > 0) {
+
+				handler.game(moves, count, buffer.get(record + 6) & 0xff);
+			}
+
+			else {
+
+				handler.malformed();
+			}
+		}
+	}
+
+	/**
+	 *
+	 * Decodes the lines that start between two positions of a mapped text
+	 * split.
+	 *
+	 * @param buffer
+	 *            mapped bytes of the split, running on past its end.
+	 * @param start
+	 *            position of the split's start in the buffer.
+	 * @param end
+	 *            position of the split's end in the buffer.
+	 * @param handler
+	 *            handler of the games.
+	 */
+	private static void readText(MappedByteBuffer buffer, int start, int end, GameHandler handler) {
+
+		int[] moves = new int[60];
+		int limit = buffer.limit();
+		int pos = start;
+
+		// line that started in the split before belongs to it
+		if (start > 0 && buffer.get(start - 1) != '\n') {
+
+			while (pos < limit && buffer.get(pos) != '\n') {
+
+				pos++;
+			}
+
+			pos++;
+		}
+
+		while (pos < end) {
+
+			int lineEnd = pos;
+
+			while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+
+				lineEnd++;
+			}
+
+			// line runs past the mapped bytes
+			if (lineEnd == limit && limit - pos >= MAX_LINE_BYTES) {
+
+				handler.malformed();
+				return;
+			}
+
+			parseLine(buffer, pos, lineEnd, moves, handler);
+			pos = lineEnd + 1;
+		}
+	}
+
+	private static void parseLine(MappedByteBuffer buffer, int pos, int end, int[] moves, GameHandler handler) {
+
+		while (pos < end && isSpace(buffer.get(pos))) {
+
+			pos++;
+		}
+
+		if (pos == end || buffer.get(pos) == '#') {
+
+			return;
+		}
+
+		int count = 0;
+
+		while (pos < end) {
+
+			byte c = buffer.get(pos);
+
+			if (isSpace(c)) {
+
+				pos++;
+				continue;
+			}
+
+			if (c == '#') {
+
+				break;
+			}
+
+			if (pos + 1 >= end) {
+
+				handler.malformed();
+				return;
+			}
+
+			int col = Character.toLowerCase((char) c) - 'a' + 1;
+			int row = buffer.get(pos + 1) - '0';
+
+			if (col >= 1 && col <= 8 && row >= 1 && row <= 8) {
+
+				// more moves than squares on the board
+				if (count == moves.length) {
+
+					handler.malformed();
+					return;
+				}
+
+				moves[count++] = square(row, col);
+				pos += 2;
+				continue;
+			}
+
+			// passes are worked out while replaying the game
+			int pass = passLength(buffer, pos, end);
+
+			if (pass == 0) {
+
+				handler.malformed();
+				return;
+			}
+
+			pos += pass;
+		}
+
+		if (count > 0) {
+
+			handler.game(moves, count, -1);
+		}
+
+		else {
+
+			handler.malformed();
+		}
+	}
+
+	private static boolean isSpace(byte c) {
+
+		return c == ' ' || c == '\t' || c == '\r' || c == ',';
+	}
+
+	/**
+	 *
+	 * Returns the length of the pass written at a position of a line, "pass"
+	 * being read whole rather than as "pa" followed by a stray token.
+	 *
+	 * @param buffer
+	 *            mapped split of the file.
+	 * @param pos
+	 *            position of the token, with at least two bytes left.
+	 * @param end
+	 *            end of the line.
+	 *
+	 * @return number of bytes of the pass, 0 if there is none.
+	 */
+	private static int passLength(MappedByteBuffer buffer, int pos, int end) {
+
+		if (buffer.get(pos) == '-' && buffer.get(pos + 1) == '-') {
+
+			return 2;
+		}
+
+		if (!startsWith(buffer, pos, end, "pa")) {
+
+			return 0;
+		}
+
+		return startsWith(buffer, pos, end, "pass") ? 4 : 2;
+	}
+
+	private static boolean startsWith(MappedByteBuffer buffer, int pos, int end, String word) {
+
+		if (end - pos < word.length()) {
+
+			return false;
+		}
+
+		for (int i = 0; i < word.length(); i++) {
+
+			if (Character.toLowerCase((char) buffer.get(pos + i)) != word.charAt(i)) {
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 *
+	 * Returns the square of this program of a move in standard notation,
+	 * mirrored left to right.
+	 *
+	 * @param row
+	 *            row of the move, from 1.
+	 * @param col
+	 *            column of the move, from 1 (a) to 8 (h).
+	 *
+	 * @return square (row * 8 + col).
+	 */
+	private static int square(int row, int col) {
+
+		return Move.of(row - 1, 8 - col);
+	}
+}
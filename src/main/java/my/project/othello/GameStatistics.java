@@ -0,0 +1,850 @@
+package my.project.othello;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *
+ * Counts how often each move was played in the opening positions of recorded
+ * games and how often the player making it went on to win, and writes the
+ * counts as an opening book. Every game is replayed with the move generator
+ * of the program, and games with an illegal move are rejected.
+ * <p>
+ * The database files are cut into splits that worker threads map into memory
+ * and read in parallel. Each worker counts moves in a hash table of a fixed
+ * number of entries. When the table is full it is sorted and written to a
+ * temporary run file, so memory use does not depend on the size of the input.
+ * The runs of all workers are merged into the book at the end, which only
+ * reads them in order.
+ * <p>
+ * Usage: GameStatistics [-threads n] [-plies n] [-min n] [-entries n] book
+ * file..., where the files are WTHOR databases (.wtb) or text files of move
+ * lists, or directories holding them. Positions are counted for the first
+ * plies moves of a game (default 20), and only positions reached by at least
+ * min games (default 2) are written to the book. Each of the threads (default
+ * one per processor) counts up to entries moves (default 1048576) before it
+ * writes a run.
+ *
+ * @author Aleksandr Popov
+ */
+public final class GameStatistics {
+
+	// bytes of a database file read by one worker at a time
+	private static final long SPLIT_BYTES = 64L << 20;
+
+	// bytes of a run file entry, laid out like an entry of a book
+	private static final int ENTRY_BYTES = 20;
+
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private final int plies;
+	private final int tableEntries;
+	private final Path runDirectory;
+	private final List<Path> runs = Collections.synchronizedList(new ArrayList<Path>());
+
+	private long games = 0;
+	private long rejected = 0;
+	private long incomplete = 0;
+	private long malformed = 0;
+	private long bytes = 0;
+
+	/**
+	 *
+	 * Constructor for a GameStatistics object.
+	 *
+	 * @param plies
+	 *            number of moves from the start of a game whose positions are
+	 *            counted.
+	 * @param tableEntries
+	 *            moves each worker counts before it writes a run.
+	 * @param runDirectory
+	 *            directory the run files are written to.
+	 */
+	public GameStatistics(int plies, int tableEntries, Path runDirectory) {
+
+		if (plies < 1 || plies > 60) {
+
+			throw new IllegalArgumentException("Plies must be between 1 and 60: " + plies);
+		}
+
+		if (tableEntries < 1 || tableEntries > 1 << 29) {
+
+			throw new IllegalArgumentException("Table entries must be between 1 and 2^29: " + tableEntries);
+		}
+
+		this.plies = plies;
+		this.tableEntries = tableEntries;
+		this.runDirectory = runDirectory;
+	}
+
+	/**
+	 *
+	 * Replays and counts every game of some database files.
+	 *
+	 * @param files
+	 *            database files.
+	 * @param threads
+	 *            number of worker threads.
+	 *
+	 * @throws IOException
+	 *             if a file can not be read or a run can not be written.
+	 */
+	public void ingest(List<Path> files, int threads) throws IOException {
+
+		if (threads < 1) {
+
+			throw new IllegalArgumentException("Threads must be positive: " + threads);
+		}
+
+		Queue<GameDatabase.Split> splits = new ConcurrentLinkedQueue<GameDatabase.Split>();
+
+		for (Path file : files) {
+
+			splits.addAll(GameDatabase.split(file, SPLIT_BYTES));
+		}
+
+		List<Worker> workers = new ArrayList<Worker>(threads);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>(threads);
+
+			for (int i = 0; i < threads; i++) {
+
+				Worker worker = new Worker(splits);
+
+				workers.add(worker);
+				results.add(pool.submit(worker));
+			}
+
+			for (Future<Void> result : results) {
+
+				result.get();
+			}
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading games", e);
+		} catch (ExecutionException e) {
+
+			if (e.getCause() instanceof IOException) {
+
+				throw (IOException) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		} finally {
+
+			pool.shutdownNow();
+		}
+
+		for (Worker worker : workers) {
+
+			games += worker.games;
+			rejected += worker.rejected;
+			incomplete += worker.incomplete;
+			malformed += worker.malformed;
+			bytes += worker.bytes;
+		}
+	}
+
+	/**
+	 *
+	 * Merges the runs written so far into an opening book and deletes them.
+	 *
+	 * @param book
+	 *            book file to write.
+	 * @param minGames
+	 *            fewest games that must have reached a position for it to be
+	 *            written.
+	 *
+	 * @return number of positions written.
+	 *
+	 * @throws IOException
+	 *             if a run can not be read or the book can not be written.
+	 */
+	public long writeBook(Path book, long minGames) throws IOException {
+
+		PriorityQueue<Run> queue = new PriorityQueue<Run>(Math.max(1, runs.size()), new Comparator<Run>() {
+
+			public int compare(Run a, Run b) {
+
+				int byKey = Long.compare(a.key, b.key);
+
+				return byKey != 0 ? byKey : Integer.compare(a.square, b.square);
+			}
+		});
+
+		OpeningBook.Writer writer = null;
+		long positions = 0;
+
+		try {
+			for (Path path : runs) {
+
+				Run run = new Run(path);
+
+				if (run.next()) {
+
+					queue.add(run);
+				}
+
+				else {
+
+					run.close();
+				}
+			}
+
+			writer = new OpeningBook.Writer(book);
+
+			int[] simulations = new int[64];
+			int[] wins = new int[64];
+			long squares = 0;
+			long key = 0;
+
+			// entries come out by key, so the moves of a position are together
+			while (!queue.isEmpty()) {
+
+				Run run = queue.remove();
+
+				if (squares != 0 && run.key != key) {
+
+					positions += writePosition(writer, key, squares, simulations, wins, minGames);
+					squares = 0;
+				}
+
+				if ((squares & (1L << run.square)) == 0) {
+
+					simulations[run.square] = 0;
+					wins[run.square] = 0;
+					squares |= 1L << run.square;
+				}
+
+				key = run.key;
+				simulations[run.square] = (int) Math.min(Integer.MAX_VALUE,
+						(long) simulations[run.square] + run.simulations);
+				wins[run.square] = (int) Math.min(Integer.MAX_VALUE, (long) wins[run.square] + run.wins);
+
+				if (run.next()) {
+
+					queue.add(run);
+				}
+
+				else {
+
+					run.close();
+				}
+			}
+
+			if (squares != 0) {
+
+				positions += writePosition(writer, key, squares, simulations, wins, minGames);
+			}
+
+			writer.commit();
+		} finally {
+
+			if (writer != null) {
+
+				writer.close();
+			}
+
+			for (Run run : queue) {
+
+				run.close();
+			}
+
+			for (Path path : runs) {
+
+				Files.deleteIfExists(path);
+			}
+
+			runs.clear();
+		}
+
+		return positions;
+	}
+
+	/**
+	 *
+	 * Writes the moves of a position to the book if enough games reached it.
+	 *
+	 * @return 1 if the position was written, 0 otherwise.
+	 */
+	private static int writePosition(OpeningBook.Writer writer, long key, long squares, int[] simulations,
+			int[] wins, long minGames) throws IOException {
+
+		long total = 0;
+
+		for (long remaining = squares; remaining != 0; remaining &= remaining - 1) {
+
+			total += simulations[Long.numberOfTrailingZeros(remaining)];
+		}
+
+		if (total < minGames) {
+
+			return 0;
+		}
+
+		for (long remaining = squares; remaining != 0; remaining &= remaining - 1) {
+
+			int square = Long.numberOfTrailingZeros(remaining);
+
+			writer.add(key, square, simulations[square], wins[square]);
+		}
+
+		return 1;
+	}
+
+	/**
+	 *
+	 * @return games replayed and counted.
+	 */
+	public long getGames() {
+
+		return games;
+	}
+
+	/**
+	 *
+	 * @return games thrown away because one of their moves was illegal.
+	 */
+	public long getRejected() {
+
+		return rejected;
+	}
+
+	/**
+	 *
+	 * @return games thrown away because they stop before the end without a
+	 *         recorded result.
+	 */
+	public long getIncomplete() {
+
+		return incomplete;
+	}
+
+	/**
+	 *
+	 * @return records or lines that could not be decoded.
+	 */
+	public long getMalformed() {
+
+		return malformed;
+	}
+
+	/**
+	 *
+	 * @return bytes of database files read.
+	 */
+	public long getBytes() {
+
+		return bytes;
+	}
+
+	/**
+	 *
+	 * Reads splits until none are left, replaying every game on a position of
+	 * its own and counting its moves in a table of its own.
+	 */
+	private final class Worker implements Callable<Void>, GameDatabase.GameHandler {
+
+		private final Queue<GameDatabase.Split> splits;
+		private final Table table = new Table(tableEntries);
+		private final Position position = new Position();
+
+		// positions of the game being replayed, counted once its result is known
+		private final long[] keys = new long[plies];
+		private final int[] squares = new int[plies];
+		private final boolean[] blackToMove = new boolean[plies];
+
+		private IOException failure = null;
+		private long games = 0;
+		private long rejected = 0;
+		private long incomplete = 0;
+		private long malformed = 0;
+		private long bytes = 0;
+
+		private Worker(Queue<GameDatabase.Split> splits) {
+
+			this.splits = splits;
+		}
+
+		public Void call() throws IOException {
+
+			GameDatabase.Split split;
+
+			while ((split = splits.poll()) != null) {
+
+				GameDatabase.read(split, this);
+				bytes += split.getLength();
+
+				if (failure != null) {
+
+					throw failure;
+				}
+			}
+
+			table.spill();
+
+			return null;
+		}
+
+		public void game(int[] moves, int count, int blackDiscs) {
+
+			position.set(BitBoard.START_X, BitBoard.START_O, 'X');
+
+			int counted = Math.min(count, plies);
+
+			for (int i = 0; i < count; i++) {
+
+				long legal = position.legalMoves();
+
+				// player to move has to pass, passes are not recorded
+				if (legal == 0) {
+
+					position.makeMove(Move.PASS);
+					legal = position.legalMoves();
+				}
+
+				if ((legal & (1L << moves[i])) == 0) {
+
+					rejected++;
+					return;
+				}
+
+				if (i < counted) {
+
+					long own = position.getOwn();
+					long opp = position.getOpp();
+					int symmetry = OpeningBook.symmetry(own, opp);
+
+					keys[i] = OpeningBook.key(own, opp, symmetry);
+					squares[i] = OpeningBook.transform(moves[i], symmetry);
+					blackToMove[i] = position.getNextMovePiece() == 'X';
+				}
+
+				position.makeMove(moves[i]);
+			}
+
+			char winner;
+
+			if (position.legalMoves() == 0 && BitBoard.legalMoves(position.getOpp(), position.getOwn()) == 0) {
+
+				winner = position.getWinner();
+			}
+
+			// game was stopped early, WTHOR gives empty squares to the winner
+			else if (blackDiscs >= 0) {
+
+				winner = blackDiscs > 32 ? 'X' : blackDiscs < 32 ? 'O' : 'T';
+			}
+
+			else {
+
+				incomplete++;
+				return;
+			}
+
+			try {
+				for (int i = 0; i < counted; i++) {
+
+					// doesn't consider a tie as a win
+					table.add(keys[i], squares[i], winner == (blackToMove[i] ? 'X' : 'O'));
+				}
+			} catch (IOException e) {
+
+				failure = e;
+			}
+
+			games++;
+		}
+
+		public void malformed() {
+
+			malformed++;
+		}
+	}
+
+	/**
+	 *
+	 * Open addressing hash table that counts the games and wins of moves by
+	 * canonical position key and square, and is written out as a sorted run
+	 * whenever it fills up. Each entry is two adjacent longs, the key and then
+	 * the square (plus one, so that empty entries are 0) in the top bits with
+	 * the games and wins below it, so a lookup touches a single cache line.
+	 */
+	private final class Table {
+
+		private static final int SQUARE_SHIFT = 56;
+		private static final int GAMES_SHIFT = 28;
+		private static final long COUNT_MASK = (1L << 28) - 1;
+		private static final long ONE_GAME = 1L << GAMES_SHIFT;
+
+		private final long[] entries;
+		private final int mask;
+		private final int limit;
+		private int size = 0;
+
+		private Table(int limit) {
+
+			int capacity = Integer.highestOneBit(Math.max(2, limit + limit / 3 - 1)) << 1;
+
+			entries = new long[2 * capacity];
+			mask = capacity - 1;
+			this.limit = limit;
+		}
+
+		/**
+		 *
+		 * Counts one game through a move.
+		 */
+		private void add(long key, int square, boolean win) throws IOException {
+
+			long stored = (long) (square + 1) << SQUARE_SHIFT;
+			int i = index(key, square);
+
+			while (entries[2 * i + 1] != 0) {
+
+				long value = entries[2 * i + 1];
+
+				if (entries[2 * i] == key && (value & ~((1L << SQUARE_SHIFT) - 1)) == stored) {
+
+					// count is about to overflow, carries on in the next run
+					if (((value >>> GAMES_SHIFT) & COUNT_MASK) == COUNT_MASK) {
+
+						break;
+					}
+
+					entries[2 * i + 1] = value + ONE_GAME + (win ? 1 : 0);
+					return;
+				}
+
+				i = (i + 1) & mask;
+			}
+
+			if (size == limit || entries[2 * i + 1] != 0) {
+
+				spill();
+				i = index(key, square);
+			}
+
+			entries[2 * i] = key;
+			entries[2 * i + 1] = stored | ONE_GAME | (win ? 1 : 0);
+			size++;
+		}
+
+		private int index(long key, int square) {
+
+			long h = (key + square) * 0x9e3779b97f4a7c15L;
+
+			return (int) (h >>> 32) & mask;
+		}
+
+		/**
+		 *
+		 * Writes the entries to a new run in order and empties the table.
+		 */
+		private void spill() throws IOException {
+
+			if (size == 0) {
+
+				return;
+			}
+
+			// moves the entries to the front of the table
+			int n = 0;
+
+			for (int i = 0; i <= mask; i++) {
+
+				if (entries[2 * i + 1] != 0) {
+
+					if (i != n) {
+
+						entries[2 * n] = entries[2 * i];
+						entries[2 * n + 1] = entries[2 * i + 1];
+						entries[2 * i + 1] = 0;
+					}
+
+					n++;
+				}
+			}
+
+			sort(0, n - 1);
+
+			Path run = Files.createTempFile(runDirectory, "games", ".run");
+			runs.add(run);
+
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(run), BUFFER_BYTES));
+
+			try {
+				for (int i = 0; i < n; i++) {
+
+					long value = entries[2 * i + 1];
+
+					out.writeLong(entries[2 * i]);
+					out.writeInt((int) (value >>> SQUARE_SHIFT) - 1);
+					out.writeInt((int) ((value >>> GAMES_SHIFT) & COUNT_MASK));
+					out.writeInt((int) (value & COUNT_MASK));
+				}
+			} finally {
+
+				out.close();
+			}
+
+			Arrays.fill(entries, 0, 2 * n, 0);
+			size = 0;
+		}
+
+		/**
+		 *
+		 * Sorts the entries between two indices (both included) by key and
+		 * then by square. The square is in the top bits of the second long,
+		 * so comparing it compares the squares.
+		 */
+		private void sort(int low, int high) {
+
+			while (high - low > 16) {
+
+				int mid = (low + high) >>> 1;
+				long pivotKey = entries[2 * mid];
+				long pivotValue = entries[2 * mid + 1];
+				int i = low;
+				int j = high;
+
+				while (i <= j) {
+
+					while (compare(i, pivotKey, pivotValue) < 0) {
+
+						i++;
+					}
+
+					while (compare(j, pivotKey, pivotValue) > 0) {
+
+						j--;
+					}
+
+					if (i <= j) {
+
+						swap(i++, j--);
+					}
+				}
+
+				// recurses into the smaller half to bound the stack
+				if (j - low < high - i) {
+
+					sort(low, j);
+					low = i;
+				}
+
+				else {
+
+					sort(i, high);
+					high = j;
+				}
+			}
+
+			for (int i = low + 1; i <= high; i++) {
+
+				for (int j = i; j > low && compare(j, entries[2 * j - 2], entries[2 * j - 1]) < 0; j--) {
+
+					swap(j, j - 1);
+				}
+			}
+		}
+
+		private int compare(int i, long key, long value) {
+
+			int byKey = Long.compare(entries[2 * i], key);
+
+			return byKey != 0 ? byKey : Long.compare(entries[2 * i + 1] >>> SQUARE_SHIFT, value >>> SQUARE_SHIFT);
+		}
+
+		private void swap(int i, int j) {
+
+			long key = entries[2 * i];
+			long value = entries[2 * i + 1];
+
+			entries[2 * i] = entries[2 * j];
+			entries[2 * i + 1] = entries[2 * j + 1];
+			entries[2 * j] = key;
+			entries[2 * j + 1] = value;
+		}
+	}
+
+	/**
+	 *
+	 * Reads the entries of a run in order.
+	 */
+	private static final class Run {
+
+		private final DataInputStream in;
+		private long remaining;
+		private long key;
+		private int square;
+		private int simulations;
+		private int wins;
+
+		private Run(Path path) throws IOException {
+
+			remaining = Files.size(path) / ENTRY_BYTES;
+			in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_BYTES));
+		}
+
+		/**
+		 *
+		 * Reads the next entry.
+		 *
+		 * @return false if the run has no entries left.
+		 */
+		private boolean next() throws IOException {
+
+			if (remaining == 0) {
+
+				return false;
+			}
+
+			key = in.readLong();
+			square = in.readInt();
+			simulations = in.readInt();
+			wins = in.readInt();
+			remaining--;
+
+			return true;
+		}
+
+		private void close() throws IOException {
+
+			in.close();
+		}
+	}
+
+	/**
+	 *
+	 * Adds a database file, or every file of a directory, to a list.
+	 */
+	private static void addFiles(Path path, List<Path> files) throws IOException {
+
+		if (!Files.isDirectory(path)) {
+
+			files.add(path);
+			return;
+		}
+
+		List<Path> entries = new ArrayList<Path>();
+		DirectoryStream<Path> stream = Files.newDirectoryStream(path);
+
+		try {
+			for (Path entry : stream) {
+
+				if (Files.isRegularFile(entry)) {
+
+					entries.add(entry);
+				}
+			}
+		} finally {
+
+			stream.close();
+		}
+
+		Collections.sort(entries);
+		files.addAll(entries);
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		int plies = 20;
+		long minGames = 2;
+		int entries = 1 << 20;
+		int i = 0;
+
+		try {
+			for (; i + 1 < args.length && args[i].startsWith("-"); i += 2) {
+
+				String option = args[i];
+				String value = args[i + 1];
+
+				if (option.equals("-threads")) {
+
+					threads = Integer.parseInt(value);
+				}
+
+				else if (option.equals("-plies")) {
+
+					plies = Integer.parseInt(value);
+				}
+
+				else if (option.equals("-min")) {
+
+					minGames = Long.parseLong(value);
+				}
+
+				else if (option.equals("-entries")) {
+
+					entries = Integer.parseInt(value);
+				}
+
+				else {
+
+					throw new IllegalArgumentException("Unknown option: " + option);
+				}
+			}
+
+			if (args.length - i < 2) {
+
+				throw new IllegalArgumentException("Missing book or database files");
+			}
+		} catch (IllegalArgumentException iae) {
+
+			System.err.println(iae.getMessage());
+			System.err.println("Usage: GameStatistics [-threads n] [-plies n] [-min n] [-entries n] book file...");
+			return;
+		}
+
+		Path book = Paths.get(args[i]).toAbsolutePath();
+		List<Path> files = new ArrayList<Path>();
+
+		for (int j = i + 1; j < args.length; j++) {
+
+			addFiles(Paths.get(args[j]), files);
+		}
+
+		GameStatistics stats = new GameStatistics(plies, entries, book.getParent());
+		long start = System.nanoTime();
+
+		stats.ingest(files, threads);
+
+		long positions = stats.writeBook(book, minGames);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println("Files read- " + files.size() + " (" + stats.getBytes() / (1 << 20) + " MB)");
+		System.out.println("Games counted- " + stats.getGames());
+		System.out.println("Games with illegal moves- " + stats.getRejected());
+		System.out.println("Games without a result- " + stats.getIncomplete());
+		System.out.println("Malformed records- " + stats.getMalformed());
+		System.out.println("Positions in book- " + positions);
+		System.out.printf("Time- %.1f s (%.1f MB/s, %.0f games/s)%n", seconds, stats.getBytes() / seconds / (1 << 20),
+				stats.getGames() / seconds);
+	}
+}
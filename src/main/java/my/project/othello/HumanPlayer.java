@@ -1,6 +1,5 @@
 package my.project.othello;
 
-import java.lang.NumberFormatException;
 import java.util.Scanner;
 
 /**
@@ -41,14 +40,13 @@ public class HumanPlayer extends Player {
 	 *
 	 * Takes input from the user as to what move should be played.
 	 *
-	 * @return string representation of the row and column that the user wishes
-	 *         to move to.
+	 * @return square (row * 8 + col) that the user wishes to move to.
 	 */
-	public String getInput() {
+	public int getInput() {
 
 		String lineUserInput;
 		boolean notValid = true;
-		CoordinatePair humanCoords = null;
+		int move = Move.NONE;
 
 		while (notValid) {
 			System.out.print(
@@ -70,35 +68,17 @@ public class HumanPlayer extends Player {
 
 			}
 
-			//user doesn't want to quit but entered invalid number of arguments
-			if (userInput.length != 2) {
+			//input is a row and a column on the board
+			move = Move.parse(lineUserInput);
 
-				System.out.println("\nInvalid input.\n");
-				continue;
-			}
-			
-			//checks if the input was a number
-			try {
-
-				humanCoords = new CoordinatePair(Integer.parseInt(userInput[0]) - 1,
-						Integer.parseInt(userInput[1]) - 1);
-
-			} catch (NumberFormatException nfe) {
-
-				System.out.println("\nInvalid input.\n");
-				continue;
-			}
-
-			//input is in bounds
-			if (humanCoords.getRow() > 7 || humanCoords.getRow() < 0 || humanCoords.getRow() > 7
-					|| humanCoords.getCol() < 0) {
+			if (move == Move.NONE) {
 
 				System.out.println("\nInvalid input.\n");
 				continue;
 			}
 
 			//this is a valid move
-			if (!hasKey(humanCoords)) {
+			if (!hasMove(move)) {
 
 				System.out.println("\nInvalid input.\n");
 				continue;
@@ -107,6 +87,6 @@ public class HumanPlayer extends Player {
 			notValid = false;
 		}
 
-		return humanCoords.toString();
+		return move;
 	}
 }
@@ -0,0 +1,240 @@
+package my.project.othello;
+
+/**
+ *
+ * Results of a match between two players, counted from the first player's
+ * side. Turns the wins, draws and losses into an Elo difference with a 95%
+ * confidence interval, and into the log-likelihood ratio of a sequential
+ * probability ratio test between two Elo differences.
+ * <p>
+ * Both use a normal approximation of the score of a single game, so they are
+ * only meaningful after a few dozen games. A MatchStats object is not safe to
+ * update from several threads.
+ *
+ * @author Aleksandr Popov
+ */
+public class MatchStats {
+
+	// two-sided 95% quantile of the normal distribution
+	private static final double Z_95 = 1.959964;
+
+	private int wins = 0;
+	private int draws = 0;
+	private int losses = 0;
+
+	/**
+	 *
+	 * Counts the result of a game.
+	 *
+	 * @param winner
+	 *            piece type of the player that won the game, 'T' for a tie.
+	 * @param firstPiece
+	 *            piece type the first player played as.
+	 */
+	public void add(char winner, char firstPiece) {
+
+		if (winner == 'T') {
+
+			draws++;
+		}
+
+		else if (winner == firstPiece) {
+
+			wins++;
+		}
+
+		else {
+
+			losses++;
+		}
+	}
+
+	/**
+	 *
+	 * Returns the number of games counted.
+	 *
+	 * @return number of games.
+	 */
+	public int getGames() {
+
+		return wins + draws + losses;
+	}
+
+	/**
+	 *
+	 * Returns the number of games the first player won.
+	 *
+	 * @return number of wins.
+	 */
+	public int getWins() {
+
+		return wins;
+	}
+
+	/**
+	 *
+	 * Returns the number of tied games.
+	 *
+	 * @return number of draws.
+	 */
+	public int getDraws() {
+
+		return draws;
+	}
+
+	/**
+	 *
+	 * Returns the number of games the first player lost.
+	 *
+	 * @return number of losses.
+	 */
+	public int getLosses() {
+
+		return losses;
+	}
+
+	/**
+	 *
+	 * Returns the first player's average score, where a win is worth 1 and a
+	 * draw 0.5.
+	 *
+	 * @return average score, 0.5 if no games were counted.
+	 */
+	public double getScore() {
+
+		int games = getGames();
+
+		return games == 0 ? 0.5 : (wins + 0.5 * draws) / games;
+	}
+
+	/**
+	 *
+	 * Returns the Elo difference between the first and the second player.
+	 *
+	 * @return Elo difference, infinite if one player won every game.
+	 */
+	public double getElo() {
+
+		return scoreToElo(getScore());
+	}
+
+	/**
+	 *
+	 * Returns half the width of the 95% confidence interval of the Elo
+	 * difference.
+	 *
+	 * @return error of the Elo difference, infinite if it can not be bounded
+	 *         yet or one player won every game.
+	 */
+	public double getEloError() {
+
+		int games = getGames();
+		double score = getScore();
+
+		if (games < 2 || score == 0 || score == 1) {
+
+			return Double.POSITIVE_INFINITY;
+		}
+
+		double error = Z_95 * Math.sqrt(variance(score) / games);
+
+		return (scoreToElo(Math.min(1, score + error)) - scoreToElo(Math.max(0, score - error))) / 2;
+	}
+
+	/**
+	 *
+	 * Returns the log-likelihood ratio of the hypothesis that the first player
+	 * is elo1 stronger than the second against the hypothesis that it is elo0
+	 * stronger.
+	 *
+	 * @param elo0
+	 *            Elo difference under the null hypothesis.
+	 * @param elo1
+	 *            Elo difference under the alternative hypothesis.
+	 *
+	 * @return log-likelihood ratio, 0 before the first game.
+	 */
+	public double getLlr(double elo0, double elo1) {
+
+		int games = getGames();
+
+		if (games == 0) {
+
+			return 0;
+		}
+
+		double w = wins;
+		double d = draws;
+		double l = losses;
+
+		// every game had the same result, half a win and half a loss keep the
+		// variance above 0 so that a one-sided match still ends the test
+		if (w == games || d == games || l == games) {
+
+			w += 0.5;
+			l += 0.5;
+		}
+
+		double n = w + d + l;
+		double score = (w + d / 2) / n;
+		double variance = (w * (1 - score) * (1 - score) + d * (0.5 - score) * (0.5 - score) + l * score * score)
+				/ n;
+		double score0 = eloToScore(elo0);
+		double score1 = eloToScore(elo1);
+
+		return games * (score1 - score0) * (2 * score - score0 - score1) / (2 * variance);
+	}
+
+	/**
+	 *
+	 * Returns the variance of the score of a single game.
+	 *
+	 * @param score
+	 *            average score.
+	 *
+	 * @return variance of a game's score around the average.
+	 */
+	private double variance(double score) {
+
+		int games = getGames();
+
+		if (games == 0) {
+
+			return 0;
+		}
+
+		double w = (double) wins / games;
+		double d = (double) draws / games;
+		double l = (double) losses / games;
+
+		return w * (1 - score) * (1 - score) + d * (0.5 - score) * (0.5 - score) + l * score * score;
+	}
+
+	/**
+	 *
+	 * Converts an Elo difference to the expected score of the stronger side.
+	 *
+	 * @param elo
+	 *            Elo difference.
+	 *
+	 * @return expected score.
+	 */
+	public static double eloToScore(double elo) {
+
+		return 1 / (1 + Math.pow(10, -elo / 400));
+	}
+
+	/**
+	 *
+	 * Converts an average score to an Elo difference.
+	 *
+	 * @param score
+	 *            average score between 0 and 1.
+	 *
+	 * @return Elo difference, infinite for a score of 0 or 1.
+	 */
+	public static double scoreToElo(double score) {
+
+		return -400 * Math.log10(1 / score - 1);
+	}
+}
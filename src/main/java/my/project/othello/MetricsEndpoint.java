@@ -0,0 +1,96 @@
+package my.project.othello;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ *
+ * Serves the search metrics at http://localhost:port/metrics in the
+ * Prometheus text format, so a monitoring system can scrape them. Only
+ * listens on the loopback address.
+ *
+ * @author Aleksandr Popov
+ */
+public class MetricsEndpoint {
+
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final HttpServer server;
+
+	/**
+	 *
+	 * Constructor for a MetricsEndpoint object. The endpoint does not accept
+	 * requests until it is started.
+	 *
+	 * @param port
+	 *            port to listen on, 0 for any free port.
+	 *
+	 * @throws IOException
+	 *             if the port can not be opened.
+	 */
+	public MetricsEndpoint(int port) throws IOException {
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/metrics", new HttpHandler() {
+
+			public void handle(HttpExchange exchange) throws IOException {
+
+				try {
+					if (!exchange.getRequestMethod().equals("GET")) {
+
+						exchange.sendResponseHeaders(405, -1);
+						return;
+					}
+
+					byte[] body = SearchMetrics.get().toPrometheus().getBytes(StandardCharsets.UTF_8);
+
+					exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+					exchange.sendResponseHeaders(200, body.length);
+
+					OutputStream out = exchange.getResponseBody();
+					out.write(body);
+					out.close();
+				} finally {
+
+					exchange.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 *
+	 * Starts accepting requests on a background thread.
+	 */
+	public void start() {
+
+		server.start();
+	}
+
+	/**
+	 *
+	 * Stops accepting requests and closes the port.
+	 */
+	public void stop() {
+
+		server.stop(0);
+	}
+
+	/**
+	 *
+	 * Returns the port the endpoint listens on.
+	 *
+	 * @return port number.
+	 */
+	public int getPort() {
+
+		return server.getAddress().getPort();
+	}
+}
@@ -1,8 +1,21 @@
 package my.project.othello;
 
+import java.io.IOException;
 import java.lang.Math;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Class IntelligentComputerPlayer, implements Monte Carlo Tree Search Algorithm
@@ -13,10 +26,47 @@ import java.util.List;
  */
 public class MonteCarloPlayer extends Player {
 
-	private int time;
-	private char[][] currentBoard;
+	private TimeManager clock;
+	private long currentOwn;
+	private long currentOpp;
 	private Node currentGameState = null;
 	private boolean debug;
+	private boolean quiet = false;
+	private SearchConfig config;
+	private ExecutorService workers = null;
+	private TranspositionTable table = null;
+	private NodePool[] workerPools = null;
+	private TreePruner pruner;
+	private long[] lastWins = new long[64];
+	private long[] lastSims = new long[64];
+	private EndgameSolver solver = null;
+	private ForkJoinPool solverPool = null;
+	private ExecutorService snapshotWriter = null;
+	private final AtomicReference<Node> snapshotPending = new AtomicReference<Node>();
+	private final AtomicBoolean snapshotWriting = new AtomicBoolean();
+	private final RandomSource random;
+	private List<Future<Integer>> ponderResults = null;
+	private volatile int ponderState = NOT_PONDERING;
+
+	private static final int NOT_PONDERING = 0;
+	private static final int PONDERING = 1;
+	private static final int STOPPING = 2;
+
+	// longest possible path from a root, one node per move left in the game
+	private static final int MAX_DEPTH = 64;
+
+	// simulations between two looks at the clock, a power of two
+	private static final int CHECK_INTERVAL = 16;
+
+	// positions the endgame solver's hash table holds
+	private static final int SOLVER_TABLE_SIZE = 1 << 20;
+
+	// share of the move's time the endgame solver may use before the
+	// simulations take over
+	private static final double SOLVER_SHARE = 0.75;
+
+	// longest shutdown waits for the last snapshot of the tree to be written
+	private static final long SNAPSHOT_WAIT_SECONDS = 10;
 
 	/**
 	 *
@@ -34,6 +84,50 @@ public class MonteCarloPlayer extends Player {
 	 */
 	public MonteCarloPlayer(char piece_local, int time, boolean debug) {
 
+		this(piece_local, time, debug, new SearchConfig());
+	}
+
+	/**
+	 *
+	 * Constructor for a player type IntelligentComputerPlayer with custom
+	 * search settings.
+	 *
+	 * @param piece_local
+	 *            sets piece that this player is playing as, also deduces piece
+	 *            that opponent is playing.
+	 * @param time
+	 *            time (in seconds) that IntelligentComputerPlayer has to make a
+	 *            move.
+	 * @param debug
+	 *            if set to true in constructor, will display information
+	 *            regarding computer's logic.
+	 * @param config
+	 *            settings that control how the search is run.
+	 */
+	public MonteCarloPlayer(char piece_local, int time, boolean debug, SearchConfig config) {
+
+		this(piece_local, new TimeManager(1000L * time), debug, config);
+	}
+
+	/**
+	 *
+	 * Constructor for a player type IntelligentComputerPlayer whose thinking
+	 * time is decided by a time manager, such as a game clock.
+	 *
+	 * @param piece_local
+	 *            sets piece that this player is playing as, also deduces piece
+	 *            that opponent is playing.
+	 * @param clock
+	 *            decides how long IntelligentComputerPlayer has to make each
+	 *            move.
+	 * @param debug
+	 *            if set to true in constructor, will display information
+	 *            regarding computer's logic.
+	 * @param config
+	 *            settings that control how the search is run.
+	 */
+	public MonteCarloPlayer(char piece_local, TimeManager clock, boolean debug, SearchConfig config) {
+
 		piece = piece_local;
 
 		if (piece_local == 'X') {
@@ -46,8 +140,34 @@ public class MonteCarloPlayer extends Player {
 			otherPiece = 'X';
 		}
 
-		this.time = time;
+		this.clock = clock;
 		this.debug = debug;
+		this.config = config;
+
+		long budget = config.getNodeBudget();
+
+		// by default the tree may fill a quarter of the heap
+		if (budget == 0) {
+
+			budget = Math.max(2, Runtime.getRuntime().maxMemory() / 4 / TreePruner.BYTES_PER_NODE);
+		}
+
+		pruner = new TreePruner(budget);
+
+		// every search thread gets a generator split from this one, in a fixed
+		// order, so a seeded player always searches the same way
+		random = RandomSource.create(config.getGenerator(),
+				config.getSeed() != 0 ? config.getSeed() : RandomSource.newSeed());
+
+		if (config.getTableSize() > 0) {
+
+			table = new TranspositionTable(config.getTableSize());
+		}
+
+		if (config.getSnapshotFile() != null && Files.exists(config.getSnapshotFile())) {
+
+			loadTree(config.getSnapshotFile());
+		}
 	}
 
 	/**
@@ -56,178 +176,225 @@ public class MonteCarloPlayer extends Player {
 	 * situations) until a win or loss, then backpropogates that result up the
 	 * tree.
 	 *
-	 * @return String returns board position that this player thinks will lead
-	 *         to a win.
+	 * @return square (row * 8 + col) that this player thinks will lead to a
+	 *         win.
 	 */
-	public String getInput() {
-
-		char winner;
-		boolean result;
+	public int getInput() {
 
-		if (!debug) {
+		if (!debug && !quiet) {
 			System.out.print(
 					"Player " + (piece == 'X' ? "1" : "2") + " please make a move with the " + piece + " piece: ");
 		}
 
-		// player object created for simulation purposes
-		PseudoPlayer testPlayer = new PseudoPlayer(piece);
-		Node testNode = null;
-		boolean foundState = false;
+		long moveStart = System.nanoTime();
+		long xBits = piece == 'X' ? currentOwn : currentOpp;
+		long oBits = piece == 'X' ? currentOpp : currentOwn;
 
-		// computer has already moved
-		if (currentGameState != null) {
+		// sets up timer to measure how long computer can calculate, finding
+		// the current game state counts against the time as well
+		clock.startMove(64 - Long.bitCount(xBits | oBits));
+
+		long own = piece == 'X' ? xBits : oBits;
+		long opp = piece == 'X' ? oBits : xBits;
+		OpeningBook book = config.getOpeningBook();
 
-			List<Node> prevRoots = currentGameState.getChildren();
-			List<Node> currRoots = null;
+		// position was searched deeply ahead of time
+		if (book != null) {
 
-			// play has passed as normal from one player to the other
-			for (int i = 0; i < prevRoots.size(); i++) {
-				for (int j = 0; j < prevRoots.get(i).getChildren().size(); j++) {
+			int square = book.getMove(own, opp);
 
-					currRoots = prevRoots.get(i).getChildren();
+			if (square >= 0) {
 
-					if (currRoots.get(j).equalsGameState(currentBoard)) {
+				return playWithoutSearch(square, "opening book", moveStart);
+			}
+		}
 
-						currentGameState = currRoots.get(j);
-						currentGameState.setParent();
-						currentGameState.buildChain();
+		// few enough squares are left to play the rest of the game perfectly
+		if (64 - Long.bitCount(xBits | oBits) <= config.getEndgameEmpties()) {
 
-						foundState = true;
-						break;
-					}
-				}
+			int solved = solveEndgame(own, opp, moveStart);
+
+			if (solved != Move.NONE) {
+
+				return solved;
 			}
 		}
 
 		/*
-		 * some kind of abnormality has occurred in play (a player has repeated
-		 * their move) or first move of the board for monte carlo player
+		 * the table only holds nodes of the current search, so that it never
+		 * keeps subtrees of earlier moves from being collected
 		 */
-		if (!foundState || currentGameState == null) {
+		if (table != null) {
 
-			testPlayer.analyzeMoves(currentBoard);
-			currentGameState = new Node(currentBoard, null, piece, null);
-			currentGameState.buildChain();
+			table.clear();
 		}
 
-		// sets up timer to measure how long computer can calculate
-		long currentTime = System.currentTimeMillis();
-		long targetTime = currentTime + (1000 * time);
-
-		int numSims = 0;
+		// computer has already moved, follows its own move and the moves made
+		// since then down the previous tree
+		if (currentGameState != null) {
 
-		// while computer has time to think
-		while (targetTime > currentTime) {
+			currentGameState = followMoves(currentGameState, xBits, oBits, piece);
+		}
 
-			testNode = currentGameState.getRandomNode();
+		/*
+		 * current game state was not searched in the previous tree or this is
+		 * the first move of the board for monte carlo player
+		 */
+		if (currentGameState == null) {
 
-			// loops until a win or a loss
-			while (true) {
+			currentGameState = new Node(xBits, oBits, piece, Move.NONE);
+			pruner.newTree();
+		}
 
-				// a simulation has not gone through this node, so children of
-				// this node are created
-				if (!testNode.wasUsed()) {
+		currentGameState.expand();
+		long reused = currentGameState.getSimulations();
+		long evicted = pruner.getEvicted();
 
-					testNode.buildChain();
-				}
+		if (debug) {
+			System.out.println("Simulations Reused From Previous Search- " + reused);
+		}
 
-				// if it is possible for the correct player to make a move from
-				// this board state
-				if (testNode.hasNodes()) {
+		int threads = config.getThreads();
+		NodePool[] pools = new NodePool[0];
+		int numSims = 0;
 
-					testNode = testNode.getRandomNode();
-				}
+		// this thread searches as well in single thread and leaf parallel mode
+		RandomSource.setCurrent(random.split());
 
-				// no possible children
-				else {
+		// single thread searches the current game state directly
+		if (threads == 1) {
 
-					// flips which player is to move and build tree of children
-					testNode.regenerateChain();
+			numSims = runSimulations(currentGameState, table, false);
+		}
 
-					if (testNode.hasNodes()) {
+		// tree parallelization, every thread descends the current game state
+		else if (config.getMode() == SearchMode.TREE_PARALLEL) {
 
-						testNode = testNode.getRandomNode();
-					}
+			List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
 
-					// win, loss, or tie has been achieved
-					else {
+			for (int i = 0; i < threads; i++) {
 
-						break;
-					}
-				}
+				tasks.add(simulationTask(currentGameState, table, true));
 			}
 
-			// simulation has run to the end
-			winner = Board.getWinner(testNode.boardStateCopy());
+			numSims = runAll(tasks);
+		}
 
-			// doesn't consider a tie as a success
-			if (winner == piece) {
+		// leaf parallelization, playouts from each leaf are shared out
+		else if (config.getMode() == SearchMode.LEAF_PARALLEL) {
 
-				result = true;
-			}
+			numSims = runLeafParallel(currentGameState, table);
+		}
 
-			else {
+		/*
+		 * root parallelization, every thread grows its own tree from the current
+		 * game state and the results are merged once time has run out. Only the
+		 * first tree is kept for the next move, the others are thrown away and
+		 * live in node pools
+		 */
+		else {
 
-				result = false;
-			}
+			List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+			pools = getWorkerPools();
 
-			// backpropogation to a root of the current game state
-			while (testNode.hasParent()) {
+			tasks.add(simulationTask(currentGameState, table, false));
 
-				testNode.updateStats(result);
-				testNode = testNode.getParent();
-			}
+			for (int i = 0; i < pools.length; i++) {
 
-			testNode.updateStats(result);
-			currentTime = System.currentTimeMillis();
+				tasks.add(pooledSimulationTask(pools[i], xBits, oBits));
+			}
 
-			numSims++;
+			numSims = runAll(tasks);
 		}
 
 		// prints number of simulations computer has run through
 		if (debug) {
 			System.out.println("Number of Simluations Completed- " + numSims);
+			System.out.println("Nodes Evicted To Stay Under Budget- " + (pruner.getEvicted() - evicted));
 			System.out.println("");
 		}
 
 		// time has run out to think and computer must make a decision
-		List<Node> listOfRoots = currentGameState.getChildren();
+		int numMoves = currentGameState.getChildCount();
 		List<Double> formulaVals = new ArrayList<Double>();
-		Node computingNode = null;
+		long[] wins = new long[64];
+		long[] sims = new long[64];
+		int move;
 		double winLossRatio;
 
+		// merges the statistics of each move across all of the trees, moves
+		// no simulation went through have no child
+		for (int i = 0; i < numMoves; i++) {
+
+			Node child = currentGameState.getChildAt(i);
+
+			if (child != null) {
+
+				move = currentGameState.getMoveAt(i);
+				wins[move] += child.getWins();
+				sims[move] += child.getSimulations();
+			}
+		}
+
+		for (int i = 0; i < pools.length; i++) {
+
+			int first = pools[i].getFirstChild(0);
+
+			for (int child = first; child < first + pools[i].getChildCount(0); child++) {
+
+				wins[pools[i].getMove(child)] += pools[i].getWins(child);
+				sims[pools[i].getMove(child)] += pools[i].getSimulations(child);
+			}
+		}
+
+		lastWins = wins;
+		lastSims = sims;
+
 		double lnTotalSims = 0;
 
-		for (int i = 0; i < listOfRoots.size(); i++) {
+		for (int i = 0; i < numMoves; i++) {
 
-			lnTotalSims += listOfRoots.get(i).getSimulations();
+			lnTotalSims += sims[currentGameState.getMoveAt(i)];
 		}
 
 		lnTotalSims = Math.log(lnTotalSims);
 
 		/*
-		 * operation of formula created by Levente Kocsis and Csaba Szepevari
-		 * creates an upper confidence bound which helps decide which node to go
-		 * down. Solution for the multi armed bandit problem
+		 * scores every move according to the final move policy. The upper
+		 * confidence bound is the formula created by Levente Kocsis and Csaba
+		 * Szepevari, solution for the multi armed bandit problem
 		 */
-		for (int i = 0; i < listOfRoots.size(); i++) {
+		for (int i = 0; i < numMoves; i++) {
 
-			computingNode = listOfRoots.get(i);
+			move = currentGameState.getMoveAt(i);
 
-			winLossRatio = (double) computingNode.getWins() / computingNode.getSimulations();
+			winLossRatio = sims[move] == 0 ? 0 : (double) wins[move] / sims[move];
 
 			// formula computation
-			formulaVals.add(winLossRatio + (Math.sqrt(2) * (Math.sqrt(lnTotalSims / computingNode.getSimulations()))));
+			if (config.getMovePolicy() == MovePolicy.ROBUST_CHILD) {
+
+				formulaVals.add((double) sims[move]);
+			}
+
+			else if (config.getMovePolicy() == MovePolicy.MAX_CHILD) {
+
+				formulaVals.add(winLossRatio);
+			}
+
+			else {
+
+				formulaVals.add(ucb(winLossRatio, lnTotalSims, sims[move]));
+			}
 
 			if (debug) {
 				System.out.println("Formula value is " + formulaVals.get(i));
 			}
 
 			if (debug) {
-				System.out.print("The move at (" + (CoordinatePair.decodeRow(computingNode.getPrevMove()) + 1));
-				System.out.print(", " + (CoordinatePair.decodeCol(computingNode.getPrevMove()) + 1) + ") ");
-				System.out.print("would have won " + computingNode.getWins() + "/");
-				System.out.print(computingNode.getSimulations() + " (" + winLossRatio * 100 + "%) times.\n\n");
+				System.out.print("The move at (" + (Move.row(move) + 1));
+				System.out.print(", " + (Move.col(move) + 1) + ") ");
+				System.out.print("would have won " + wins[move] + "/");
+				System.out.print(sims[move] + " (" + winLossRatio * 100 + "%) times.\n\n");
 			}
 		}
 
@@ -244,44 +411,1416 @@ public class MonteCarloPlayer extends Player {
 			}
 		}
 
-		String returnString = listOfRoots.get(highestValLocation).getPrevMove();
+		int returnMove = currentGameState.getMoveAt(highestValLocation);
 
 		if (debug) {
 
 			System.out.print(piece + " Player made a move to ");
 		}
 
-		System.out.print(
-				(CoordinatePair.decodeRow(returnString) + 1) + " " + (CoordinatePair.decodeCol(returnString) + 1));
+		if (!quiet) {
+
+			System.out.print(Move.toString(returnMove));
+
+			if (debug) {
+
+				System.out.println(" (winrate of " + (((double) wins[returnMove] / sims[returnMove]) * 100) + "%)");
+			}
+
+			System.out.println("");
+		}
+
+		long timeUsed = clock.endMove();
+		SearchMetrics.get().recordMove(System.nanoTime() - moveStart, numSims, reused);
 
 		if (debug) {
 
-			System.out.println(" (winrate of " + (((double) listOfRoots.get(highestValLocation).getWins()
-					/ listOfRoots.get(highestValLocation).getSimulations()) * 100) + "%)");
+			System.out.print("Time Used- " + timeUsed + " ms");
+			System.out.println(clock.isGameClock() ? " (" + clock.getRemainingMillis() + " ms left)\n" : "\n");
+		}
+
+		// move may only have been searched in the node pools
+		Node next = expandChild(currentGameState, highestValLocation, currentGameState, table);
+
+		if (config.getSnapshotFile() != null && next != null) {
+
+			saveTree(next);
 		}
 
-		System.out.println("");
+		if (config.isPondering() && next != null) {
+
+			startPondering(next);
+		}
 
-		return returnString;
+		return returnMove;
 	}
 
-	@Override
+	/**
+	 *
+	 * Carries on from a search tree saved by an earlier run of the program.
+	 * The next call to getInput follows the moves made since the tree was
+	 * saved down the tree, and starts a new one if the game does not follow
+	 * from it.
+	 *
+	 * @param file
+	 *            file written by TreeSnapshot.
+	 */
+	private void loadTree(Path file) {
+
+		try {
+			TreeSnapshot snapshot = TreeSnapshot.read(file, table);
+
+			currentGameState = snapshot.getRoot();
+			pruner.newTree();
+			pruner.created((int) Math.min(Integer.MAX_VALUE, snapshot.getNodes() - 1));
+
+			if (debug) {
+				System.out.println("Nodes Loaded From Saved Search- " + snapshot.getNodes());
+			}
+		} catch (IOException e) {
+
+			// starts from scratch rather than refusing to play
+			if (debug) {
+				System.out.println("Saved Search Could Not Be Loaded- " + e.getMessage());
+			}
+		}
+	}
 
 	/**
 	 *
-	 * Updates Hashmap for key-value pairs of where this player can move.
-	 * <p>
-	 * Overrides method written in Player class by updating current board state
-	 * in IntelligentComputerPlayer class. Still performs analyze moves
-	 * implemented in Player class however.
+	 * Writes the top levels of the tree below a node to the snapshot file on a
+	 * background thread, so that the next move is not kept waiting. If the
+	 * previous snapshot is still being written, the writer goes on to the
+	 * newest node once it is done, so the file always ends up holding the
+	 * latest position.
+	 *
+	 * @param node
+	 *            node of the position after this player's move.
+	 */
+	private void saveTree(Node node) {
+
+		snapshotPending.set(node);
+
+		// a writer that is already running picks up the node
+		if (!snapshotWriting.compareAndSet(false, true)) {
+
+			return;
+		}
+
+		if (snapshotWriter == null) {
+
+			snapshotWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+				public Thread newThread(Runnable r) {
+
+					Thread t = new Thread(r, "snapshot-" + piece);
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+
+		snapshotWriter.execute(new Runnable() {
+
+			public void run() {
+
+				while (true) {
+
+					Node next = snapshotPending.getAndSet(null);
+
+					if (next != null) {
+
+						try {
+							TreeSnapshot.write(next, config.getSnapshotDepth(), config.getSnapshotFile());
+						} catch (IOException e) {
+
+							System.err.println("Search Could Not Be Saved- " + e.getMessage());
+						}
+
+						continue;
+					}
+
+					snapshotWriting.set(false);
+
+					// a node set just before the flag was cleared has no
+					// writer of its own
+					if (snapshotPending.get() == null || !snapshotWriting.compareAndSet(false, true)) {
+
+						return;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 *
+	 * Plays the move the endgame solver proves to be best.
+	 *
+	 * @param own
+	 *            bitboard of this player's pieces.
+	 * @param opp
+	 *            bitboard of the other player's pieces.
+	 * @param moveStart
+	 *            value of System.nanoTime when the move was asked for.
+	 *
+	 * @return move to make, or Move.NONE if the solver ran out of time and the
+	 *         simulations have to decide.
+	 */
+	private int solveEndgame(long own, long opp, long moveStart) {
+
+		EndgameSolver.Result result = getSolver().solve(own, opp, clock.getDeadline(SOLVER_SHARE));
+
+		if (debug) {
+			System.out.println(result == null ? "Endgame Solver Ran Out Of Time" : "Endgame Positions Solved- "
+					+ result.getNodes());
+		}
+
+		if (result == null) {
+
+			return Move.NONE;
+		}
+
+		// the player has a legal move, so a solved position always has a best move
+		if (result.getMove() < 0) {
+
+			throw new IllegalStateException("Endgame solver returned no move for a position with legal moves");
+		}
+
+		int score = result.getScore();
+		String outcome = score > 0 ? "wins" : score < 0 ? "loses" : "draws";
+
+		return playWithoutSearch(result.getMove(),
+				"solved, " + outcome + (result.isExact() && score != 0 ? " by " + Math.abs(score) : ""), moveStart);
+	}
+
+	/**
+	 *
+	 * Makes a move that was decided without searching, from the opening book
+	 * or the endgame solver. The search tree is thrown away, since it holds
+	 * nothing about the positions that follow.
+	 *
+	 * @param square
+	 *            square (row * 8 + col) of the move.
+	 * @param reason
+	 *            why the move was chosen, printed in debug mode.
+	 * @param moveStart
+	 *            value of System.nanoTime when the move was asked for.
+	 *
+	 * @return move to make.
+	 */
+	private int playWithoutSearch(int square, String reason, long moveStart) {
+
+		currentGameState = null;
+
+		// no move was simulated, the statistics of the last search are stale
+		lastWins = new long[64];
+		lastSims = new long[64];
+
+		if (debug) {
+
+			System.out.print(piece + " Player made a move to ");
+		}
+
+		if (!quiet) {
+
+			System.out.print(Move.toString(square));
+
+			if (debug) {
+
+				System.out.println(" (" + reason + ")");
+			}
+
+			System.out.println("");
+		}
+
+		long timeUsed = clock.endMove();
+		SearchMetrics.get().recordMove(System.nanoTime() - moveStart, 0, 0);
+
+		if (debug) {
+
+			System.out.print("Time Used- " + timeUsed + " ms");
+			System.out.println(clock.isGameClock() ? " (" + clock.getRemainingMillis() + " ms left)\n" : "\n");
+		}
+
+		return square;
+	}
+
+	/**
+	 *
+	 * Keeps searching the tree below the move this player just made while the
+	 * opponent decides on a reply. The search runs in the background on the
+	 * thread pool, sharing the tree between all threads, until stopPondering
+	 * is called. The next call to getInput then carries on from the subtree of
+	 * the reply that was actually made.
+	 *
+	 * @param node
+	 *            node of the position after this player's move.
+	 */
+	private void startPondering(Node node) {
+
+		node.expand();
+
+		// game is over, nothing to think about
+		if (!node.hasNodes()) {
+
+			return;
+		}
+
+		int threads = config.getThreads();
+		ponderResults = new ArrayList<Future<Integer>>(threads);
+		ponderState = PONDERING;
+
+		for (int i = 0; i < threads; i++) {
+
+			ponderResults.add(getWorkers().submit(simulationTask(node, table, threads > 1)));
+		}
+	}
+
+	/**
+	 *
+	 * Returns the number of simulations of a move at the last search, merged
+	 * across all search trees.
+	 *
+	 * @param square
+	 *            square (row * 8 + col) of the move.
+	 *
+	 * @return simulations of the move, 0 if it was not searched.
+	 */
+	public long getLastSimulations(int square) {
+
+		return lastSims[square];
+	}
+
+	/**
+	 *
+	 * Returns the number of simulations of a move that were won at the last
+	 * search, merged across all search trees.
+	 *
+	 * @param square
+	 *            square (row * 8 + col) of the move.
+	 *
+	 * @return wins of the move.
+	 */
+	public long getLastWins(int square) {
+
+		return lastWins[square];
+	}
+
+	/**
 	 *
-	 * @param board
-	 *            current state of the board as a 2D char array.
+	 * Sets whether the player prints its moves. A quiet player prints nothing
+	 * unless it is in debug mode, so it can play games without a console.
+	 *
+	 * @param quiet
+	 *            true to stop printing moves and prompts.
 	 */
-	public void analyzeMoves(char[][] board) {
+	public void setQuiet(boolean quiet) {
+
+		this.quiet = quiet;
+	}
+
+	/**
+	 *
+	 * Replaces the time manager that decides how long each move may take, so
+	 * that every request to a server can bring its own budget.
+	 *
+	 * @param clock
+	 *            time manager of the next moves.
+	 */
+	public void setClock(TimeManager clock) {
+
+		this.clock = clock;
+	}
+
+	/**
+	 *
+	 * Returns the root of the tree the last move was searched in. The tree
+	 * keeps growing if the player ponders.
+	 *
+	 * @return node of the position of the last move, or null if the move was
+	 *         decided without searching.
+	 */
+	public Node getSearchTree() {
+
+		return currentGameState;
+	}
+
+	/**
+	 *
+	 * Returns the number of nodes in the search tree.
+	 *
+	 * @return number of nodes, or more if nodes were dropped since the tree
+	 *         was last counted.
+	 */
+	public long getTreeNodes() {
+
+		return pruner.getNodes();
+	}
+
+	/**
+	 *
+	 * Carries on from a tree grown earlier, by this player or another one. The
+	 * next call to getInput follows the moves made since the node down the
+	 * tree, and starts a new one if the position does not follow from it. The
+	 * tree must not be searched by another player at the same time.
+	 *
+	 * @param node
+	 *            node to search from, or null to start the next search with a
+	 *            new tree.
+	 */
+	public void setSearchTree(Node node) {
+
+		stopPondering();
+		currentGameState = node;
+		pruner.newTree();
+
+		// counts the nodes of the tree, cutting it down if it is over budget
+		if (node != null) {
+
+			pruner.prune(node, table);
+		}
+	}
+
+	/**
+	 *
+	 * Stops any search during the opponent's turn and releases the search
+	 * threads. The player must not be asked for another move afterwards.
+	 */
+	public void shutdown() {
+
+		stopPondering();
+
+		if (workers != null) {
+
+			workers.shutdown();
+			workers = null;
+		}
+
+		if (solverPool != null) {
+
+			solverPool.shutdown();
+			solverPool = null;
+			solver = null;
+		}
+
+		// lets the last snapshot finish, so the saved tree is complete
+		if (snapshotWriter != null) {
+
+			snapshotWriter.shutdown();
+
+			try {
+				snapshotWriter.awaitTermination(SNAPSHOT_WAIT_SECONDS, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+
+				Thread.currentThread().interrupt();
+			}
+
+			snapshotWriter = null;
+		}
+	}
+
+	/**
+	 *
+	 * Stops searching during the opponent's turn and waits for the background
+	 * search to finish. Called automatically once the opponent has moved, and
+	 * should be called when the game ends so that no search is left running.
+	 */
+	public void stopPondering() {
+
+		if (ponderResults == null) {
+
+			return;
+		}
+
+		ponderState = STOPPING;
+		int numSims = 0;
+
+		try {
+			for (Future<Integer> result : ponderResults) {
+
+				numSims += result.get();
+			}
+		} catch (InterruptedException ie) {
+
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException ee) {
+
+			throw new IllegalStateException("Search thread failed", ee.getCause());
+		} finally {
+
+			ponderResults = null;
+			ponderState = NOT_PONDERING;
+		}
+
+		if (debug) {
+			System.out.println("Simulations Completed During Opponent's Turn- " + numSims);
+		}
+	}
+
+	/**
+	 *
+	 * Checks whether the search has to stop. The clock is only read every
+	 * CHECK_INTERVAL simulations, which is far less than a millisecond of
+	 * searching. Between the soft and the hard deadline the search keeps going
+	 * while it is unstable. A search during the opponent's turn runs until it
+	 * is stopped instead, and a search with a simulation limit stops once the
+	 * limit is reached.
+	 *
+	 * @param numSims
+	 *            simulations the calling thread has completed, the clock is
+	 *            read whenever this is a multiple of CHECK_INTERVAL.
+	 *
+	 * @return true if time has run out.
+	 */
+	private boolean timeUp(int numSims) {
+
+		return timeUp(numSims, (numSims & (CHECK_INTERVAL - 1)) == 0);
+	}
+
+	/**
+	 *
+	 * Overloaded method. Checks whether the search has to stop, reading the
+	 * clock only when asked to.
+	 *
+	 * @param numSims
+	 *            simulations the calling thread has completed.
+	 * @param readClock
+	 *            whether the clock should be read.
+	 *
+	 * @return true if time has run out.
+	 */
+	private boolean timeUp(int numSims, boolean readClock) {
+
+		int ponder = ponderState;
+
+		// pondering has no deadline, it runs until the opponent has moved
+		if (ponder != NOT_PONDERING) {
+
+			return ponder == STOPPING;
+		}
+
+		int limit = config.getSimulationLimit();
+
+		if (limit > 0) {
+
+			return numSims >= limit;
+		}
+
+		if (!readClock) {
+
+			return false;
+		}
+
+		long now = System.nanoTime();
+
+		return clock.timeUp(now, !clock.pastSoftDeadline(now) || isStable());
+	}
+
+	/**
+	 *
+	 * Returns whether the search has settled on a move, which is when the move
+	 * that the most simulations went through also has the highest win rate.
+	 *
+	 * @return true if the search is stable.
+	 */
+	private boolean isStable() {
+
+		Node mostSimulated = null;
+		Node bestWinRate = null;
+
+		for (int i = 0; i < currentGameState.getChildCount(); i++) {
+
+			Node child = currentGameState.getChildAt(i);
+
+			if (child == null || child.getSimulations() == 0) {
+
+				continue;
+			}
+
+			if (mostSimulated == null || child.getSimulations() > mostSimulated.getSimulations()) {
+
+				mostSimulated = child;
+			}
+
+			if (bestWinRate == null || (double) child.getWins() / child.getSimulations() > (double) bestWinRate
+					.getWins() / bestWinRate.getSimulations()) {
+
+				bestWinRate = child;
+			}
+		}
+
+		return mostSimulated == bestWinRate;
+	}
+
+	/**
+	 *
+	 * Follows moves down a tree from a node to the node of a later position.
+	 * Every move places one piece, so the moves made since the node are the
+	 * squares that are occupied in the later position but empty in the node.
+	 * When several moves were made they are tried in turn, only one order
+	 * leads to the later position. A node whose player had to pass has only
+	 * its pass child to follow.
+	 *
+	 * @param node
+	 *            node of an earlier position.
+	 * @param xBits
+	 *            bitboard of the X pieces in the later position.
+	 * @param oBits
+	 *            bitboard of the O pieces in the later position.
+	 * @param piece
+	 *            piece type that is next to move in the later position.
+	 *
+	 * @return node of the later position, or null if it is not in the tree.
+	 */
+	private static Node followMoves(Node node, long xBits, long oBits, char piece) {
+
+		long nodeX = node.getBits('X');
+		long nodeO = node.getBits('O');
+
+		if (nodeX == xBits && nodeO == oBits && node.getNextMovePiece() == piece) {
+
+			return node;
+		}
+
+		long occupied = xBits | oBits;
+		long newSquares = occupied & ~(nodeX | nodeO);
+
+		// pieces were removed, so the position cannot follow from this node
+		if ((nodeX | nodeO) != (occupied & (nodeX | nodeO))) {
+
+			return null;
+		}
+
+		Node passed = node.getChild(Move.PASS);
+
+		if (passed != null) {
+
+			return followMoves(passed, xBits, oBits, piece);
+		}
+
+		while (newSquares != 0) {
+
+			Node child = node.getChild(Long.numberOfTrailingZeros(newSquares));
+			newSquares &= newSquares - 1;
+
+			if (child != null) {
+
+				Node found = followMoves(child, xBits, oBits, piece);
+
+				if (found != null) {
+
+					return found;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 *
+	 * Runs simulations through a tree until time has run out. Each simulation
+	 * walks down the tree, adds one level of nodes, plays out the rest of the
+	 * game and backpropogates the result along the path it took.
+	 *
+	 * @param root
+	 *            node that represents the current game state.
+	 * @param table
+	 *            transposition table of the tree, or null if transpositions are
+	 *            not shared.
+	 * @param shared
+	 *            whether other threads are searching the same tree, in which
+	 *            case nodes on the current path carry a virtual loss.
+	 *
+	 * @return number of simulations completed.
+	 */
+	private int runSimulations(Node root, TranspositionTable table, boolean shared) {
+
+		SearchMetrics.Recorder metrics = SearchMetrics.recorder();
+		Node[] path = new Node[MAX_DEPTH];
+		long[] expansionNanos = new long[1];
+		Node testNode = null;
+		int depth;
+		char winner;
+		boolean result;
+		boolean sampled;
+		long start = 0;
+		long selected = 0;
+		long playedOut = 0;
+		int numSims = 0;
+
+		// while computer has time to think
+		while (!timeUp(numSims)) {
+
+			// times the phases of every CHECK_INTERVAL-th simulation
+			sampled = (numSims & (CHECK_INTERVAL - 1)) == 0;
+
+			if (sampled) {
+
+				expansionNanos[0] = 0;
+				start = System.nanoTime();
+			}
+
+			depth = selectLeaf(root, table, shared, path, sampled ? expansionNanos : null);
+			testNode = path[depth - 1];
+
+			if (sampled) {
+
+				selected = System.nanoTime();
+			}
+
+			// simulation, plays out the rest of the game without building nodes
+			winner = Playout.play(testNode.getBits('X'), testNode.getBits('O'), testNode.getNextMovePiece());
+
+			if (sampled) {
+
+				playedOut = System.nanoTime();
+			}
+
+			// doesn't consider a tie as a success
+			if (winner == piece) {
+
+				result = true;
+			}
+
+			else {
+
+				result = false;
+			}
+
+			// backpropogation to a root of the current game state
+			for (int i = depth - 1; i >= 0; i--) {
+
+				if (shared) {
+
+					path[i].revertVirtualLoss(path[i].getNextMovePiece() == piece, result);
+				}
+
+				else {
+
+					path[i].updateStats(result);
+				}
+			}
+
+			if (sampled) {
+
+				metrics.phases(selected - start - expansionNanos[0], expansionNanos[0], playedOut - selected,
+						System.nanoTime() - playedOut);
+			}
+
+			metrics.simulation(depth);
+			numSims++;
+		}
+
+		return numSims;
+	}
+
+	/**
+	 *
+	 * Runs simulations through a tree stored in a node pool until time has run
+	 * out, with the same selection as runSimulations. The pool is reset first,
+	 * and the board state of each node is rebuilt by replaying moves on the way
+	 * down. Once the pool is full the tree stops growing and simulations are
+	 * played out from its leaves.
+	 *
+	 * @param pool
+	 *            node pool that holds the tree.
+	 * @param xBits
+	 *            bitboard of the X pieces in the current game state.
+	 * @param oBits
+	 *            bitboard of the O pieces in the current game state.
+	 *
+	 * @return number of simulations completed.
+	 */
+	private int runPooledSimulations(NodePool pool, long xBits, long oBits) {
+
+		RandomSource r = RandomSource.current();
+		Position position = new Position(xBits, oBits, piece);
+		boolean newNode;
+		int node;
+		int move;
+		char winner;
+		boolean result;
+		boolean sampled;
+		int depth;
+		long start = 0;
+		long expansionStart = 0;
+		long expansionNanos = 0;
+		long selected = 0;
+		long playedOut = 0;
+		int numSims = 0;
+		SearchMetrics.Recorder metrics = SearchMetrics.recorder();
+		pool.reset();
+
+		// while computer has time to think
+		while (!timeUp(numSims)) {
+
+			// times the phases of every CHECK_INTERVAL-th simulation
+			sampled = (numSims & (CHECK_INTERVAL - 1)) == 0;
+
+			if (sampled) {
+
+				expansionNanos = 0;
+				start = System.nanoTime();
+			}
+
+			node = 0;
+			depth = 1;
+			newNode = false;
+
+			// selection and expansion, stops at the first unvisited node
+			while (!newNode) {
+
+				if (!pool.isExpanded(node)) {
+
+					if (sampled) {
+
+						expansionStart = System.nanoTime();
+					}
+
+					boolean expanded = pool.expand(node, position.getOwn(), position.getOpp());
+
+					if (sampled) {
+
+						expansionNanos += System.nanoTime() - expansionStart;
+					}
+
+					// pool is full, plays out from this leaf
+					if (!expanded) {
+
+						break;
+					}
+				}
+
+				// end of the game
+				if (pool.getChildCount(node) == 0) {
+
+					break;
+				}
+
+				node = selectChild(pool, node, position.getNextMovePiece() == 'X', r);
+				newNode = pool.getSimulations(node) == 0;
+				depth++;
+				move = pool.getMove(node);
+
+				if ((move & NodePool.PASSED) != 0) {
+
+					position.makeMove(Move.PASS);
+				}
+
+				position.makeMove(move & ~NodePool.PASSED);
+			}
+
+			if (sampled) {
+
+				selected = System.nanoTime();
+			}
+
+			// simulation, plays out the rest of the game without building nodes
+			winner = Playout.play(position);
+
+			// back to the root for the next simulation
+			position.undoTo(0);
+
+			if (sampled) {
+
+				playedOut = System.nanoTime();
+			}
+
+			// doesn't consider a tie as a success
+			if (winner == piece) {
+
+				result = true;
+			}
+
+			else {
+
+				result = false;
+			}
+
+			// backpropogation to the root
+			for (; node != -1; node = pool.getParent(node)) {
+
+				pool.updateStats(node, result);
+			}
+
+			if (sampled) {
+
+				metrics.phases(selected - start - expansionNanos, expansionNanos, playedOut - selected,
+						System.nanoTime() - playedOut);
+			}
+
+			metrics.simulation(depth);
+			numSims++;
+		}
+
+		return numSims;
+	}
+
+	/**
+	 *
+	 * Picks the child of a node in a node pool that a simulation goes through
+	 * next, the same way as for Node objects.
+	 *
+	 * @param pool
+	 *            node pool that holds the tree.
+	 * @param node
+	 *            index of a node that has children.
+	 * @param ownIsX
+	 *            whether X is to move at the node, before any pass.
+	 * @param r
+	 *            random number generator of the calling thread.
+	 *
+	 * @return index of the child to go down to.
+	 */
+	private int selectChild(NodePool pool, int node, boolean ownIsX, RandomSource r) {
+
+		int first = pool.getFirstChild(node);
+		int count = pool.getChildCount(node);
+		boolean passed = (pool.getMove(first) & NodePool.PASSED) != 0;
+		boolean ourMove = (ownIsX != passed) == (piece == 'X');
+		double lnSims = Math.log(Math.max(1, pool.getSimulations(node)));
+		int unvisited = -1;
+		int numUnvisited = 0;
+		int best = first;
+		double bestVal = Double.NEGATIVE_INFINITY;
+
+		for (int child = first; child < first + count; child++) {
+
+			int sims = pool.getSimulations(child);
+
+			// picks uniformly among the unvisited children
+			if (sims == 0) {
+
+				numUnvisited++;
+
+				if (r.nextInt(numUnvisited) == 0) {
+
+					unvisited = child;
+				}
+
+				continue;
+			}
+
+			if (numUnvisited == 0) {
+
+				double winRate = (double) pool.getWins(child) / sims;
+				double val = ucb(ourMove ? winRate : 1 - winRate, lnSims, sims);
+
+				if (val > bestVal) {
+
+					bestVal = val;
+					best = child;
+				}
+			}
+		}
+
+		return unvisited != -1 ? unvisited : best;
+	}
+
+	/**
+	 *
+	 * Wraps a call to runPooledSimulations so it can be run on the thread pool.
+	 *
+	 * @param pool
+	 *            node pool that holds the tree.
+	 * @param xBits
+	 *            bitboard of the X pieces in the current game state.
+	 * @param oBits
+	 *            bitboard of the O pieces in the current game state.
+	 *
+	 * @return task that returns the number of simulations completed.
+	 */
+	private Callable<Integer> pooledSimulationTask(final NodePool pool, final long xBits, final long oBits) {
+
+		final RandomSource taskRandom = random.split();
+
+		return new Callable<Integer>() {
+
+			public Integer call() {
+
+				RandomSource.setCurrent(taskRandom);
+
+				return runPooledSimulations(pool, xBits, oBits);
+			}
+		};
+	}
+
+	/**
+	 *
+	 * Selection and expansion phases of a simulation. Walks down the tree
+	 * picking the child with the highest upper confidence bound, until it
+	 * reaches a node with a move that no simulation has gone through yet. The
+	 * child of that move is created and is the one new node of this
+	 * simulation. Because transposed positions share nodes, a node can have
+	 * several parents, so the nodes visited are recorded for backpropagation.
+	 *
+	 * @param root
+	 *            node that represents the current game state.
+	 * @param table
+	 *            transposition table of the tree, or null if transpositions are
+	 *            not shared.
+	 * @param shared
+	 *            whether other threads are searching the same tree, in which
+	 *            case every node on the path is given a virtual loss.
+	 * @param path
+	 *            array that is filled with the nodes visited, starting with the
+	 *            root.
+	 * @param expansionNanos
+	 *            if not null, the time (in nanoseconds) spent expanding nodes
+	 *            and creating children is added to its first element.
+	 *
+	 * @return number of nodes on the path.
+	 */
+	private int selectLeaf(Node root, TranspositionTable table, boolean shared, Node[] path,
+			long[] expansionNanos) {
+
+		Node testNode = root;
+		boolean newNode = false;
+		int depth = 0;
+
+		path[depth++] = testNode;
+
+		if (shared) {
+
+			testNode.addVirtualLoss(testNode.getNextMovePiece() == piece);
+		}
+
+		while (!newNode) {
+
+			if (!testNode.wasUsed()) {
+
+				long expansionStart = expansionNanos != null ? System.nanoTime() : 0;
+
+				testNode.expand();
+
+				if (expansionNanos != null) {
+
+					expansionNanos[0] += System.nanoTime() - expansionStart;
+				}
+			}
+
+			// end of the game, or another thread is still expanding the node
+			if (!testNode.wasUsed() || !testNode.hasNodes()) {
+
+				break;
+			}
+
+			int index = selectChild(testNode);
+			long expansionStart = expansionNanos != null ? System.nanoTime() : 0;
+			Node child = index < 0 ? null : expandChild(testNode, index, root, table);
+
+			if (expansionNanos != null) {
+
+				expansionNanos[0] += System.nanoTime() - expansionStart;
+			}
+
+			// children were cut off by a prune on another thread
+			if (child == null) {
+
+				break;
+			}
+
+			testNode = child;
+			newNode = testNode.getSimulations() == 0;
+			path[depth++] = testNode;
+
+			/*
+			 * a loss for whoever chose the move, which is a win for this
+			 * player when the opponent chose it, as selection scores the
+			 * opponent's moves from the opponent's side
+			 */
+			if (shared) {
+
+				testNode.addVirtualLoss(testNode.getNextMovePiece() == piece);
+			}
+		}
+
+		return depth;
+	}
+
+	/**
+	 *
+	 * Returns the child of one of the moves of a node, creating it first if no
+	 * simulation has gone through the move yet. A new child is counted against
+	 * the node budget, and if the tree has grown past the budget its least
+	 * simulated subtrees are cut off, which may include the node itself.
+	 *
+	 * @param node
+	 *            expanded node.
+	 * @param index
+	 *            index of the move, from 0 to node.getChildCount() - 1.
+	 * @param root
+	 *            root of the tree being searched.
+	 * @param table
+	 *            transposition table of the tree, or null.
+	 *
+	 * @return child of the move, null if the node's children were cut off by
+	 *         a prune on another thread.
+	 */
+	private Node expandChild(Node node, int index, Node root, TranspositionTable table) {
+
+		int created = node.addChild(index, table);
+		Node child = node.getChildAt(index);
+
+		if (created > 0 && pruner.created(created)) {
+
+			pruner.prune(root, table);
+		}
+
+		return child;
+	}
+
+	/**
+	 *
+	 * Picks the move of a node that a simulation goes through next. A random
+	 * move that has not been simulated yet (whose child may not exist yet) is
+	 * picked first, otherwise the move with the highest upper confidence bound
+	 * for the player choosing between them.
+	 *
+	 * @param node
+	 *            node that has been expanded.
+	 *
+	 * @return index of the move to go down, -1 if the node has no moves left.
+	 */
+	private int selectChild(Node node) {
+
+		int count = node.getChildCount();
+		RandomSource r = RandomSource.current();
+		boolean ourMove = node.getNextMovePiece() == piece;
+		double lnSims = Math.log(Math.max(1, node.getSimulations()));
+		int unvisited = -1;
+		int numUnvisited = 0;
+		int best = -1;
+		double bestVal = Double.NEGATIVE_INFINITY;
+
+		for (int i = 0; i < count; i++) {
+
+			Node child = node.getChildAt(i);
+			int sims = child == null ? 0 : child.getSimulations();
+
+			// picks uniformly among the unvisited moves
+			if (sims == 0) {
+
+				numUnvisited++;
+
+				if (r.nextInt(numUnvisited) == 0) {
+
+					unvisited = i;
+				}
+
+				continue;
+			}
+
+			if (numUnvisited == 0) {
+
+				double winRate = (double) child.getWins() / sims;
+				double val = ucb(ourMove ? winRate : 1 - winRate, lnSims, sims);
+
+				if (val > bestVal) {
+
+					bestVal = val;
+					best = i;
+				}
+			}
+		}
+
+		return unvisited != -1 ? unvisited : best;
+	}
+
+	/**
+	 *
+	 * Upper confidence bound formula created by Levente Kocsis and Csaba
+	 * Szepevari.
+	 *
+	 * @param winRate
+	 *            win rate of a move for the player making it.
+	 * @param lnParentSims
+	 *            natural log of the simulations of the position the move is
+	 *            made from.
+	 * @param sims
+	 *            simulations that went through the move.
+	 *
+	 * @return upper confidence bound of the move's win rate.
+	 */
+	private double ucb(double winRate, double lnParentSims, long sims) {
+
+		return winRate + config.getExploration() * Math.sqrt(lnParentSims / sims);
+	}
+
+	/**
+	 *
+	 * Runs simulations in leaf parallel mode until time has run out. The
+	 * calling thread grows the tree, and from every leaf it reaches a batch of
+	 * playouts is split across the thread pool. The number of wins in the batch
+	 * is backpropogated once.
+	 *
+	 * @param root
+	 *            node that represents the current game state.
+	 * @param table
+	 *            transposition table of the tree, or null if transpositions are
+	 *            not shared.
+	 *
+	 * @return number of simulations completed.
+	 */
+	private int runLeafParallel(Node root, TranspositionTable table) {
+
+		int threads = config.getThreads();
+		int batchSize = config.getBatchSize();
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(threads);
+		SearchMetrics.Recorder metrics = SearchMetrics.recorder();
+		Node[] path = new Node[MAX_DEPTH];
+		long[] expansionNanos = new long[1];
+		Node testNode = null;
+		int depth;
+		int wins;
+		long start;
+		long selected;
+		long playedOut;
+		int numSims = 0;
+
+		// every batch takes long enough to check the time after each one
+		while (!timeUp(numSims, true)) {
+
+			expansionNanos[0] = 0;
+			start = System.nanoTime();
+
+			depth = selectLeaf(root, table, false, path, expansionNanos);
+			testNode = path[depth - 1];
+			tasks.clear();
+			selected = System.nanoTime();
+
+			// splits the batch as evenly as possible across the threads
+			for (int i = 0; i < threads && i < batchSize; i++) {
+
+				int count = batchSize / threads + (i < batchSize % threads ? 1 : 0);
+				tasks.add(playoutTask(testNode.getBits('X'), testNode.getBits('O'), testNode.getNextMovePiece(),
+						count));
+			}
+
+			wins = runAll(tasks);
+			playedOut = System.nanoTime();
+
+			// an interrupted batch was not played out in full, its wins would
+			// be recorded as losses
+			if (Thread.currentThread().isInterrupted()) {
+
+				break;
+			}
+
+			// backpropogation of the whole batch to a root of the current game
+			// state
+			for (int i = depth - 1; i >= 0; i--) {
+
+				path[i].updateStats(wins, batchSize);
+			}
+
+			// every batch is timed, its phases are shared by its simulations
+			metrics.phases((selected - start - expansionNanos[0]) / batchSize, expansionNanos[0] / batchSize,
+					(playedOut - selected) / batchSize, (System.nanoTime() - playedOut) / batchSize);
+			metrics.simulations(depth, batchSize);
+			numSims += batchSize;
+		}
+
+		return numSims;
+	}
+
+	/**
+	 *
+	 * Creates a task that plays out several games from the same position and
+	 * counts how many of them this player won.
+	 *
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
+	 * @param next
+	 *            piece type that is next to move.
+	 * @param count
+	 *            number of games to play out.
+	 *
+	 * @return task that returns the number of games won.
+	 */
+	private Callable<Integer> playoutTask(final long xBits, final long oBits, final char next, final int count) {
+
+		final RandomSource taskRandom = random.split();
+
+		return new Callable<Integer>() {
+
+			public Integer call() {
+
+				RandomSource.setCurrent(taskRandom);
+
+				int wins = 0;
+
+				for (int i = 0; i < count; i++) {
+
+					if (Playout.play(xBits, oBits, next) == piece) {
+
+						wins++;
+					}
+				}
+
+				return wins;
+			}
+		};
+	}
+
+	/**
+	 *
+	 * Wraps a call to runSimulations so it can be run on the thread pool.
+	 *
+	 * @param root
+	 *            node that represents the current game state.
+	 * @param table
+	 *            transposition table of the tree, or null.
+	 * @param shared
+	 *            whether other threads are searching the same tree.
+	 *
+	 * @return task that returns the number of simulations completed.
+	 */
+	private Callable<Integer> simulationTask(final Node root, final TranspositionTable table,
+			final boolean shared) {
+
+		final RandomSource taskRandom = random.split();
+
+		return new Callable<Integer>() {
+
+			public Integer call() {
+
+				RandomSource.setCurrent(taskRandom);
+
+				return runSimulations(root, table, shared);
+			}
+		};
+	}
+
+	/**
+	 *
+	 * Returns the thread pool used to run searches in parallel, creating it the
+	 * first time it is needed. Threads are daemons so that they never keep the
+	 * game from exiting.
+	 *
+	 * @return thread pool with one thread per search thread in the config.
+	 */
+	private ExecutorService getWorkers() {
+
+		if (workers == null) {
+
+			workers = Executors.newFixedThreadPool(config.getThreads(), new ThreadFactory() {
+
+				public Thread newThread(Runnable r) {
+
+					Thread t = new Thread(r, "monte-carlo-" + piece);
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+
+		return workers;
+	}
+
+	/**
+	 *
+	 * Returns the endgame solver, creating it the first time it is needed. The
+	 * solver keeps its hash table between moves, and splits its search across
+	 * a fork-join pool if there is more than one search thread.
+	 *
+	 * @return endgame solver of this player.
+	 */
+	private EndgameSolver getSolver() {
+
+		if (solver == null) {
+
+			if (config.getThreads() > 1) {
+
+				solverPool = new ForkJoinPool(config.getThreads());
+			}
+
+			solver = new EndgameSolver(SOLVER_TABLE_SIZE, solverPool);
+		}
+
+		return solver;
+	}
+
+	/**
+	 *
+	 * Returns the node pools of the trees grown by root parallel threads other
+	 * than the first, creating them the first time they are needed.
+	 *
+	 * @return one node pool per search thread after the first.
+	 */
+	private NodePool[] getWorkerPools() {
+
+		if (workerPools == null) {
+
+			workerPools = new NodePool[config.getThreads() - 1];
+
+			for (int i = 0; i < workerPools.length; i++) {
+
+				workerPools[i] = new NodePool(config.getPoolSize());
+			}
+		}
+
+		return workerPools;
+	}
+
+	/**
+	 *
+	 * Runs tasks on the thread pool, waits for all of them and adds up their
+	 * results.
+	 *
+	 * @param tasks
+	 *            simulation or playout tasks, at most one per search thread.
+	 *
+	 * @return sum of the values returned by the tasks.
+	 */
+	private int runAll(List<Callable<Integer>> tasks) {
+
+		int total = 0;
+
+		try {
+			for (Future<Integer> result : getWorkers().invokeAll(tasks)) {
+
+				total += result.get();
+			}
+		} catch (InterruptedException ie) {
+
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException ee) {
+
+			throw new IllegalStateException("Search thread failed", ee.getCause());
+		}
+
+		return total;
+	}
+
+	@Override
+
+	/**
+	 *
+	 * Finds the moves this player can make and the pieces they flip.
+	 * <p>
+	 * Overrides method written in Player class by updating current board state
+	 * in IntelligentComputerPlayer class and stopping any search during the
+	 * opponent's turn. Still performs analyze moves implemented in Player class
+	 * however.
+	 *
+	 * @param own
+	 *            bitboard of this player's pieces.
+	 * @param opp
+	 *            bitboard of the other player's pieces.
+	 */
+	public void analyzeMoves(long own, long opp) {
+
+		// opponent has moved, so searching during their turn is over
+		stopPondering();
 
-		currentBoard = board;
+		currentOwn = own;
+		currentOpp = opp;
 
-		super.analyzeMoves(currentBoard);
+		super.analyzeMoves(own, opp);
 	}
 }
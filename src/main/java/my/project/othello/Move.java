@@ -0,0 +1,146 @@
+package my.project.othello;
+
+/**
+ *
+ * Moves are passed around as plain ints: the square (row * 8 + col) a piece
+ * is placed on, from 0 to 63, or PASS. This class converts them to and from
+ * the row and column text the console uses, which is the only place moves
+ * are turned into strings.
+ *
+ * @author Aleksandr Popov
+ */
+public final class Move {
+
+	/**
+	 * Move of a player who has no legal move and passes the turn.
+	 */
+	public static final int PASS = 64;
+
+	/**
+	 * No move, such as the move leading to the root of a search.
+	 */
+	public static final int NONE = -1;
+
+	private Move() {
+
+	}
+
+	/**
+	 *
+	 * Returns the move to a square.
+	 *
+	 * @param row
+	 *            row of the square, from 0 to 7.
+	 * @param col
+	 *            column of the square, from 0 to 7.
+	 *
+	 * @return the move.
+	 */
+	public static int of(int row, int col) {
+
+		return BitBoard.square(row, col);
+	}
+
+	/**
+	 *
+	 * Returns the row of a move.
+	 *
+	 * @param move
+	 *            move to a square.
+	 *
+	 * @return row, from 0 to 7.
+	 */
+	public static int row(int move) {
+
+		return move >>> 3;
+	}
+
+	/**
+	 *
+	 * Returns the column of a move.
+	 *
+	 * @param move
+	 *            move to a square.
+	 *
+	 * @return column, from 0 to 7.
+	 */
+	public static int col(int move) {
+
+		return move & 7;
+	}
+
+	/**
+	 *
+	 * Returns whether a move places a piece on the board, rather than being a
+	 * pass or no move.
+	 *
+	 * @param move
+	 *            move to check.
+	 *
+	 * @return true if the move is to a square.
+	 */
+	public static boolean isSquare(int move) {
+
+		return move >= 0 && move < PASS;
+	}
+
+	/**
+	 *
+	 * Returns a move the way the console shows it, the row and the column
+	 * counted from 1 and separated by a space.
+	 *
+	 * @param move
+	 *            move to show.
+	 *
+	 * @return text of the move, such as "3 4", or "pass".
+	 */
+	public static String toString(int move) {
+
+		if (move == PASS) {
+
+			return "pass";
+		}
+
+		if (!isSquare(move)) {
+
+			return "none";
+		}
+
+		return (row(move) + 1) + " " + (col(move) + 1);
+	}
+
+	/**
+	 *
+	 * Reads a move the way it is typed at the console, the row and the column
+	 * counted from 1 and separated by whitespace.
+	 *
+	 * @param text
+	 *            text of the move.
+	 *
+	 * @return the move, or NONE if the text is not a square on the board.
+	 */
+	public static int parse(String text) {
+
+		String[] parts = text.trim().split("\\s+");
+
+		if (parts.length != 2) {
+
+			return NONE;
+		}
+
+		try {
+			int row = Integer.parseInt(parts[0]) - 1;
+			int col = Integer.parseInt(parts[1]) - 1;
+
+			if (row < 0 || row > 7 || col < 0 || col > 7) {
+
+				return NONE;
+			}
+
+			return of(row, col);
+		} catch (NumberFormatException e) {
+
+			return NONE;
+		}
+	}
+}
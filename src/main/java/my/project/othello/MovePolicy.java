@@ -0,0 +1,27 @@
+package my.project.othello;
+
+/**
+ *
+ * Ways a MonteCarloPlayer can pick its move from the statistics of the moves
+ * available in the current game state once time has run out.
+ *
+ * @author Aleksandr Popov
+ */
+public enum MovePolicy {
+
+	/**
+	 * Move that the most simulations went through.
+	 */
+	ROBUST_CHILD,
+
+	/**
+	 * Move with the highest win rate.
+	 */
+	MAX_CHILD,
+
+	/**
+	 * Move with the highest upper confidence bound, the same formula that is
+	 * used to pick moves while searching.
+	 */
+	UPPER_CONFIDENCE_BOUND
+}
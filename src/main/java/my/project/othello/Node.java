@@ -1,146 +1,331 @@
 package my.project.othello;
 
-import java.util.Random;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  *
  * Represents a hypothetical (but possible) board state. Used to implement Monte
- * Carlo Tree Search Algorithm. Needs to know the hypothetical board state, its
- * parent node, the piece that is supposed to move, and the previous move made
- * to get to this board state.
+ * Carlo Tree Search Algorithm. Needs to know the hypothetical board state, the
+ * piece that is supposed to move, and the previous move made to get to this
+ * board state.
+ * <p>
+ * Nodes are expanded lazily. A new node only knows its position, its legal
+ * moves are found the first time a simulation reaches it, and each child is
+ * created on its own when a simulation first goes through its move. A player
+ * that has to pass has a single child for the pass, with the same board and
+ * the other piece to move, so the piece to move at a node never changes.
+ * <p>
+ * When children are created with a transposition table, a position reached by
+ * different orders of moves is represented by a single node, so a node may
+ * have more than one parent. Nodes therefore only point to their children, and
+ * a search records the path it took for backpropagation.
+ * <p>
+ * Nodes may be shared by several search threads. Statistics are packed into a
+ * single long that is updated atomically, a node is expanded exactly once by
+ * whichever thread claims it first, and each child is put in its place with a
+ * compare and set.
  *
  * @author Aleksandr Popov
  */
 public class Node {
 
-	private char[][] boardState;
-	private String prevMove;
-	private List<Node> nodeChain = new ArrayList<Node>();
-	private Node parentNode = null;
-	private int numWins;
-	private int numSimulations;
-	private boolean wasUsed = false;
-	private char nextMovePiece;
-	private PseudoPlayer p = null;
+	private final long xBits;
+	private final long oBits;
+	private final long hash;
+	private final char nextMovePiece;
+	private final byte prevMove;
+
+	// legal moves of the piece to move, known once the node is expanded
+	private long moves;
+
+	// one place per legal move (or a single one for a pass), empty until the
+	// child is created
+	private volatile AtomicReferenceArray<Node> children = NO_CHILDREN;
+
+	// last pass over the tree that visited this node
+	private int mark = 0;
+
+	// simulations in the upper 32 bits, wins in the lower 32 bits
+	private volatile long stats;
+
+	// whether the node has not been, is being, or has been expanded
+	private volatile int chainState = UNBUILT;
+
+	private static final long ONE_SIMULATION = 1L << 32;
+
+	private static final AtomicReferenceArray<Node> NO_CHILDREN = new AtomicReferenceArray<Node>(0);
+
+	private static final int UNBUILT = 0;
+	private static final int BUILDING = 1;
+	private static final int BUILT = 2;
+
+	private static final AtomicLongFieldUpdater<Node> STATS = AtomicLongFieldUpdater.newUpdater(Node.class,
+			"stats");
+	private static final AtomicIntegerFieldUpdater<Node> CHAIN_STATE = AtomicIntegerFieldUpdater
+			.newUpdater(Node.class, "chainState");
 
 	/**
 	 *
-	 * Constructor for a node object.
+	 * Constructor for a node object from the bitboards of both piece types.
 	 *
-	 * @param board
-	 *            hypothetical board state.
-	 * @param parentNode
-	 *            parent of current node, through which this current node can be
-	 *            accessed.
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
 	 * @param piece
 	 *            piece type that is next to move.
 	 * @param prevMove
-	 *            previous move made to get to this board state.
+	 *            previous move made to get to this board state, Move.NONE if
+	 *            it is not known.
 	 */
-	public Node(char[][] board, Node parentNode, char piece, String prevMove) {
+	public Node(long xBits, long oBits, char piece, int prevMove) {
+
+		this(xBits, oBits, Zobrist.hash(xBits, oBits, piece), piece, prevMove);
+	}
 
-		boardState = board;
-		this.parentNode = parentNode;
+	/**
+	 *
+	 * Constructor for a node object whose hash has already been computed from
+	 * the hash of its parent.
+	 *
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
+	 * @param hash
+	 *            Zobrist hash of the position.
+	 * @param piece
+	 *            piece type that is next to move.
+	 * @param prevMove
+	 *            previous move made to get to this board state, Move.PASS for a
+	 *            pass or Move.NONE if it is not known.
+	 */
+	private Node(long xBits, long oBits, long hash, char piece, int prevMove) {
+
+		this.xBits = xBits;
+		this.hash = hash;
+		this.oBits = oBits;
 		nextMovePiece = piece;
-		this.prevMove = prevMove;
-		p = new PseudoPlayer(piece);
+		this.prevMove = (byte) prevMove;
+	}
+
+	/**
+	 *
+	 * Finds the legal moves of this node and makes room for a child per move,
+	 * without creating any of them. If the piece that is next to move has no
+	 * moves but the other piece does, room is made for a single pass child.
+	 * <p>
+	 * Only the first thread to call this method expands the node, every later
+	 * call returns without doing anything.
+	 *
+	 * @return true if this call expanded the node, false if another call
+	 *         already claimed it.
+	 */
+	public boolean expand() {
 
-		p.analyzeMoves(boardStateCopy());
+		if (!CHAIN_STATE.compareAndSet(this, UNBUILT, BUILDING)) {
+
+			return false;
+		}
+
+		long own = nextMovePiece == 'X' ? xBits : oBits;
+		long opp = nextMovePiece == 'X' ? oBits : xBits;
+		int count = 0;
+
+		moves = BitBoard.legalMoves(own, opp);
+
+		if (moves != 0) {
+
+			count = Long.bitCount(moves);
+		}
+
+		// player to move has to pass, game is over if the other player can't
+		// move either
+		else if (BitBoard.legalMoves(opp, own) != 0) {
+
+			count = 1;
+		}
+
+		// publishes the legal moves before marking the node as expanded
+		children = count == 0 ? NO_CHILDREN : new AtomicReferenceArray<Node>(count);
+		chainState = BUILT;
+
+		return true;
 	}
 
 	/**
 	 *
-	 * Generates possible nodes (potential board states) from this current node.
+	 * Creates the child of one of the moves of this node, or takes it from a
+	 * transposition table if its position is already stored there. A newly
+	 * created child is added to the table. Does nothing if the child exists
+	 * already.
+	 *
+	 * @param index
+	 *            index of the move, from 0 to getChildCount() - 1.
+	 * @param table
+	 *            transposition table shared by the nodes of the search, or null
+	 *            to always create a new child.
 	 *
+	 * @return 1 if a new node was created, 0 if the child existed already, was
+	 *         taken from the table, or the node is not expanded.
 	 */
-	public void buildChain() {
+	public int addChild(int index, TranspositionTable table) {
+
+		AtomicReferenceArray<Node> slots = children;
+
+		if (!wasUsed() || index >= slots.length() || slots.get(index) != null) {
+
+			return 0;
+		}
 
-		wasUsed = true;
-		String[] boardMoves = p.getPossibleMoves();
-		char[][] updatedBoard = null;
-		List<List<CoordinatePair>> list = null;
+		char other = generateChildPiece(nextMovePiece);
+		int square = getMoveAt(index);
+		long newX = xBits;
+		long newO = oBits;
+		long newHash;
 
-		// generates new node in node chain
-		for (int i = 0; i < boardMoves.length; i++) {
+		if (square == Move.PASS) {
 
-			updatedBoard = boardStateCopy();
+			newHash = Zobrist.pass(hash);
+		}
+
+		else {
+
+			long own = nextMovePiece == 'X' ? xBits : oBits;
+			long opp = nextMovePiece == 'X' ? oBits : xBits;
+			long flipped = BitBoard.flips(own, opp, square);
+			long newOwn = own | flipped | (1L << square);
+			long newOpp = opp & ~flipped;
+
+			newX = nextMovePiece == 'X' ? newOwn : newOpp;
+			newO = nextMovePiece == 'X' ? newOpp : newOwn;
+			newHash = Zobrist.move(hash, nextMovePiece, square, flipped);
+		}
 
-			updatedBoard[CoordinatePair.decodeRow(boardMoves[i])][CoordinatePair
-					.decodeCol(boardMoves[i])] = nextMovePiece;
+		Node child = table == null ? null : table.get(newHash, newX, newO);
+		int created = 0;
 
-			list = p.getCoordinates(boardMoves[i]);
+		// position has not been reached through another order of moves
+		if (child == null) {
 
-			for (int j = 0; j < list.size(); j++) {
-				for (int k = 0; k < list.get(j).size(); k++) {
+			child = new Node(newX, newO, newHash, other, square);
+			created = 1;
 
-					updatedBoard[list.get(j).get(k).getRow()][list.get(j).get(k).getCol()] = nextMovePiece;
+			if (table != null) {
+
+				Node stored = table.putIfAbsent(child);
+
+				if (stored != child) {
+
+					child = stored;
+					created = 0;
 				}
 			}
+		}
 
-			nodeChain.add(new Node(updatedBoard, this, generateChildPiece(nextMovePiece), boardMoves[i]));
+		// another thread created the child first
+		if (!slots.compareAndSet(index, null, child)) {
+
+			return 0;
 		}
+
+		SearchMetrics.recorder().nodes(created);
+
+		return created;
 	}
 
 	/**
 	 *
-	 * Updates child nodes stemming from current node. Used only when it is not
-	 * possible to generate child nodes. Updates piece type that is next to
-	 * move and tries to build a node chain.
+	 * Drops the children of this node so that their subtrees can be garbage
+	 * collected. The node keeps its own statistics, and is expanded again if a
+	 * simulation reaches it later.
+	 *
+	 * @return true if the children were dropped, false if the node had not
+	 *         been expanded or another thread is expanding it.
 	 */
-	public void regenerateChain() {
+	public boolean collapse() {
+
+		if (!CHAIN_STATE.compareAndSet(this, BUILT, BUILDING)) {
+
+			return false;
+		}
+
+		children = NO_CHILDREN;
+		chainState = UNBUILT;
 
-		nextMovePiece = generateChildPiece(nextMovePiece);
-		buildChain();
+		return true;
 	}
 
 	/**
 	 *
-	 * Returns a copy of the hypothetical board state stored in this node.
+	 * Marks this node as visited by a pass over the tree. Only one thread may
+	 * walk the tree this way at a time.
+	 *
+	 * @param pass
+	 *            number of the pass, different from the number of any earlier
+	 *            pass.
 	 *
-	 * @return Board state that this node is tracking.
+	 * @return true if this node had not been visited by the pass yet.
 	 */
-	public char[][] boardStateCopy() {
-
-		char[][] copy = new char[8][8];
+	public boolean mark(int pass) {
 
-		for (int i = 0; i < boardState.length; i++) {
-			for (int j = 0; j < boardState.length; j++) {
+		if (mark == pass) {
 
-				copy[i][j] = boardState[i][j];
-			}
+			return false;
 		}
 
-		return copy;
+		mark = pass;
+		return true;
 	}
 
 	/**
 	 *
-	 * Returns a random node that is a child of the current node.
+	 * Returns the bitboard of the squares occupied by a piece type in this
+	 * node's board state.
 	 *
-	 * @return random node that is a child of the current node.
+	 * @param piece
+	 *            piece type whose bitboard is returned.
+	 *
+	 * @return bitboard of the squares occupied by the piece.
+	 */
+	public long getBits(char piece) {
+
+		return piece == 'X' ? xBits : oBits;
+	}
+
+	/**
+	 *
+	 * Returns a random node out of the children of the current node that have
+	 * been created.
+	 *
+	 * @return random node that is a child of the current node, null if it has
+	 *         none.
 	 */
 	public Node getRandomNode() {
 
-		Random r = new Random();
+		List<Node> children = getChildren();
 
-		int randNum = 0;
+		if (children.isEmpty()) {
 
-		randNum = r.nextInt(nodeChain.size());
+			return null;
+		}
 
-		return nodeChain.get(randNum);
+		return children.get(RandomSource.current().nextInt(children.size()));
 	}
 
 	/**
 	 * Returns whether or not there are possible child nodes from current node.
 	 *
-	 * @return returns true if there are possible child nodes from the current
-	 *         node, false otherwise.
+	 * @return returns true if the node has been expanded and has a move (or a
+	 *         pass) to make, false otherwise.
 	 */
 	public boolean hasNodes() {
 
-		if (nodeChain.size() > 0) {
+		if (children.length() > 0) {
 
 			return true;
 		}
@@ -150,139 +335,256 @@ public class Node {
 
 	/**
 	 *
-	 * Returns parent node of current node.
+	 * Updates number of simulations run and wins when running simulations
+	 * through this node. Used in backpropagation phase.
 	 *
-	 * @return node that is the parent of the current node.
+	 * @param win
+	 *            whether or not a simulation going through this node has
+	 *            resulted in a win.
 	 */
-	public Node getParent() {
+	public void updateStats(boolean win) {
 
-		return parentNode;
+		STATS.getAndAdd(this, win ? ONE_SIMULATION + 1 : ONE_SIMULATION);
 	}
 
 	/**
 	 *
-	 * Returns whether or not a node has a parent.
+	 * Updates number of simulations run and wins for a batch of simulations
+	 * that went through this node at once.
 	 *
-	 * @return returns true if current node has a parent, false otherwise.
+	 * @param wins
+	 *            number of simulations in the batch that resulted in a win.
+	 * @param simulations
+	 *            number of simulations in the batch.
 	 */
-	public boolean hasParent() {
-
-		if (parentNode == null) {
-
-			return false;
-		}
+	public void updateStats(int wins, int simulations) {
 
-		else {
-			return true;
-		}
+		STATS.getAndAdd(this, ((long) simulations << 32) + wins);
 	}
 
 	/**
 	 *
-	 * Sets the current node as the parent to all nodes. Represents the real
-	 * board state from which all other nodes will stem.
+	 * Counts a simulation that is still running through this node as a loss
+	 * for the player who chose the move to it, so that other threads sharing
+	 * the tree are steered towards other nodes until the result is known. The
+	 * statistics count the wins of one player, so when the move was chosen by
+	 * the other player the simulation is counted as a win.
 	 *
+	 * @param win
+	 *            whether the simulation is counted as a win in the statistics
+	 *            until its result is known.
 	 */
-	public void setParent() {
+	public void addVirtualLoss(boolean win) {
 
-		parentNode = null;
+		STATS.getAndAdd(this, win ? ONE_SIMULATION + 1 : ONE_SIMULATION);
 	}
 
 	/**
 	 *
-	 * Updates number of simulations run and wins when running simulations
-	 * through this node. Used in backpropagation phase.
+	 * Replaces the virtual loss added by a simulation with its actual result.
+	 * Used in backpropagation phase of searches that share a tree.
 	 *
+	 * @param counted
+	 *            whether the virtual loss was counted as a win.
 	 * @param win
-	 *            whether or not a simulation going through this node has
+	 *            whether or not the simulation going through this node has
 	 *            resulted in a win.
 	 */
-	public void updateStats(boolean win) {
+	public void revertVirtualLoss(boolean counted, boolean win) {
 
-		if (win) {
+		if (win != counted) {
 
-			numWins++;
+			STATS.getAndAdd(this, win ? 1 : -1);
 		}
+	}
 
-		numSimulations++;
+	/**
+	 * Compares the positions of two nodes and returns if they are the same.
+	 * Positions are the same when both the board states and the piece that is
+	 * to move are identical.
+	 *
+	 * @param obj
+	 *            node whose position will be compared to calling objects'.
+	 *
+	 * @return whether or not the positions of two nodes are identical.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+
+		if (!(obj instanceof Node)) {
+
+			return false;
+		}
+
+		Node node = (Node) obj;
+
+		return matches(node.hash, node.xBits, node.oBits);
 	}
 
 	/**
-	 * Compares board states of two nodes and returns if they are the same.
+	 * Returns a hash code derived from the Zobrist hash of the position.
 	 *
-	 * @param node
-	 *            node whose board state will be compared to calling objects'.
+	 * @return hash code of the position.
+	 */
+	@Override
+	public int hashCode() {
+
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * Checks whether this node represents a position given by its hash and
+	 * bitboards.
+	 *
+	 * @param hash
+	 *            Zobrist hash of the position.
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
 	 *
-	 * @return whether or not the board states of two nodes are identical.
+	 * @return whether or not this node represents the position.
 	 */
-	public boolean equals(Node node) {
+	public boolean matches(long hash, long xBits, long oBits) {
 
-		char[][] thisBoard = this.boardStateCopy();
-		char[][] nodeBoard = node.boardStateCopy();
+		return this.hash == hash && this.xBits == xBits && this.oBits == oBits;
+	}
 
-		for (int i = 0; i < 8; i++) {
-			for (int j = 0; j < 8; j++) {
+	/**
+	 *
+	 * Returns the Zobrist hash of the position this node was created with,
+	 * including the piece that was to move.
+	 *
+	 * @return hash of the position.
+	 */
+	public long getHash() {
 
-				if (thisBoard[i][j] != nodeBoard[i][j]) {
+		return hash;
+	}
 
-					return false;
-				}
-			}
-		}
+	/**
+	 *
+	 * Returns whether or not this node has been expanded.
+	 *
+	 * @return returns true if the legal moves of this node have been found,
+	 *         returns false otherwise.
+	 */
+	public boolean wasUsed() {
 
-		return true;
+		return chainState == BUILT;
 	}
 
 	/**
-	 * Compares node's board state and a board state.
 	 *
-	 * @param board
-	 *            board that will be compared to the board state within a node.
-	 * 
-	 * @return whether or not the board states node's and argument's are
-	 *         identical.
+	 * Returns the children of this node (possible board states stemming from
+	 * this board state) that have been created, in order of their moves.
+	 *
+	 * @return new list of the children of this node that have been created.
 	 */
+	public List<Node> getChildren() {
 
-	public boolean equalsGameState(char[][] board) {
+		AtomicReferenceArray<Node> slots = children;
+		List<Node> created = new ArrayList<Node>(slots.length());
 
-		char[][] thisBoard = this.boardStateCopy();
+		for (int i = 0; i < slots.length(); i++) {
 
-		for (int i = 0; i < 8; i++) {
-			for (int j = 0; j < 8; j++) {
+			Node child = slots.get(i);
 
-				if (thisBoard[i][j] != board[i][j]) {
+			if (child != null) {
 
-					return false;
-				}
+				created.add(child);
 			}
 		}
 
-		return true;
+		return created;
 	}
 
 	/**
 	 *
-	 * Returns whether or not this node has had any child nodes generated.
+	 * Returns the number of moves of this node, which is the number of
+	 * children it has once all of them are created.
 	 *
-	 * @return returns true if this node has had any child nodes generated,
-	 *         returns false otherwise.
+	 * @return number of legal moves, 1 if the piece to move has to pass, 0 if
+	 *         the game is over or the node has not been expanded.
 	 */
-	public boolean wasUsed() {
+	public int getChildCount() {
 
-		return wasUsed;
+		return children.length();
 	}
 
 	/**
 	 *
-	 * Returns the children of this node (possible board states stemming from
-	 * this board state).
+	 * Returns the child of one of the moves of this node.
+	 *
+	 * @param index
+	 *            index of the move, from 0 to getChildCount() - 1.
 	 *
-	 * @return children of this node (possible board states stemming from this
-	 *         board state).
+	 * @return child of the move, null if it has not been created or the node
+	 *         is no longer expanded.
 	 */
-	public List<Node> getChildren() {
+	public Node getChildAt(int index) {
+
+		AtomicReferenceArray<Node> slots = children;
+
+		return index < slots.length() ? slots.get(index) : null;
+	}
+
+	/**
+	 *
+	 * Returns one of the moves of this node. Moves are ordered by their
+	 * squares.
+	 *
+	 * @param index
+	 *            index of the move, from 0 to getChildCount() - 1.
+	 *
+	 * @return square (row * 8 + col) of the move, Move.PASS if the piece to
+	 *         move has to pass.
+	 */
+	public int getMoveAt(int index) {
+
+		if (moves == 0) {
+
+			return Move.PASS;
+		}
+
+		long remaining = moves;
+
+		for (int i = 0; i < index; i++) {
+
+			remaining &= remaining - 1;
+		}
+
+		return Long.numberOfTrailingZeros(remaining);
+	}
+
+	/**
+	 *
+	 * Returns the index of a move of this node.
+	 *
+	 * @param move
+	 *            square (row * 8 + col) of the move, or Move.PASS.
+	 *
+	 * @return index of the move, -1 if the node has not been expanded or the
+	 *         move is not legal.
+	 */
+	public int indexOf(int move) {
+
+		if (!wasUsed() || children.length() == 0) {
+
+			return -1;
+		}
+
+		if (moves == 0) {
+
+			return move == Move.PASS ? 0 : -1;
+		}
+
+		if (!Move.isSquare(move) || (moves & (1L << move)) == 0) {
+
+			return -1;
+		}
 
-		return nodeChain;
+		return Long.bitCount(moves & ((1L << move) - 1));
 	}
 
 	/**
@@ -292,7 +594,7 @@ public class Node {
 	 */
 	public int getWins() {
 
-		return numWins;
+		return (int) stats;
 	}
 
 	/**
@@ -302,21 +604,68 @@ public class Node {
 	 */
 	public int getSimulations() {
 
-		return numSimulations;
+		return (int) (stats >>> 32);
 	}
 
 	/**
 	 *
-	 * Returns the move made from the parent node to get to this node.
+	 * Returns the move made from the parent node to get to this node. A node
+	 * that is shared by several parents returns the move from the parent it
+	 * was first reached from, see getMoveTo for the move from a given parent.
 	 *
-	 * @return string representation of the move made from the parent node to
-	 *         get to this node.
+	 * @return square (row * 8 + col) of the move made from the parent node to
+	 *         get to this node, Move.NONE if it is not known.
 	 */
-	public String getPrevMove() {
+	public int getPrevMove() {
 
 		return prevMove;
 	}
 
+	/**
+	 *
+	 * Returns the piece type that is next to move from this node.
+	 *
+	 * @return piece type that is next to move.
+	 */
+	public char getNextMovePiece() {
+
+		return nextMovePiece;
+	}
+
+	/**
+	 *
+	 * Returns the child reached by a move.
+	 *
+	 * @param move
+	 *            square (row * 8 + col) of the move, or Move.PASS.
+	 *
+	 * @return child reached by the move, or null if it has not been created
+	 *         or the move is not legal.
+	 */
+	public Node getChild(int move) {
+
+		int index = indexOf(move);
+
+		return index < 0 ? null : getChildAt(index);
+	}
+
+	/**
+	 *
+	 * Returns the move made from this node to get to one of its children. The
+	 * move is the only square that is empty here and occupied in the child,
+	 * and a pass child has no such square.
+	 *
+	 * @param child
+	 *            child of this node.
+	 *
+	 * @return square (row * 8 + col) of the move made to get to the child,
+	 *         Move.PASS if the child is reached by a pass.
+	 */
+	public int getMoveTo(Node child) {
+
+		return Long.numberOfTrailingZeros((child.xBits | child.oBits) & ~(xBits | oBits));
+	}
+
 	/**
 	 * Returns a piece of the opposite type as the one given.
 	 *
@@ -0,0 +1,259 @@
+package my.project.othello;
+
+/**
+ *
+ * Search tree stored in preallocated primitive arrays instead of Node objects.
+ * A node is an index into the arrays, and the children of a node occupy a
+ * contiguous range of indices starting at its first child, so a node costs
+ * 18 bytes and the garbage collector has no objects to trace.
+ * <p>
+ * Nodes do not store their board state. A search replays the moves from the
+ * root while walking down the tree, so every node only keeps the square of the
+ * move that led to it, flagged when the player before it had to pass.
+ * <p>
+ * A pool is used by one thread at a time and is reset, not reallocated, at
+ * the start of every search.
+ *
+ * @author Aleksandr Popov
+ */
+public class NodePool {
+
+	// first child of a node whose children have not been generated
+	public static final int UNEXPANDED = -1;
+
+	// set in a move when the player before it had to pass
+	public static final int PASSED = 64;
+
+	private final int[] visits;
+	private final int[] wins;
+	private final int[] firstChild;
+	private final byte[] childCount;
+	private final byte[] move;
+	private final int[] parent;
+	private int size;
+
+	/**
+	 *
+	 * Constructor for a NodePool object. All arrays are allocated up front.
+	 *
+	 * @param capacity
+	 *            maximum number of nodes the pool holds.
+	 */
+	public NodePool(int capacity) {
+
+		if (capacity < 1) {
+
+			throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+		}
+
+		visits = new int[capacity];
+		wins = new int[capacity];
+		firstChild = new int[capacity];
+		childCount = new byte[capacity];
+		move = new byte[capacity];
+		parent = new int[capacity];
+
+		reset();
+	}
+
+	/**
+	 *
+	 * Removes every node and creates a new root at index 0.
+	 */
+	public void reset() {
+
+		size = 1;
+		visits[0] = 0;
+		wins[0] = 0;
+		firstChild[0] = UNEXPANDED;
+		childCount[0] = 0;
+		move[0] = 0;
+		parent[0] = -1;
+	}
+
+	/**
+	 *
+	 * Generates the children of a node, one for every legal move of the player
+	 * to move. If that player has to pass, the children are the other player's
+	 * moves and are flagged as such. A node without any moves is marked as the
+	 * end of the game.
+	 *
+	 * @param node
+	 *            index of a node whose children have not been generated.
+	 * @param own
+	 *            bitboard of the player to move at the node.
+	 * @param opp
+	 *            bitboard of the other player.
+	 *
+	 * @return false if the pool does not have room for the children, in which
+	 *         case the node is left unexpanded.
+	 */
+	public boolean expand(int node, long own, long opp) {
+
+		long moves = BitBoard.legalMoves(own, opp);
+		int passed = 0;
+
+		if (moves == 0) {
+
+			moves = BitBoard.legalMoves(opp, own);
+			passed = PASSED;
+		}
+
+		int count = Long.bitCount(moves);
+
+		if (size + count > visits.length) {
+
+			return false;
+		}
+
+		firstChild[node] = size;
+		childCount[node] = (byte) count;
+		SearchMetrics.recorder().nodes(count);
+
+		while (moves != 0) {
+
+			visits[size] = 0;
+			wins[size] = 0;
+			firstChild[size] = UNEXPANDED;
+			childCount[size] = 0;
+			move[size] = (byte) (Long.numberOfTrailingZeros(moves) | passed);
+			parent[size] = node;
+
+			moves &= moves - 1;
+			size++;
+		}
+
+		return true;
+	}
+
+	/**
+	 *
+	 * Updates number of simulations run and wins of a node.
+	 *
+	 * @param node
+	 *            index of the node.
+	 * @param win
+	 *            whether or not the simulation resulted in a win.
+	 */
+	public void updateStats(int node, boolean win) {
+
+		visits[node]++;
+
+		if (win) {
+
+			wins[node]++;
+		}
+	}
+
+	/**
+	 *
+	 * Returns whether or not the children of a node have been generated.
+	 *
+	 * @param node
+	 *            index of the node.
+	 *
+	 * @return true if the node has been expanded.
+	 */
+	public boolean isExpanded(int node) {
+
+		return firstChild[node] != UNEXPANDED;
+	}
+
+	/**
+	 *
+	 * Returns the index of the first child of a node.
+	 *
+	 * @param node
+	 *            index of the node.
+	 *
+	 * @return index of the first child, UNEXPANDED if there are no children
+	 *         yet.
+	 */
+	public int getFirstChild(int node) {
+
+		return firstChild[node];
+	}
+
+	/**
+	 *
+	 * Returns the number of children of a node.
+	 *
+	 * @param node
+	 *            index of the node.
+	 *
+	 * @return number of children, 0 if the node has not been expanded or is
+	 *         the end of the game.
+	 */
+	public int getChildCount(int node) {
+
+		return childCount[node];
+	}
+
+	/**
+	 *
+	 * Returns the move that led to a node.
+	 *
+	 * @param node
+	 *            index of the node.
+	 *
+	 * @return square (row * 8 + col) of the move, with PASSED added if the
+	 *         player before the move had to pass.
+	 */
+	public int getMove(int node) {
+
+		return move[node];
+	}
+
+	/**
+	 *
+	 * Returns the parent of a node.
+	 *
+	 * @param node
+	 *            index of the node.
+	 *
+	 * @return index of the parent, -1 for the root.
+	 */
+	public int getParent(int node) {
+
+		return parent[node];
+	}
+
+	/**
+	 *
+	 * Returns the number of simulations that went through a node.
+	 *
+	 * @param node
+	 *            index of the node.
+	 *
+	 * @return number of simulations.
+	 */
+	public int getSimulations(int node) {
+
+		return visits[node];
+	}
+
+	/**
+	 *
+	 * Returns the number of wins made when simulations went through a node.
+	 *
+	 * @param node
+	 *            index of the node.
+	 *
+	 * @return number of wins.
+	 */
+	public int getWins(int node) {
+
+		return wins[node];
+	}
+
+	/**
+	 *
+	 * Returns the number of nodes in the pool.
+	 *
+	 * @return number of nodes, including the root.
+	 */
+	public int size() {
+
+		return size;
+	}
+}
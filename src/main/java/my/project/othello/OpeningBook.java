@@ -0,0 +1,616 @@
+package my.project.othello;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ *
+ * Read-only book of opening positions and the statistics of their moves from
+ * deep searches, so that a player can make its first moves without searching.
+ * The book file is mapped into memory rather than read, so opening it is
+ * instant and every player in the process shares the same pages.
+ * <p>
+ * Positions are stored from the side of the player to move and keyed by the
+ * smallest Zobrist hash among the symmetries that keep the starting position
+ * the same (mirroring in either diagonal and half a turn), so a position and
+ * its mirror images share an entry. Moves are stored on the squares of that
+ * canonical symmetry.
+ * <p>
+ * The file starts with a magic number and the number of entries, followed by
+ * one entry per move sorted by key and then by square: the key (8 bytes), the
+ * square, the simulations and the wins of the move (4 bytes each).
+ *
+ * @author Aleksandr Popov
+ */
+public class OpeningBook {
+
+	// "OBK1"
+	private static final int MAGIC = 0x4f424b31;
+
+	private static final int HEADER_BYTES = 8;
+	private static final int ENTRY_BYTES = 20;
+
+	// number of symmetries that keep the starting position the same
+	private static final int SYMMETRIES = 4;
+
+	private final MappedByteBuffer buffer;
+	private final int size;
+
+	private OpeningBook(MappedByteBuffer buffer, int size) {
+
+		this.buffer = buffer;
+		this.size = size;
+	}
+
+	/**
+	 *
+	 * Statistics of the moves of one position, indexed by square.
+	 */
+	public static final class Statistics {
+
+		private final int[] simulations = new int[64];
+		private final int[] wins = new int[64];
+
+		/**
+		 *
+		 * Returns the number of simulations of a move.
+		 *
+		 * @param square
+		 *            square (row * 8 + col) of the move.
+		 *
+		 * @return simulations of the move, 0 if it was not searched.
+		 */
+		public int getSimulations(int square) {
+
+			return simulations[square];
+		}
+
+		/**
+		 *
+		 * Returns the number of simulations of a move that were won.
+		 *
+		 * @param square
+		 *            square (row * 8 + col) of the move.
+		 *
+		 * @return wins of the move.
+		 */
+		public int getWins(int square) {
+
+			return wins[square];
+		}
+
+		/**
+		 *
+		 * Adds simulations of a move, capped at Integer.MAX_VALUE.
+		 *
+		 * @param square
+		 *            square (row * 8 + col) of the move.
+		 * @param simulations
+		 *            number of simulations to add.
+		 * @param wins
+		 *            number of those simulations that were won.
+		 */
+		public void add(int square, long simulations, long wins) {
+
+			this.simulations[square] = (int) Math.min(Integer.MAX_VALUE, this.simulations[square] + simulations);
+			this.wins[square] = (int) Math.min(Integer.MAX_VALUE, this.wins[square] + wins);
+		}
+
+		/**
+		 *
+		 * Returns the move with the most simulations.
+		 *
+		 * @return square of the best move, -1 if no move has simulations.
+		 */
+		public int getBestMove() {
+
+			int best = -1;
+
+			for (int square = 0; square < 64; square++) {
+
+				if (simulations[square] > 0 && (best < 0 || simulations[square] > simulations[best])) {
+
+					best = square;
+				}
+			}
+
+			return best;
+		}
+	}
+
+	/**
+	 *
+	 * Maps a book file into memory.
+	 *
+	 * @param file
+	 *            book file written by write.
+	 *
+	 * @return the book.
+	 *
+	 * @throws IOException
+	 *             if the file can not be read or is not a book.
+	 */
+	public static OpeningBook open(Path file) throws IOException {
+
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+
+		try {
+			long length = channel.size();
+
+			if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+
+				throw new IOException("Not an opening book: " + file);
+			}
+
+			// mapping stays valid after the channel is closed
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			int size = buffer.getInt(4);
+
+			if (buffer.getInt(0) != MAGIC || size < 0 || HEADER_BYTES + (long) size * ENTRY_BYTES != length) {
+
+				throw new IOException("Not an opening book: " + file);
+			}
+
+			return new OpeningBook(buffer, size);
+		} finally {
+
+			channel.close();
+		}
+	}
+
+	/**
+	 *
+	 * Writes a book file. The file is written next to its final location and
+	 * then moved into place, so a book that is open elsewhere is never seen
+	 * half written.
+	 *
+	 * @param file
+	 *            book file to write.
+	 * @param positions
+	 *            statistics of every position by canonical key, with moves on
+	 *            the squares of the canonical symmetry.
+	 *
+	 * @throws IOException
+	 *             if the file can not be written.
+	 */
+	public static void write(Path file, SortedMap<Long, Statistics> positions) throws IOException {
+
+		Writer writer = new Writer(file);
+
+		try {
+			// keys are compared the way lookups compare them
+			for (Map.Entry<Long, Statistics> entry : positions.entrySet()) {
+
+				Statistics stats = entry.getValue();
+
+				for (int square = 0; square < 64; square++) {
+
+					if (stats.simulations[square] > 0) {
+
+						writer.add(entry.getKey(), square, stats.simulations[square], stats.wins[square]);
+					}
+				}
+			}
+
+			writer.commit();
+		} finally {
+
+			writer.close();
+		}
+	}
+
+	/**
+	 *
+	 * Writes a book file one entry at a time, for books too large to hold in
+	 * memory. Entries must be added in the order of the file, by key and then
+	 * by square. Like write, the file is written next to its final location
+	 * and only moved into place by commit, closing a writer that was not
+	 * committed leaves the old file untouched.
+	 */
+	public static final class Writer implements Closeable {
+
+		private static final int BUFFER_BYTES = 1 << 16;
+
+		private final Path file;
+		private final Path temp;
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+		private int count = 0;
+		private long lastKey = Long.MIN_VALUE;
+		private int lastSquare = -1;
+		private boolean committed = false;
+
+		/**
+		 *
+		 * Constructor for a writer of a book file.
+		 *
+		 * @param file
+		 *            book file to write.
+		 *
+		 * @throws IOException
+		 *             if the file can not be created.
+		 */
+		public Writer(Path file) throws IOException {
+
+			this.file = file.toAbsolutePath();
+			temp = Files.createTempFile(this.file.getParent(), this.file.getFileName().toString(), ".tmp");
+			channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+
+			// count is filled in by commit
+			buffer.putInt(MAGIC).putInt(0);
+		}
+
+		/**
+		 *
+		 * Adds the statistics of a move to the book.
+		 *
+		 * @param key
+		 *            canonical key of the position.
+		 * @param square
+		 *            square (row * 8 + col) of the move, on the squares of the
+		 *            canonical symmetry.
+		 * @param simulations
+		 *            simulations of the move.
+		 * @param wins
+		 *            simulations of the move that were won.
+		 *
+		 * @throws IOException
+		 *             if the entry can not be written.
+		 */
+		public void add(long key, int square, int simulations, int wins) throws IOException {
+
+			if (key < lastKey || (key == lastKey && square <= lastSquare)) {
+
+				throw new IllegalArgumentException("Book entries out of order: " + key + " " + square);
+			}
+
+			if (count == Integer.MAX_VALUE || HEADER_BYTES + (count + 1L) * ENTRY_BYTES > Integer.MAX_VALUE) {
+
+				throw new IOException("Opening book is full: " + file);
+			}
+
+			if (buffer.remaining() < ENTRY_BYTES) {
+
+				flush();
+			}
+
+			buffer.putLong(key).putInt(square).putInt(simulations).putInt(wins);
+			lastKey = key;
+			lastSquare = square;
+			count++;
+		}
+
+		/**
+		 *
+		 * Returns the number of entries added so far.
+		 *
+		 * @return number of entries.
+		 */
+		public int size() {
+
+			return count;
+		}
+
+		/**
+		 *
+		 * Finishes the file and moves it into place.
+		 *
+		 * @throws IOException
+		 *             if the file can not be written.
+		 */
+		public void commit() throws IOException {
+
+			flush();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putInt(MAGIC).putInt(count).flip();
+
+			while (header.hasRemaining()) {
+
+				channel.write(header, header.position());
+			}
+
+			channel.force(true);
+			channel.close();
+
+			try {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			committed = true;
+		}
+
+		/**
+		 *
+		 * Closes the writer, throwing the file away if it was not committed.
+		 *
+		 * @throws IOException
+		 *             if the temporary file can not be deleted.
+		 */
+		public void close() throws IOException {
+
+			if (!committed) {
+
+				channel.close();
+				Files.deleteIfExists(temp);
+			}
+		}
+
+		private void flush() throws IOException {
+
+			buffer.flip();
+
+			while (buffer.hasRemaining()) {
+
+				channel.write(buffer);
+			}
+
+			buffer.clear();
+		}
+	}
+
+	/**
+	 *
+	 * Returns the number of moves in the book.
+	 *
+	 * @return number of entries.
+	 */
+	public int size() {
+
+		return size;
+	}
+
+	/**
+	 *
+	 * Returns the canonical key of the position of an entry.
+	 *
+	 * @param index
+	 *            entry, from 0 to size() - 1.
+	 *
+	 * @return canonical key.
+	 */
+	public long getKey(int index) {
+
+		return buffer.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+	}
+
+	/**
+	 *
+	 * Returns the square of the move of an entry, on the squares of the
+	 * canonical symmetry.
+	 *
+	 * @param index
+	 *            entry, from 0 to size() - 1.
+	 *
+	 * @return square (row * 8 + col) of the move.
+	 */
+	public int getSquare(int index) {
+
+		return buffer.getInt(HEADER_BYTES + index * ENTRY_BYTES + 8);
+	}
+
+	/**
+	 *
+	 * Returns the simulations of the move of an entry.
+	 *
+	 * @param index
+	 *            entry, from 0 to size() - 1.
+	 *
+	 * @return number of simulations.
+	 */
+	public int getSimulations(int index) {
+
+		return buffer.getInt(HEADER_BYTES + index * ENTRY_BYTES + 12);
+	}
+
+	/**
+	 *
+	 * Returns the wins of the move of an entry.
+	 *
+	 * @param index
+	 *            entry, from 0 to size() - 1.
+	 *
+	 * @return number of simulations that were won.
+	 */
+	public int getWins(int index) {
+
+		return buffer.getInt(HEADER_BYTES + index * ENTRY_BYTES + 16);
+	}
+
+	/**
+	 *
+	 * Looks up the statistics of a position. Reads straight from the mapped
+	 * file, so it may be called by several threads at once.
+	 *
+	 * @param own
+	 *            bitboard of the player to move.
+	 * @param opp
+	 *            bitboard of the other player.
+	 *
+	 * @return statistics with moves on the squares of this position, or null
+	 *         if the position is not in the book.
+	 */
+	public Statistics lookup(long own, long opp) {
+
+		int symmetry = symmetry(own, opp);
+		long key = key(own, opp, symmetry);
+
+		// finds the first entry of the key
+		int low = 0;
+		int high = size;
+
+		while (low < high) {
+
+			int mid = (low + high) >>> 1;
+
+			if (getKey(mid) < key) {
+
+				low = mid + 1;
+			}
+
+			else {
+
+				high = mid;
+			}
+		}
+
+		if (low == size || getKey(low) != key) {
+
+			return null;
+		}
+
+		Statistics stats = new Statistics();
+
+		for (int i = low; i < size && getKey(i) == key; i++) {
+
+			// every symmetry is its own inverse
+			int square = transform(getSquare(i), symmetry);
+
+			stats.add(square, getSimulations(i), getWins(i));
+		}
+
+		return stats;
+	}
+
+	/**
+	 *
+	 * Returns the book move of a position.
+	 *
+	 * @param own
+	 *            bitboard of the player to move.
+	 * @param opp
+	 *            bitboard of the other player.
+	 *
+	 * @return square (row * 8 + col) of the move with the most simulations, -1
+	 *         if the position is not in the book or the move is not legal.
+	 */
+	public int getMove(long own, long opp) {
+
+		Statistics stats = lookup(own, opp);
+
+		if (stats == null) {
+
+			return -1;
+		}
+
+		int square = stats.getBestMove();
+
+		// a different position with the same key
+		if (square < 0 || (BitBoard.legalMoves(own, opp) & 1L << square) == 0) {
+
+			return -1;
+		}
+
+		return square;
+	}
+
+	/**
+	 *
+	 * Returns the canonical key of a position.
+	 *
+	 * @param own
+	 *            bitboard of the player to move.
+	 * @param opp
+	 *            bitboard of the other player.
+	 *
+	 * @return smallest hash among the symmetries of the position.
+	 */
+	public static long key(long own, long opp) {
+
+		return key(own, opp, symmetry(own, opp));
+	}
+
+	/**
+	 *
+	 * Returns the symmetry that turns a position into its canonical form.
+	 *
+	 * @param own
+	 *            bitboard of the player to move.
+	 * @param opp
+	 *            bitboard of the other player.
+	 *
+	 * @return symmetry, from 0 to 3, to pass to transform.
+	 */
+	public static int symmetry(long own, long opp) {
+
+		int best = 0;
+		long bestKey = key(own, opp, 0);
+
+		for (int symmetry = 1; symmetry < SYMMETRIES; symmetry++) {
+
+			long key = key(own, opp, symmetry);
+
+			if (key < bestKey) {
+
+				best = symmetry;
+				bestKey = key;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 *
+	 * Moves a square by a symmetry. Every symmetry is its own inverse, so the
+	 * same call moves a square back.
+	 *
+	 * @param square
+	 *            square (row * 8 + col) to move.
+	 * @param symmetry
+	 *            symmetry from 0 to 3.
+	 *
+	 * @return square it moves to.
+	 */
+	public static int transform(int square, int symmetry) {
+
+		return Long.numberOfTrailingZeros(transform(1L << square, symmetry));
+	}
+
+	/**
+	 *
+	 * Returns the key of a position under a symmetry, which is its canonical
+	 * key when the symmetry is the one returned by symmetry.
+	 *
+	 * @param own
+	 *            bitboard of the player to move.
+	 * @param opp
+	 *            bitboard of the other player.
+	 * @param symmetry
+	 *            symmetry from 0 to 3.
+	 *
+	 * @return hash of the position under the symmetry.
+	 */
+	public static long key(long own, long opp, int symmetry) {
+
+		return Zobrist.hash(transform(own, symmetry), transform(opp, symmetry), 'X');
+	}
+
+	private static long transform(long bits, int symmetry) {
+
+		if ((symmetry & 1) != 0) {
+
+			bits = BitBoard.transpose(bits);
+		}
+
+		if ((symmetry & 2) != 0) {
+
+			bits = BitBoard.rotate(bits);
+		}
+
+		return bits;
+	}
+}
@@ -0,0 +1,298 @@
+package my.project.othello;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ *
+ * Builds an opening book from long searches, or extends an existing one. The
+ * positions are walked breadth first from the starting position. Every
+ * position that is not in the book yet is searched for a fixed time, and the
+ * moves that received at least a share of the most searched move's
+ * simulations are followed to the next ply, so the book covers every move a
+ * strong player is likely to make. Positions that are already in the book are
+ * not searched again, but their moves are followed, so running the builder
+ * again with more plies makes the book deeper.
+ * <p>
+ * The book is saved every few positions, so a long build can be stopped and
+ * carried on later.
+ * <p>
+ * Usage: OpeningBookBuilder file plies [ms] [threads] [share], where plies is
+ * the number of moves from the start the book covers, ms the time of each
+ * search (default 10000), threads the number of search threads (default 1)
+ * and share the smallest share of the best move's simulations a move needs to
+ * be followed (default 0.25).
+ *
+ * @author Aleksandr Popov
+ */
+public final class OpeningBookBuilder {
+
+	// positions searched between two saves of the book
+	private static final int SAVE_INTERVAL = 16;
+
+	private OpeningBookBuilder() {
+
+	}
+
+	/**
+	 *
+	 * Position waiting to be added to the book.
+	 */
+	private static final class QueuedPosition {
+
+		private final long xBits;
+		private final long oBits;
+		private final char piece;
+		private final int ply;
+
+		private QueuedPosition(long xBits, long oBits, char piece, int ply) {
+
+			this.xBits = xBits;
+			this.oBits = oBits;
+			this.piece = piece;
+			this.ply = ply;
+		}
+	}
+
+	/**
+	 *
+	 * Reads every position of a book file.
+	 *
+	 * @param file
+	 *            book file, which may not exist yet.
+	 *
+	 * @return statistics of every position by canonical key.
+	 *
+	 * @throws IOException
+	 *             if the file exists but can not be read.
+	 */
+	private static SortedMap<Long, OpeningBook.Statistics> load(Path file) throws IOException {
+
+		SortedMap<Long, OpeningBook.Statistics> positions = new TreeMap<Long, OpeningBook.Statistics>();
+
+		if (!Files.exists(file)) {
+
+			return positions;
+		}
+
+		OpeningBook book = OpeningBook.open(file);
+
+		for (int i = 0; i < book.size(); i++) {
+
+			OpeningBook.Statistics stats = positions.get(book.getKey(i));
+
+			if (stats == null) {
+
+				stats = new OpeningBook.Statistics();
+				positions.put(book.getKey(i), stats);
+			}
+
+			stats.add(book.getSquare(i), book.getSimulations(i), book.getWins(i));
+		}
+
+		return positions;
+	}
+
+	/**
+	 *
+	 * Searches a position and returns the statistics of its moves.
+	 *
+	 * @param player
+	 *            player of the piece type to move.
+	 * @param position
+	 *            position to search.
+	 *
+	 * @return statistics of the moves, on the squares of the position.
+	 */
+	private static OpeningBook.Statistics search(MonteCarloPlayer player, QueuedPosition position) {
+
+		player.analyzeMoves(position.piece == 'X' ? position.xBits : position.oBits,
+				position.piece == 'X' ? position.oBits : position.xBits);
+		player.getInput();
+
+		OpeningBook.Statistics stats = new OpeningBook.Statistics();
+
+		for (int square = 0; square < 64; square++) {
+
+			stats.add(square, player.getLastSimulations(square), player.getLastWins(square));
+		}
+
+		return stats;
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 2) {
+
+			System.out.println("Usage: OpeningBookBuilder file plies [ms] [threads] [share]");
+			return;
+		}
+
+		Path file = Paths.get(args[0]);
+		int plies = Integer.parseInt(args[1]);
+		long moveMillis = args.length > 2 ? Long.parseLong(args[2]) : 10000;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		double share = args.length > 4 ? Double.parseDouble(args[4]) : 0.25;
+
+		SortedMap<Long, OpeningBook.Statistics> positions = load(file);
+		int loaded = positions.size();
+
+		// the endgame solver never comes into play this early
+		SearchConfig config = new SearchConfig().setThreads(threads).setEndgameEmpties(0);
+		MonteCarloPlayer xPlayer = new MonteCarloPlayer('X', new TimeManager(moveMillis), false, config);
+		MonteCarloPlayer oPlayer = new MonteCarloPlayer('O', new TimeManager(moveMillis), false, config);
+
+		xPlayer.setQuiet(true);
+		oPlayer.setQuiet(true);
+
+		Queue<QueuedPosition> queue = new ArrayDeque<QueuedPosition>();
+		Set<Long> seen = new HashSet<Long>();
+		int searched = 0;
+
+		queue.add(new QueuedPosition(BitBoard.START_X, BitBoard.START_O, 'X', 0));
+
+		try {
+			while (!queue.isEmpty()) {
+
+				QueuedPosition position = queue.remove();
+				long own = position.piece == 'X' ? position.xBits : position.oBits;
+				long opp = position.piece == 'X' ? position.oBits : position.xBits;
+				long key = OpeningBook.key(own, opp);
+				int symmetry = OpeningBook.symmetry(own, opp);
+
+				// mirror image of a position that was handled already
+				if (!seen.add(key)) {
+
+					continue;
+				}
+
+				OpeningBook.Statistics stats = positions.get(key);
+				OpeningBook.Statistics found = new OpeningBook.Statistics();
+
+				if (stats == null) {
+
+					found = search(position.piece == 'X' ? xPlayer : oPlayer, position);
+					stats = new OpeningBook.Statistics();
+
+					for (int square = 0; square < 64; square++) {
+
+						stats.add(OpeningBook.transform(square, symmetry), found.getSimulations(square),
+								found.getWins(square));
+					}
+
+					positions.put(key, stats);
+					searched++;
+
+					int best = found.getBestMove();
+
+					System.out.println("Ply " + position.ply + ", position " + positions.size() + "- best move "
+							+ (best / 8 + 1) + " " + (best % 8 + 1) + " (" + found.getSimulations(best)
+							+ " simulations)");
+
+					if (searched % SAVE_INTERVAL == 0) {
+
+						OpeningBook.write(file, positions);
+					}
+				}
+
+				else {
+
+					for (int square = 0; square < 64; square++) {
+
+						int canonical = OpeningBook.transform(square, symmetry);
+
+						found.add(square, stats.getSimulations(canonical), stats.getWins(canonical));
+					}
+				}
+
+				if (position.ply + 1 < plies) {
+
+					addChildren(position, own, opp, found, share, queue);
+				}
+			}
+		} finally {
+
+			OpeningBook.write(file, positions);
+			xPlayer.shutdown();
+			oPlayer.shutdown();
+		}
+
+		System.out.println("Positions loaded- " + loaded);
+		System.out.println("Positions searched- " + searched);
+		System.out.println("Positions in book- " + positions.size());
+	}
+
+	/**
+	 *
+	 * Queues the positions after the moves of a position that received enough
+	 * simulations. If the opponent then has to pass, the position after the
+	 * pass is queued instead.
+	 *
+	 * @param position
+	 *            position the moves are made from.
+	 * @param own
+	 *            bitboard of the player to move.
+	 * @param opp
+	 *            bitboard of the other player.
+	 * @param stats
+	 *            statistics of the moves, on the squares of the position.
+	 * @param share
+	 *            smallest share of the best move's simulations a move needs.
+	 * @param queue
+	 *            positions waiting to be added to the book.
+	 */
+	private static void addChildren(QueuedPosition position, long own, long opp, OpeningBook.Statistics stats,
+			double share, Queue<QueuedPosition> queue) {
+
+		int best = stats.getBestMove();
+
+		if (best < 0) {
+
+			return;
+		}
+
+		long moves = BitBoard.legalMoves(own, opp);
+		char other = position.piece == 'X' ? 'O' : 'X';
+
+		while (moves != 0) {
+
+			int square = Long.numberOfTrailingZeros(moves);
+			moves &= moves - 1;
+
+			if (stats.getSimulations(square) < share * stats.getSimulations(best)) {
+
+				continue;
+			}
+
+			long changed = BitBoard.flips(own, opp, square) | 1L << square;
+			long newOwn = own | changed;
+			long newOpp = opp & ~changed;
+			char next = other;
+
+			// opponent has to pass, the same player moves again
+			if (BitBoard.legalMoves(newOpp, newOwn) == 0) {
+
+				// game is over
+				if (BitBoard.legalMoves(newOwn, newOpp) == 0) {
+
+					continue;
+				}
+
+				next = position.piece;
+			}
+
+			long xBits = position.piece == 'X' ? newOwn : newOpp;
+			long oBits = position.piece == 'X' ? newOpp : newOwn;
+
+			queue.add(new QueuedPosition(xBits, oBits, next, position.ply + 1));
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package my.project.othello;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ *
+ * Counts the positions reached after a fixed number of moves, to check the
+ * move generator against known values and to measure how fast it is. Uses
+ * the same BitBoard move generation as Player and Node.
+ * <p>
+ * A pass counts as a move, and a game that ends before the given depth counts
+ * as a single position. From the starting position this gives the published
+ * reversi perft values.
+ * <p>
+ * Usage: Perft depth [threads] [position], where position is 64 squares row by
+ * row ('X', 'O' or '-') followed by the piece type to move. Every depth up to
+ * the given one is counted, and with more than one thread the moves are split
+ * across a fork-join pool.
+ *
+ * @author Aleksandr Popov
+ */
+public final class Perft {
+
+	// positions after 1, 2, ... moves from the starting position
+	private static final long[] KNOWN = { 4L, 12L, 56L, 244L, 1396L, 8200L, 55092L, 390216L, 3005288L,
+			24571284L, 212258800L, 1939886636L, 18429641748L, 184042084512L };
+
+	// remaining depth below which a task counts its subtree on its own thread
+	private static final int SPLIT_DEPTH = 6;
+
+	private Perft() {
+
+	}
+
+	/**
+	 *
+	 * Counts the positions reached after a number of moves.
+	 *
+	 * @param own
+	 *            bitboard of the player to move.
+	 * @param opp
+	 *            bitboard of the other player.
+	 * @param depth
+	 *            number of moves to make.
+	 *
+	 * @return number of positions.
+	 */
+	public static long count(long own, long opp, int depth) {
+
+		return count(own, opp, depth, false);
+	}
+
+	/**
+	 *
+	 * Counts the positions reached after a number of moves, splitting the work
+	 * across a fork-join pool.
+	 *
+	 * @param own
+	 *            bitboard of the player to move.
+	 * @param opp
+	 *            bitboard of the other player.
+	 * @param depth
+	 *            number of moves to make.
+	 * @param pool
+	 *            pool the counting is run on.
+	 *
+	 * @return number of positions.
+	 */
+	public static long count(long own, long opp, int depth, ForkJoinPool pool) {
+
+		return pool.invoke(new CountTask(own, opp, depth, false));
+	}
+
+	/**
+	 *
+	 * Returns the number of positions after a number of moves from the
+	 * starting position.
+	 *
+	 * @param depth
+	 *            number of moves.
+	 *
+	 * @return number of positions, -1 if it is not known.
+	 */
+	public static long known(int depth) {
+
+		return depth >= 1 && depth <= KNOWN.length ? KNOWN[depth - 1] : -1;
+	}
+
+	/**
+	 *
+	 * Overloaded method. Counts the positions reached after a number of moves
+	 * on the calling thread.
+	 *
+	 * @param own
+	 *            bitboard of the player to move.
+	 * @param opp
+	 *            bitboard of the other player.
+	 * @param depth
+	 *            number of moves to make.
+	 * @param passed
+	 *            whether the move before was a pass.
+	 *
+	 * @return number of positions.
+	 */
+	private static long count(long own, long opp, int depth, boolean passed) {
+
+		if (depth == 0) {
+
+			return 1;
+		}
+
+		long moves = BitBoard.legalMoves(own, opp);
+
+		// player to move has to pass
+		if (moves == 0) {
+
+			// neither player can move, game is over
+			if (passed) {
+
+				return 1;
+			}
+
+			return count(opp, own, depth - 1, true);
+		}
+
+		// every move leads to exactly one position
+		if (depth == 1) {
+
+			return Long.bitCount(moves);
+		}
+
+		long nodes = 0;
+
+		while (moves != 0) {
+
+			int square = Long.numberOfTrailingZeros(moves);
+			long changed = BitBoard.flips(own, opp, square);
+			moves &= moves - 1;
+
+			nodes += count(opp & ~changed, own | changed | 1L << square, depth - 1, false);
+		}
+
+		return nodes;
+	}
+
+	/**
+	 *
+	 * Counts the positions below one position, forking a task for every move
+	 * until the remaining depth is small enough to count sequentially.
+	 */
+	private static final class CountTask extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long own;
+		private final long opp;
+		private final int depth;
+		private final boolean passed;
+
+		private CountTask(long own, long opp, int depth, boolean passed) {
+
+			this.own = own;
+			this.opp = opp;
+			this.depth = depth;
+			this.passed = passed;
+		}
+
+		@Override
+		protected Long compute() {
+
+			if (depth <= SPLIT_DEPTH) {
+
+				return count(own, opp, depth, passed);
+			}
+
+			long moves = BitBoard.legalMoves(own, opp);
+
+			if (moves == 0) {
+
+				if (passed) {
+
+					return 1L;
+				}
+
+				return new CountTask(opp, own, depth - 1, true).compute();
+			}
+
+			List<CountTask> tasks = new ArrayList<CountTask>(Long.bitCount(moves));
+
+			while (moves != 0) {
+
+				int square = Long.numberOfTrailingZeros(moves);
+				long changed = BitBoard.flips(own, opp, square);
+				moves &= moves - 1;
+
+				tasks.add(new CountTask(opp & ~changed, own | changed | 1L << square, depth - 1, false));
+			}
+
+			long nodes = 0;
+
+			for (CountTask task : invokeAll(tasks)) {
+
+				nodes += task.join();
+			}
+
+			return nodes;
+		}
+	}
+
+	/**
+	 *
+	 * Counts every depth up to the one given and prints the number of
+	 * positions, the time taken and the positions per second.
+	 *
+	 * @param args
+	 *            depth, then optionally the number of threads and a position.
+	 */
+	public static void main(String[] args) {
+
+		if (args.length < 1 || args.length > 3) {
+
+			System.err.println("Usage: Perft depth [threads] [position]");
+			return;
+		}
+
+		int depth = Integer.parseInt(args[0]);
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		long xBits = BitBoard.START_X;
+		long oBits = BitBoard.START_O;
+		char piece = 'X';
+		boolean start = true;
+
+		if (args.length > 2) {
+
+			String position = args[2];
+
+			if (position.length() != 65) {
+
+				System.err.println("Position must be 64 squares followed by the piece to move: " + position);
+				return;
+			}
+
+			xBits = 0;
+			oBits = 0;
+
+			for (int sq = 0; sq < 64; sq++) {
+
+				if (position.charAt(sq) == 'X') {
+
+					xBits |= 1L << sq;
+				}
+
+				else if (position.charAt(sq) == 'O') {
+
+					oBits |= 1L << sq;
+				}
+			}
+
+			piece = Character.toUpperCase(position.charAt(64));
+
+			if (piece != 'X' && piece != 'O') {
+
+				System.err.println("Piece to move must be X or O: " + position.charAt(64));
+				return;
+			}
+
+			start = xBits == BitBoard.START_X && oBits == BitBoard.START_O && piece == 'X';
+		}
+
+		long own = piece == 'X' ? xBits : oBits;
+		long opp = piece == 'X' ? oBits : xBits;
+		ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
+
+		try {
+			for (int d = 1; d <= depth; d++) {
+
+				long startTime = System.nanoTime();
+				long nodes = pool == null ? count(own, opp, d) : count(own, opp, d, pool);
+				long nanos = Math.max(1, System.nanoTime() - startTime);
+
+				String check = "";
+
+				if (start && known(d) >= 0) {
+
+					check = nodes == known(d) ? "  ok" : "  MISMATCH, expected " + known(d);
+				}
+
+				System.out.printf("%2d %15d %10.1f ms %14.0f nodes/s%s%n", d, nodes, nanos / 1e6, nodes * 1e9 / nanos,
+						check);
+			}
+		} finally {
+
+			if (pool != null) {
+
+				pool.shutdown();
+			}
+		}
+	}
+}
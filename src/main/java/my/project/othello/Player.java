@@ -1,7 +1,5 @@
 package my.project.othello;
 
-import java.util.*;
-
 /**
  *
  * Abstract class that contains methods used by all players of a game of reversi.
@@ -10,13 +8,23 @@ import java.util.*;
  */
 public abstract class Player {
 
-	// stores which pieces a possible move would have to flip
-	private Map<String, List<List<CoordinatePair>>> map = new HashMap<String, List<List<CoordinatePair>>>();
+	// legal moves of the position last analyzed, one bit per square
+	private long moves = 0;
+
+	// pieces each legal move would flip, by square
+	private final long[] flips = new long[64];
 
 	protected char piece;
 	protected char otherPiece;
 
-	public abstract String getInput();
+	/**
+	 *
+	 * Asks the player for a move. Only called when the player has a legal
+	 * move.
+	 *
+	 * @return square (row * 8 + col) the player moves to.
+	 */
+	public abstract int getInput();
 
 	/**
 	 * Getter for type of piece a player has control over.
@@ -41,208 +49,109 @@ public abstract class Player {
 
 	/**
 	 * 
-	 * Getter for the list of locations to flip associated with a move.
+	 * Getter for the pieces a move would flip.
+	 *
+	 * @param move
+	 *            legal move of the position last analyzed.
 	 *
-	 * @return Coordinates of piece that are to be flipped to the other piece
+	 * @return bitboard of the pieces that are to be flipped to the other piece
 	 *         than the current player.
 	 */
-	public List<List<CoordinatePair>> getCoordinates(String key) {
+	public long getFlips(int move) {
 
-		return map.get(key);
+		return hasMove(move) ? flips[move] : 0;
 	}
 
 	/**
 	 *
-	 * Updates hashmap for player that tracks which moves result in piece flips
-	 * in which coordinates, as well as possible moves the player may make.
+	 * Finds the moves the player can make and the pieces each one would flip.
 	 *
 	 * @param Board
 	 *            board state (2D char array).
 	 */
 	public void analyzeMoves(char[][] board) {
 
-		// scans board for type of piece
-		for (int row = 0; row < board.length; row++) {
-			for (int col = 0; col < board[0].length; col++) {
-
-				if (board[row][col] == piece) {
-
-					//searches in all directions for potential moves
-					searchAllDirections(board, row, col);
-				}
-			}
-		}
+		analyzeMoves(BitBoard.fromBoard(board, piece), BitBoard.fromBoard(board, otherPiece));
 	}
 
 	/**
 	 *
-	 * Clears hashmap that tracks which moves are possible and which piece are
-	 * to be flipped by a move.
+	 * Finds the moves the player can make and the pieces each one would flip,
+	 * reading the bitboards of the board without copying it.
 	 *
+	 * @param board
+	 *            board of the game.
 	 */
-	public void clearMap() {
+	public void analyzeMoves(Board board) {
 
-		map.clear();
+		analyzeMoves(board.getBits(piece), board.getBits(otherPiece));
 	}
 
 	/**
 	 *
-	 * Overloaded method. Checks to see if there is a possible move at given
-	 * coordinate.
+	 * Finds the moves the player can make and the pieces each one would flip,
+	 * using the bitboards of both players.
 	 *
-	 * @param row
-	 *            row of a board.
-	 * @param col
-	 *            column of a board.
+	 * @param own
+	 *            bitboard of this player's pieces.
+	 * @param opp
+	 *            bitboard of the other player's pieces.
 	 */
-	public boolean hasKey(int row, int col) {
+	public void analyzeMoves(long own, long opp) {
 
-		CoordinatePair temp = new CoordinatePair(row, col);
+		moves = BitBoard.legalMoves(own, opp);
 
-		return map.containsKey(temp.toString());
-	}
+		long remaining = moves;
 
-	/**
-	 *
-	 * Overloaded method. Checks to see if there is a possible move at a given
-	 * coordinate.
-	 *
-	 * @param coordinatePair
-	 *            object of type CoordinatePair that contains the row and column
-	 *            to check.
-	 */
-	public boolean hasKey(CoordinatePair coordinatePair) {
+		while (remaining != 0) {
 
-		return map.containsKey(coordinatePair.toString());
+			int square = Long.numberOfTrailingZeros(remaining);
+			remaining &= remaining - 1;
+
+			flips[square] = BitBoard.flips(own, opp, square);
+		}
 	}
 
 	/**
 	 *
-	 * Checks to see if player has possible moves.
+	 * Forgets the moves found by the last analysis.
 	 */
-	public boolean hasMoves() {
-
-		if (map.isEmpty()) {
+	public void clearMoves() {
 
-			return false;
-		}
-
-		return true;
+		moves = 0;
 	}
 
 	/**
 	 *
-	 * Returns possible moves that a player can make.
+	 * Checks to see if there is a possible move to a square.
 	 *
-	 * @return Array of Strings that are the row and columns for possible moves.
+	 * @param move
+	 *            square (row * 8 + col) to check.
+	 *
+	 * @return true if the player can move there.
 	 */
-	public String[] getPossibleMoves() {
-
-		Set<String> s = map.keySet();
-		String[] temp = new String[s.size()];
-
-		s.toArray(temp);
+	public boolean hasMove(int move) {
 
-		return temp;
+		return Move.isSquare(move) && (moves & (1L << move)) != 0;
 	}
 
 	/**
-	 * 
-	 * Calls other method that performs the search with proper offset in the x
-	 * and y directions
-	 * 
-	 * @param board
-	 *            board state
-	 * @param currRow
-	 *            row location of a player's piece on the board
-	 * @param currCol
-	 *            column location of a player's piece on the board
+	 *
+	 * Checks to see if player has possible moves.
 	 */
-	private void searchAllDirections(char[][] board, int currRow, int currCol){
-		
-		for (int i = -1; i < 2; i ++){
-			for (int j = -1; j < 2; j ++){
-				
-				if (i == 0 && j == 0){
-					
-					continue;
-				}
-				
-				try{
-					search(board, currRow, currCol, i, j);
-				} catch (ArrayIndexOutOfBoundsException oob){
-					
-				}
-			}
-		}
+	public boolean hasMoves() {
+
+		return moves != 0;
 	}
 
 	/**
-	 * 
-	 * Searches in all 8 directions around a player's piece for an unbroken
-	 * chain of opponent's pieces
-	 * 
-	 * @param board
-	 *            board state
-	 * @param currRow
-	 *            row location of a player's piece on the board
-	 * @param currCol
-	 *            column location of a player's piece on the board
-	 * @param xOffset
-	 *            which direction in the x coordinate plane should the search go
-	 * @param yOffset
-	 *            which direction in the y coordinate plane should the search go
-	 * @throws ArrayIndexOutOfBoundsException
+	 *
+	 * Returns possible moves that a player can make.
+	 *
+	 * @return bitboard with a bit set on every square the player can move to.
 	 */
-	private void search(char[][] board, int currRow, int currCol, int xOffset, int yOffset) throws ArrayIndexOutOfBoundsException{
-		
-		if (board[currRow + xOffset][currCol + yOffset] == otherPiece) {
-
-			int i = currRow;
-			int j = currCol;
-
-			List <CoordinatePair> toFlip = new ArrayList<CoordinatePair>();
-
-			while (true) {
-
-				i += xOffset;
-				j += yOffset;
-				
-				// same piece type in that direction
-				if (board[i][j] == piece) {
-
-					break;
-				}
-
-				/*
-				 * finds end of chain and pairs key to the value(array of coords
-				 * to flip)
-				 */
-				if (board[i][j] != piece && board[i][j] != otherPiece) {
+	public long getPossibleMoves() {
 
-					CoordinatePair key = new CoordinatePair(i, j);
-
-					// already exists a key of this type
-					if (hasKey(key)) {
-
-						map.get(key.toString()).add(toFlip);
-						break;
-					}
-
-					// no key of this type
-					else {
-
-						List<List<CoordinatePair>> outerArray = new ArrayList<List<CoordinatePair>>();
-						outerArray.add(toFlip);
-						map.put(key.toString(), outerArray);
-						break;
-					}
-				}
-
-				CoordinatePair cp = new CoordinatePair(i, j);
-				toFlip.add(cp);
-			}
-		}
+		return moves;
 	}
-	
 }
@@ -0,0 +1,130 @@
+package my.project.othello;
+
+/**
+ *
+ * Plays light random games to completion for the simulation phase of the
+ * Monte Carlo Tree Search. Works entirely on the bitboards of a scratch
+ * position, so no nodes, boards or other objects are created while a game is
+ * played out. Moves are drawn from the generator of the calling thread, see
+ * RandomSource.current.
+ *
+ * @author Aleksandr Popov
+ */
+public final class Playout {
+
+	private Playout() {
+
+	}
+
+	/**
+	 *
+	 * Plays random moves from a position until neither player can move and
+	 * returns the winner of the finished game.
+	 *
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
+	 * @param piece
+	 *            piece type that is next to move.
+	 *
+	 * @return piece type of the player that won, 'T' for a tie.
+	 */
+	public static char play(long xBits, long oBits, char piece) {
+
+		return piece == 'X' ? play(xBits, oBits, true) : play(oBits, xBits, false);
+	}
+
+	/**
+	 *
+	 * Plays random moves from a position until neither player can move and
+	 * returns the winner of the finished game. The game is played on copies of
+	 * the position's bitboards, so the position is left as it was and can be
+	 * reused by the next simulation of the thread.
+	 *
+	 * @param position
+	 *            position to play out from.
+	 *
+	 * @return piece type of the player that won, 'T' for a tie.
+	 */
+	public static char play(Position position) {
+
+		return play(position.getOwn(), position.getOpp(), position.getNextMovePiece() == 'X');
+	}
+
+	/**
+	 *
+	 * Plays random moves until neither player can move.
+	 *
+	 * @param own
+	 *            bitboard of the player to move.
+	 * @param opp
+	 *            bitboard of the other player.
+	 * @param ownIsX
+	 *            whether the player to move has the X pieces.
+	 *
+	 * @return piece type of the player that won, 'T' for a tie.
+	 */
+	private static char play(long own, long opp, boolean ownIsX) {
+
+		RandomSource r = RandomSource.current();
+		boolean passed = false;
+
+		while (true) {
+
+			long moves = BitBoard.legalMoves(own, opp);
+
+			// player to move has to pass
+			if (moves == 0) {
+
+				// neither player can move, game is over
+				if (passed) {
+
+					break;
+				}
+
+				passed = true;
+			}
+
+			else {
+
+				passed = false;
+
+				int square = randomSquare(moves, r.nextInt(Long.bitCount(moves)));
+				long flipped = BitBoard.flips(own, opp, square);
+
+				own |= flipped | (1L << square);
+				opp &= ~flipped;
+			}
+
+			long temp = own;
+			own = opp;
+			opp = temp;
+			ownIsX = !ownIsX;
+		}
+
+		return ownIsX ? Board.getWinner(own, opp) : Board.getWinner(opp, own);
+	}
+
+	/**
+	 *
+	 * Returns the square of the n-th set bit (counting from the lowest) of a
+	 * bitboard of moves.
+	 *
+	 * @param moves
+	 *            bitboard of legal moves.
+	 * @param n
+	 *            index of the move to pick.
+	 *
+	 * @return square (row * 8 + col) of the chosen move.
+	 */
+	static int randomSquare(long moves, int n) {
+
+		for (int i = 0; i < n; i++) {
+
+			moves &= moves - 1;
+		}
+
+		return Long.numberOfTrailingZeros(moves);
+	}
+}
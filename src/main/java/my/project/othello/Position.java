@@ -0,0 +1,239 @@
+package my.project.othello;
+
+/**
+ *
+ * Mutable game position that is changed in place by making and undoing moves.
+ * Every move pushes only its square and the pieces it flipped onto an undo
+ * stack, so a search thread can walk down a line of play and back on a single
+ * position without creating boards or other objects.
+ * <p>
+ * A position is not safe to share between threads, every search thread keeps
+ * its own.
+ *
+ * @author Aleksandr Popov
+ */
+public final class Position {
+
+	// most plies a game can last, a pass can follow every move
+	private static final int MAX_PLIES = 128;
+
+	private long own;
+	private long opp;
+	private boolean ownIsX;
+
+	// square and flipped pieces of every move made, Move.PASS for a pass
+	private final byte[] moveStack = new byte[MAX_PLIES];
+	private final long[] flipStack = new long[MAX_PLIES];
+	private int ply = 0;
+
+	/**
+	 *
+	 * Constructor for the starting position.
+	 */
+	public Position() {
+
+		this(BitBoard.START_X, BitBoard.START_O, 'X');
+	}
+
+	/**
+	 *
+	 * Constructor for a position from the bitboards of both piece types.
+	 *
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
+	 * @param piece
+	 *            piece type that is next to move.
+	 */
+	public Position(long xBits, long oBits, char piece) {
+
+		set(xBits, oBits, piece);
+	}
+
+	/**
+	 *
+	 * Replaces the position and forgets every move made so far.
+	 *
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
+	 * @param piece
+	 *            piece type that is next to move.
+	 */
+	public void set(long xBits, long oBits, char piece) {
+
+		ownIsX = piece == 'X';
+		own = ownIsX ? xBits : oBits;
+		opp = ownIsX ? oBits : xBits;
+		ply = 0;
+	}
+
+	/**
+	 *
+	 * Makes a move for the piece type that is next to move, after which the
+	 * other piece type is to move. The move must be legal.
+	 *
+	 * @param square
+	 *            square (row * 8 + col) of the move, or Move.PASS to pass.
+	 *
+	 * @return bitboard of the pieces the move flipped.
+	 */
+	public long makeMove(int square) {
+
+		long flipped = 0;
+		long temp = own;
+
+		if (square != Move.PASS) {
+
+			flipped = BitBoard.flips(own, opp, square);
+			temp = own | flipped | (1L << square);
+			opp &= ~flipped;
+		}
+
+		moveStack[ply] = (byte) square;
+		flipStack[ply] = flipped;
+		ply++;
+
+		own = opp;
+		opp = temp;
+		ownIsX = !ownIsX;
+
+		return flipped;
+	}
+
+	/**
+	 *
+	 * Takes back the last move made.
+	 *
+	 * @return square (row * 8 + col) of the move taken back, Move.PASS if it
+	 *         was a pass.
+	 *
+	 * @throws IllegalStateException
+	 *             if no move has been made since the position was set.
+	 */
+	public int undoMove() {
+
+		if (ply == 0) {
+
+			throw new IllegalStateException("No move to undo");
+		}
+
+		ply--;
+
+		int square = moveStack[ply];
+		long temp = opp;
+
+		if (square != Move.PASS) {
+
+			long flipped = flipStack[ply];
+
+			temp = opp & ~(flipped | (1L << square));
+			own |= flipped;
+		}
+
+		opp = own;
+		own = temp;
+		ownIsX = !ownIsX;
+
+		return square;
+	}
+
+	/**
+	 *
+	 * Takes back moves until the position is back at an earlier ply.
+	 *
+	 * @param ply
+	 *            number of moves made since the position was set to go back
+	 *            to, at most getPly().
+	 */
+	public void undoTo(int ply) {
+
+		while (this.ply > ply) {
+
+			undoMove();
+		}
+	}
+
+	/**
+	 *
+	 * Returns the number of moves (passes included) made since the position was
+	 * set.
+	 *
+	 * @return number of moves on the undo stack.
+	 */
+	public int getPly() {
+
+		return ply;
+	}
+
+	/**
+	 *
+	 * Returns the legal moves of the piece type that is next to move.
+	 *
+	 * @return bitboard with a bit set on every square it can move to.
+	 */
+	public long legalMoves() {
+
+		return BitBoard.legalMoves(own, opp);
+	}
+
+	/**
+	 *
+	 * Returns the bitboard of the piece type that is next to move.
+	 *
+	 * @return bitboard of the player to move.
+	 */
+	public long getOwn() {
+
+		return own;
+	}
+
+	/**
+	 *
+	 * Returns the bitboard of the piece type that moved last.
+	 *
+	 * @return bitboard of the other player.
+	 */
+	public long getOpp() {
+
+		return opp;
+	}
+
+	/**
+	 *
+	 * Returns the bitboard of the squares occupied by a piece type.
+	 *
+	 * @param piece
+	 *            piece type whose bitboard is returned.
+	 *
+	 * @return bitboard of the squares occupied by the piece.
+	 */
+	public long getBits(char piece) {
+
+		return (piece == 'X') == ownIsX ? own : opp;
+	}
+
+	/**
+	 *
+	 * Returns the piece type that is next to move.
+	 *
+	 * @return 'X' or 'O'.
+	 */
+	public char getNextMovePiece() {
+
+		return ownIsX ? 'X' : 'O';
+	}
+
+	/**
+	 *
+	 * Returns the piece type of the player that has more pieces on the board.
+	 *
+	 * @return piece type of the player that is ahead, 'T' for a tie.
+	 */
+	public char getWinner() {
+
+		return ownIsX ? Board.getWinner(own, opp) : Board.getWinner(opp, own);
+	}
+}
@@ -34,13 +34,13 @@ public class PseudoPlayer extends Player {
 
 	/**
 	 *
-	 * Implements abstract method defined in Player class, but returns null as
+	 * Implements abstract method defined in Player class, but returns no move as
 	 * this player will not be making any real moves on the real game board.
 	 *
-	 * @return null.
+	 * @return Move.NONE.
 	 */
-	public String getInput() {
+	public int getInput() {
 
-		return null;
+		return Move.NONE;
 	}
 }
@@ -0,0 +1,22 @@
+package my.project.othello;
+
+/**
+ *
+ * Algorithms a RandomSource can generate numbers with. Both are fast, need no
+ * locking and give the same numbers on every machine for the same seed.
+ *
+ * @author Aleksandr Popov
+ */
+public enum RandomGenerator {
+
+	/**
+	 * xoroshiro128++ by David Blackman and Sebastiano Vigna, 128 bits of state.
+	 */
+	XOROSHIRO,
+
+	/**
+	 * SplitMix64, the algorithm behind java.util.SplittableRandom, 64 bits of
+	 * state.
+	 */
+	SPLITMIX
+}
@@ -0,0 +1,232 @@
+package my.project.othello;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Random number generator for the search. Unlike java.util.Random it is not
+ * synchronized, so every thread has to use its own generator, which is what
+ * current returns. A generator can be split into a new one with a seed taken
+ * from its own numbers, so a player can seed all of its search threads from
+ * one seed and play the same moves every time it is given that seed and a
+ * fixed number of simulations.
+ *
+ * @author Aleksandr Popov
+ */
+public abstract class RandomSource {
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	// seeds generators that were not given one, different in every run
+	private static final AtomicLong SEEDER = new AtomicLong(mix(System.nanoTime()));
+
+	private static final ThreadLocal<RandomSource> CURRENT = new ThreadLocal<RandomSource>() {
+
+		@Override
+		protected RandomSource initialValue() {
+
+			return create(RandomGenerator.XOROSHIRO, newSeed());
+		}
+	};
+
+	/**
+	 *
+	 * Creates a generator.
+	 *
+	 * @param generator
+	 *            algorithm of the generator.
+	 * @param seed
+	 *            seed of the generator, the same seed gives the same numbers.
+	 *
+	 * @return the generator.
+	 */
+	public static RandomSource create(RandomGenerator generator, long seed) {
+
+		if (generator == RandomGenerator.SPLITMIX) {
+
+			return new SplitMix(seed);
+		}
+
+		return new Xoroshiro(seed);
+	}
+
+	/**
+	 *
+	 * Returns a seed that is different every time, for generators that do not
+	 * have to be reproducible.
+	 *
+	 * @return new seed.
+	 */
+	public static long newSeed() {
+
+		return mix(SEEDER.getAndAdd(GOLDEN_GAMMA));
+	}
+
+	/**
+	 *
+	 * Returns the generator of the calling thread. A thread that has not been
+	 * given one with setCurrent gets a generator with a new seed.
+	 *
+	 * @return generator of the calling thread.
+	 */
+	public static RandomSource current() {
+
+		return CURRENT.get();
+	}
+
+	/**
+	 *
+	 * Sets the generator the calling thread uses from now on.
+	 *
+	 * @param random
+	 *            generator of the calling thread, which no other thread may
+	 *            use.
+	 */
+	public static void setCurrent(RandomSource random) {
+
+		CURRENT.set(random);
+	}
+
+	/**
+	 *
+	 * Returns the next 64 random bits.
+	 *
+	 * @return random long.
+	 */
+	public abstract long nextLong();
+
+	/**
+	 *
+	 * Creates a new generator of the same algorithm, seeded from this one.
+	 * Splitting the same generator in the same order always gives the same
+	 * generators.
+	 *
+	 * @return new generator.
+	 */
+	public abstract RandomSource split();
+
+	/**
+	 *
+	 * Returns a random int from 0 up to a bound. Multiplies 32 random bits by
+	 * the bound and keeps the upper half, so the common case needs no
+	 * division. The rare draws that would make small results a little more
+	 * likely are drawn again (Lemire's method).
+	 *
+	 * @param bound
+	 *            upper bound (exclusive), must be positive.
+	 *
+	 * @return random int from 0 to bound - 1.
+	 */
+	public int nextInt(int bound) {
+
+		if (bound <= 0) {
+
+			throw new IllegalArgumentException("Bound must be positive: " + bound);
+		}
+
+		long product = (nextLong() >>> 32) * bound;
+
+		if ((product & 0xffffffffL) < bound) {
+
+			long threshold = (0x100000000L - bound) % bound;
+
+			while ((product & 0xffffffffL) < threshold) {
+
+				product = (nextLong() >>> 32) * bound;
+			}
+		}
+
+		return (int) (product >>> 32);
+	}
+
+	/**
+	 *
+	 * Returns a random double from 0 up to 1.
+	 *
+	 * @return random double, 0 inclusive and 1 exclusive.
+	 */
+	public double nextDouble() {
+
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 *
+	 * Scrambles the bits of a long, the output function of SplitMix64.
+	 */
+	static long mix(long z) {
+
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 *
+	 * xoroshiro128++ generator.
+	 */
+	private static final class Xoroshiro extends RandomSource {
+
+		private long s0;
+		private long s1;
+
+		private Xoroshiro(long seed) {
+
+			// expands the seed with SplitMix64, so the state is never all zero
+			s0 = mix(seed += GOLDEN_GAMMA);
+			s1 = mix(seed + GOLDEN_GAMMA);
+
+			if ((s0 | s1) == 0) {
+
+				s1 = GOLDEN_GAMMA;
+			}
+		}
+
+		@Override
+		public long nextLong() {
+
+			long a = s0;
+			long b = s1;
+			long result = Long.rotateLeft(a + b, 17) + a;
+
+			b ^= a;
+			s0 = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+			s1 = Long.rotateLeft(b, 28);
+
+			return result;
+		}
+
+		@Override
+		public RandomSource split() {
+
+			return new Xoroshiro(nextLong());
+		}
+	}
+
+	/**
+	 *
+	 * SplitMix64 generator.
+	 */
+	private static final class SplitMix extends RandomSource {
+
+		private long state;
+
+		private SplitMix(long seed) {
+
+			state = seed;
+		}
+
+		@Override
+		public long nextLong() {
+
+			return mix(state += GOLDEN_GAMMA);
+		}
+
+		@Override
+		public RandomSource split() {
+
+			return new SplitMix(mix(nextLong()));
+		}
+	}
+}
@@ -1,6 +1,12 @@
 package my.project.othello;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.InputMismatchException;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -17,6 +23,14 @@ public class Reversi {
 	private static Scanner keyboard = new Scanner(System.in);
 	private static boolean debug = false;
 	private static int time = -1;
+	private static int threads = 1;
+	private static OpeningBook book = loadBook(Paths.get("othello.book"));
+	private static SearchMode mode = SearchMode.ROOT_PARALLEL;
+	private static boolean pondering = false;
+	private static boolean snapshots = false;
+
+	// files of the computer players that save their search
+	private static List<Path> snapshotFiles = new ArrayList<Path>();
 
 	// sets up the game
 	private static Player introMessage(char piece) {
@@ -59,6 +73,110 @@ public class Reversi {
 					break;
 				}
 
+				while (true) {
+
+					System.out.println("\nHow many threads should the computer search with ("
+							+ Runtime.getRuntime().availableProcessors() + " available)?");
+
+					try {
+
+						threads = keyboard.nextInt();
+						lineClear = keyboard.nextLine();
+					} catch (InputMismatchException mme) {
+
+						lineClear = keyboard.nextLine();
+						System.out.println("Invalid input.");
+						continue;
+					}
+
+					if (threads < 1) {
+
+						System.out.println("Invalid input.");
+						continue;
+					}
+
+					break;
+				}
+
+				// threads can grow their own trees, share one, or share playouts
+				while (threads > 1) {
+
+					System.out.println("\nHow should the threads split the search (root, tree or leaf)?");
+					playerInput = keyboard.nextLine().toLowerCase();
+
+					if (playerInput.equals("root")) {
+
+						mode = SearchMode.ROOT_PARALLEL;
+					}
+
+					else if (playerInput.equals("tree")) {
+
+						mode = SearchMode.TREE_PARALLEL;
+					}
+
+					else if (playerInput.equals("leaf")) {
+
+						mode = SearchMode.LEAF_PARALLEL;
+					}
+
+					else {
+
+						System.out.println("Invalid input.");
+						continue;
+					}
+
+					break;
+				}
+
+				while (true) {
+
+					System.out.println("\nShould the computer keep thinking during its opponent's turn (y/n)?");
+					playerInput = keyboard.nextLine();
+
+					if (playerInput.toLowerCase().equals("y")) {
+
+						pondering = true;
+					}
+
+					else if (playerInput.toLowerCase().equals("n")) {
+
+						pondering = false;
+					}
+
+					else {
+
+						System.out.println("Invalid input.");
+						continue;
+					}
+
+					break;
+				}
+
+				while (true) {
+
+					System.out.println("\nShould the computer save its search after every move, so that a stopped"
+							+ " game can be carried on (y/n)?");
+					playerInput = keyboard.nextLine();
+
+					if (playerInput.toLowerCase().equals("y")) {
+
+						snapshots = true;
+					}
+
+					else if (playerInput.toLowerCase().equals("n")) {
+
+						snapshots = false;
+					}
+
+					else {
+
+						System.out.println("Invalid input.");
+						continue;
+					}
+
+					break;
+				}
+
 				while (true) {
 
 					System.out.println("\nDebug mode (y/n)?");
@@ -83,8 +201,16 @@ public class Reversi {
 					break;
 				}
 
+				if (snapshots) {
+
+					snapshotFiles.add(snapshotFile(piece));
+				}
+
 				System.out.println("");
-				return new MonteCarloPlayer(piece, time, debug);
+				return new MonteCarloPlayer(piece, time, debug,
+						new SearchConfig().setThreads(threads).setMode(mode).setPondering(pondering)
+								.setOpeningBook(book)
+								.setSnapshotFile(snapshots ? snapshotFile(piece) : null));
 			}
 
 			// user has improper input
@@ -95,15 +221,159 @@ public class Reversi {
 		}
 	}
 
-	public static void main(String[] args) {
+	/**
+	 *
+	 * Opens the opening book computer players look up their first moves in.
+	 *
+	 * @param file
+	 *            book file written by OpeningBookBuilder.
+	 *
+	 * @return the book, or null if there is no readable book file.
+	 */
+	private static OpeningBook loadBook(Path file) {
 
-		// reversi board on which the game will be played
-		Board rb = new Board();
+		if (!Files.exists(file)) {
+
+			return null;
+		}
+
+		try {
+			return OpeningBook.open(file);
+		} catch (IOException e) {
+
+			System.out.println("Could not read opening book " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 *
+	 * Returns the file a computer player saves its search to. Each player
+	 * keeps its own file, as players must not share one.
+	 *
+	 * @param piece
+	 *            piece type of the player.
+	 *
+	 * @return snapshot file of the player.
+	 */
+	private static Path snapshotFile(char piece) {
+
+		return Paths.get("othello-" + piece + ".tree");
+	}
+
+	/**
+	 *
+	 * Offers to carry on from the position a computer player saved last, if
+	 * any player saves its search.
+	 *
+	 * @return root of the saved search, or null to start a new game.
+	 */
+	private static Node loadGame() {
+
+		Path newest = null;
+
+		try {
+			for (Path file : snapshotFiles) {
+
+				if (Files.exists(file) && (newest == null
+						|| Files.getLastModifiedTime(file).compareTo(Files.getLastModifiedTime(newest)) > 0)) {
+
+					newest = file;
+				}
+			}
+		} catch (IOException e) {
+
+			System.out.println("Could not read saved game: " + e.getMessage());
+			return null;
+		}
+
+		if (newest == null) {
+
+			return null;
+		}
+
+		while (true) {
+
+			System.out.println("\nCarry on the saved game (y/n)?");
+			playerInput = keyboard.nextLine();
+
+			if (playerInput.toLowerCase().equals("y")) {
+
+				break;
+			}
+
+			else if (playerInput.toLowerCase().equals("n")) {
+
+				return null;
+			}
+
+			else {
+
+				System.out.println("Invalid input.");
+			}
+		}
+
+		try {
+			return TreeSnapshot.read(newest, null).getRoot();
+		} catch (IOException e) {
+
+			System.out.println("Could not read saved game: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 *
+	 * Removes the saved searches of a finished game, which can not be carried
+	 * on.
+	 */
+	private static void deleteSavedGame() {
+
+		for (Path file : snapshotFiles) {
+
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+
+				System.out.println("Could not remove saved game " + file + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 *
+	 * Stops a computer player's background work once the game is over.
+	 *
+	 * @param player
+	 *            player of the finished game.
+	 */
+	private static void shutdown(Player player) {
+
+		if (player instanceof MonteCarloPlayer) {
+
+			((MonteCarloPlayer) player).shutdown();
+		}
+	}
+
+	public static void main(String[] args) {
 
 		// creation of players/game setup
 		Player player1 = introMessage('X');
 		Player player2 = introMessage('O');
 
+		// reversi board on which the game will be played
+		Board rb = new Board();
+		Node saved = loadGame();
+
+		// O moves first in a saved game where X made the last move
+		boolean skipX = false;
+
+		if (saved != null) {
+
+			rb = new Board(saved.getBits('X'), saved.getBits('O'));
+			skipX = saved.getNextMovePiece() == 'O';
+		}
+
 		System.out.println("\nWelcome to Othello! Human players please enters rows first then columns.");
 		System.out.println("Typing q or quit will exit the game.");
 
@@ -111,26 +381,31 @@ public class Reversi {
 		while (true) {
 
 			// analyzes moves player 1 has
-			player1.analyzeMoves(rb.getBoard());
+			player1.analyzeMoves(rb);
+
+			if (skipX) {
+
+				skipX = false;
+			}
 
 			// if player 1 can make a move
-			if (player1.hasMoves()) {
+			else if (player1.hasMoves()) {
 
 				// print board
 				rb.printBoard(player1);
 
 				// get input
-				playerInput = player1.getInput();
+				int move = player1.getInput();
 
 				// update board
-				rb.updateBoard(player1.getPiece(), playerInput, player1.getCoordinates(playerInput));
+				rb.updateBoard(player1.getPiece(), move, player1.getFlips(move));
 
-				player1.clearMap();
+				player1.clearMoves();
 			}
 
 			else {
 
-				player2.analyzeMoves(rb.getBoard());
+				player2.analyzeMoves(rb);
 
 				// player 1 and 2 cannot make any moves (game has ended)
 				if (!player2.hasMoves()) {
@@ -146,7 +421,7 @@ public class Reversi {
 			}
 
 			// analyzes moves player 2 has
-			player2.analyzeMoves(rb.getBoard());
+			player2.analyzeMoves(rb);
 
 			// if player 2 can make a move
 			if (player2.hasMoves()) {
@@ -155,17 +430,17 @@ public class Reversi {
 				rb.printBoard(player2);
 
 				// get input
-				playerInput = player2.getInput();
+				int move = player2.getInput();
 
 				// update board
-				rb.updateBoard(player2.getPiece(), playerInput, player2.getCoordinates(playerInput));
+				rb.updateBoard(player2.getPiece(), move, player2.getFlips(move));
 
-				player2.clearMap();
+				player2.clearMoves();
 			}
 
 			else {
 
-				player1.analyzeMoves(rb.getBoard());
+				player1.analyzeMoves(rb);
 
 				// player 1 and 2 cannot make any moves (game has ended)
 				if (!player1.hasMoves()) {
@@ -181,8 +456,13 @@ public class Reversi {
 			}
 		}
 
+		// stops the computer players, then drops their saved search
+		shutdown(player1);
+		shutdown(player2);
+		deleteSavedGame();
+
 		// gets piece of the player that won the game
-		char winner = Board.getWinner(rb.getBoard());
+		char winner = Board.getWinner(rb.getBits('X'), rb.getBits('O'));
 
 		System.out.println("");
 
@@ -0,0 +1,577 @@
+package my.project.othello;
+
+import java.nio.file.Path;
+
+/**
+ *
+ * Settings that control how a MonteCarloPlayer searches, such as how many
+ * threads it runs simulations on.
+ *
+ * @author Aleksandr Popov
+ */
+public class SearchConfig {
+
+	private int threads = 1;
+	private SearchMode mode = SearchMode.ROOT_PARALLEL;
+	private int batchSize = 16;
+	private int tableSize = 1 << 20;
+	private int poolSize = 1 << 20;
+	private double exploration = Math.sqrt(2);
+	private MovePolicy movePolicy = MovePolicy.ROBUST_CHILD;
+	private boolean pondering = false;
+	private int simulationLimit = 0;
+	private long nodeBudget = 0;
+	private int endgameEmpties = 14;
+	private OpeningBook openingBook = null;
+	private Path snapshotFile = null;
+	private int snapshotDepth = 8;
+	private long seed = 0;
+	private RandomGenerator generator = RandomGenerator.XOROSHIRO;
+
+	/**
+	 *
+	 * Constructor for a SearchConfig object with default settings (a single
+	 * search thread).
+	 */
+	public SearchConfig() {
+
+	}
+
+	/**
+	 *
+	 * Constructor for a SearchConfig object with the same settings as another.
+	 *
+	 * @param other
+	 *            config to copy.
+	 */
+	public SearchConfig(SearchConfig other) {
+
+		threads = other.threads;
+		mode = other.mode;
+		batchSize = other.batchSize;
+		tableSize = other.tableSize;
+		poolSize = other.poolSize;
+		exploration = other.exploration;
+		movePolicy = other.movePolicy;
+		pondering = other.pondering;
+		simulationLimit = other.simulationLimit;
+		nodeBudget = other.nodeBudget;
+		endgameEmpties = other.endgameEmpties;
+		openingBook = other.openingBook;
+		snapshotFile = other.snapshotFile;
+		snapshotDepth = other.snapshotDepth;
+		seed = other.seed;
+		generator = other.generator;
+	}
+
+	/**
+	 *
+	 * Returns the number of threads simulations are run on.
+	 *
+	 * @return number of search threads.
+	 */
+	public int getThreads() {
+
+		return threads;
+	}
+
+	/**
+	 *
+	 * Sets the number of threads simulations are run on. How the threads
+	 * share the work is decided by the search mode.
+	 *
+	 * @param threads
+	 *            number of search threads, at least 1.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setThreads(int threads) {
+
+		if (threads < 1) {
+
+			throw new IllegalArgumentException("Number of threads must be at least 1: " + threads);
+		}
+
+		this.threads = threads;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns how simulations are spread across the search threads.
+	 *
+	 * @return search mode.
+	 */
+	public SearchMode getMode() {
+
+		return mode;
+	}
+
+	/**
+	 *
+	 * Sets how simulations are spread across the search threads. Has no effect
+	 * with a single thread.
+	 *
+	 * @param mode
+	 *            search mode.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setMode(SearchMode mode) {
+
+		this.mode = mode;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns how many playouts are run from each leaf in leaf parallel mode.
+	 *
+	 * @return number of playouts per leaf.
+	 */
+	public int getBatchSize() {
+
+		return batchSize;
+	}
+
+	/**
+	 *
+	 * Sets how many playouts are run from each leaf in leaf parallel mode.
+	 * Larger batches spend less time walking the tree per playout, smaller
+	 * batches grow a deeper tree in the same time.
+	 *
+	 * @param batchSize
+	 *            number of playouts per leaf, at least 1.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setBatchSize(int batchSize) {
+
+		if (batchSize < 1) {
+
+			throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+		}
+
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns how many nodes each transposition table holds.
+	 *
+	 * @return capacity of a transposition table, 0 if transpositions are not
+	 *         shared.
+	 */
+	public int getTableSize() {
+
+		return tableSize;
+	}
+
+	/**
+	 *
+	 * Sets how many nodes each transposition table holds. Positions reached by
+	 * different orders of moves share a node as long as it is still in the
+	 * table.
+	 *
+	 * @param tableSize
+	 *            capacity of a transposition table, rounded up to a power of
+	 *            two, or 0 to give every path its own nodes.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setTableSize(int tableSize) {
+
+		if (tableSize < 0) {
+
+			throw new IllegalArgumentException("Table size must not be negative: " + tableSize);
+		}
+
+		this.tableSize = tableSize;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns how many nodes each node pool holds.
+	 *
+	 * @return capacity of a node pool.
+	 */
+	public int getPoolSize() {
+
+		return poolSize;
+	}
+
+	/**
+	 *
+	 * Sets how many nodes each node pool holds. In root parallel mode every
+	 * thread except the first grows its tree in a node pool of this size,
+	 * allocated once and reused for every move.
+	 *
+	 * @param poolSize
+	 *            capacity of a node pool, at least 1.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setPoolSize(int poolSize) {
+
+		if (poolSize < 1) {
+
+			throw new IllegalArgumentException("Pool size must be at least 1: " + poolSize);
+		}
+
+		this.poolSize = poolSize;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns the exploration constant of the upper confidence bound formula.
+	 *
+	 * @return exploration constant.
+	 */
+	public double getExploration() {
+
+		return exploration;
+	}
+
+	/**
+	 *
+	 * Sets the exploration constant of the upper confidence bound formula.
+	 * Higher values spread simulations over more moves, lower values focus
+	 * them on the moves that are winning so far.
+	 *
+	 * @param exploration
+	 *            exploration constant, not negative.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setExploration(double exploration) {
+
+		if (!(exploration >= 0)) {
+
+			throw new IllegalArgumentException("Exploration constant must not be negative: " + exploration);
+		}
+
+		this.exploration = exploration;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns how the move is picked once time has run out.
+	 *
+	 * @return final move policy.
+	 */
+	public MovePolicy getMovePolicy() {
+
+		return movePolicy;
+	}
+
+	/**
+	 *
+	 * Sets how the move is picked once time has run out.
+	 *
+	 * @param movePolicy
+	 *            final move policy.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setMovePolicy(MovePolicy movePolicy) {
+
+		this.movePolicy = movePolicy;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns whether the player keeps searching during the opponent's turn.
+	 *
+	 * @return true if pondering is on.
+	 */
+	public boolean isPondering() {
+
+		return pondering;
+	}
+
+	/**
+	 *
+	 * Sets whether the player keeps searching during the opponent's turn. The
+	 * search continues below the move the player made, on all search threads,
+	 * until the opponent's reply is passed to analyzeMoves.
+	 *
+	 * @param pondering
+	 *            true to search during the opponent's turn.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setPondering(boolean pondering) {
+
+		this.pondering = pondering;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns the number of simulations each search thread runs per move.
+	 *
+	 * @return simulations per thread, 0 if the search is limited by time.
+	 */
+	public int getSimulationLimit() {
+
+		return simulationLimit;
+	}
+
+	/**
+	 *
+	 * Sets a fixed number of simulations each search thread runs per move. A
+	 * limited search ignores the clock, so it does the same amount of work on
+	 * any machine, which is what benchmarks need.
+	 *
+	 * @param simulationLimit
+	 *            simulations per thread, 0 to search until time runs out.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setSimulationLimit(int simulationLimit) {
+
+		if (simulationLimit < 0) {
+
+			throw new IllegalArgumentException("Simulation limit must not be negative: " + simulationLimit);
+		}
+
+		this.simulationLimit = simulationLimit;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns the most nodes the search tree may hold.
+	 *
+	 * @return node budget, 0 if it is derived from the maximum heap size.
+	 */
+	public long getNodeBudget() {
+
+		return nodeBudget;
+	}
+
+	/**
+	 *
+	 * Sets the most nodes the search tree may hold. Once the tree grows past
+	 * the budget its least simulated subtrees are cut off. A node takes about
+	 * TreePruner.BYTES_PER_NODE bytes of heap.
+	 *
+	 * @param nodeBudget
+	 *            node budget, 0 to use a quarter of the maximum heap size.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setNodeBudget(long nodeBudget) {
+
+		if (nodeBudget != 0 && nodeBudget < 2) {
+
+			throw new IllegalArgumentException("Node budget must be 0 or at least 2: " + nodeBudget);
+		}
+
+		this.nodeBudget = nodeBudget;
+		return this;
+	}
+
+	/**
+	 *
+	 * Sets the node budget from a number of bytes of heap.
+	 *
+	 * @param bytes
+	 *            heap the search tree may use.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setMemoryBudget(long bytes) {
+
+		return setNodeBudget(Math.max(2, bytes / TreePruner.BYTES_PER_NODE));
+	}
+
+	/**
+	 *
+	 * Returns the number of empty squares at which the search is handed over
+	 * to the endgame solver.
+	 *
+	 * @return most empty squares the solver plays from, 0 if it is not used.
+	 */
+	public int getEndgameEmpties() {
+
+		return endgameEmpties;
+	}
+
+	/**
+	 *
+	 * Sets the number of empty squares at which the endgame solver takes over
+	 * from the simulations and plays the rest of the game perfectly. If the
+	 * solver runs out of time, the simulations decide the move after all.
+	 *
+	 * @param endgameEmpties
+	 *            most empty squares the solver plays from, 0 to never use it.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setEndgameEmpties(int endgameEmpties) {
+
+		if (endgameEmpties < 0 || endgameEmpties > 60) {
+
+			throw new IllegalArgumentException("Endgame empties must be between 0 and 60: " + endgameEmpties);
+		}
+
+		this.endgameEmpties = endgameEmpties;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns the opening book moves are looked up in before searching.
+	 *
+	 * @return opening book, null if there is none.
+	 */
+	public OpeningBook getOpeningBook() {
+
+		return openingBook;
+	}
+
+	/**
+	 *
+	 * Sets an opening book to look up moves in before searching. A position in
+	 * the book is played at once with its most simulated move. The book is
+	 * read-only, so several players may share it.
+	 *
+	 * @param openingBook
+	 *            opening book, null to always search.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setOpeningBook(OpeningBook openingBook) {
+
+		this.openingBook = openingBook;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns the file the search tree is saved to after every move.
+	 *
+	 * @return snapshot file, null if the tree is not saved.
+	 */
+	public Path getSnapshotFile() {
+
+		return snapshotFile;
+	}
+
+	/**
+	 *
+	 * Sets a file the search tree is saved to in the background after every
+	 * move. A player created with the file already in place starts from the
+	 * saved tree, so a restarted program keeps the statistics of its earlier
+	 * searches. Players must not share a file.
+	 *
+	 * @param snapshotFile
+	 *            snapshot file, null to never save the tree.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setSnapshotFile(Path snapshotFile) {
+
+		this.snapshotFile = snapshotFile;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns the number of levels of the search tree that are saved.
+	 *
+	 * @return levels below the root that are saved.
+	 */
+	public int getSnapshotDepth() {
+
+		return snapshotDepth;
+	}
+
+	/**
+	 *
+	 * Sets the number of levels of the search tree that are saved. Deeper
+	 * levels hold many more nodes with few simulations each.
+	 *
+	 * @param snapshotDepth
+	 *            levels below the root that are saved.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setSnapshotDepth(int snapshotDepth) {
+
+		if (snapshotDepth < 1) {
+
+			throw new IllegalArgumentException("Snapshot depth must be at least 1: " + snapshotDepth);
+		}
+
+		this.snapshotDepth = snapshotDepth;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns the seed the search threads' random number generators are
+	 * seeded from.
+	 *
+	 * @return seed, 0 if a new one is picked for every player.
+	 */
+	public long getSeed() {
+
+		return seed;
+	}
+
+	/**
+	 *
+	 * Sets the seed the search threads' random number generators are seeded
+	 * from. With a seed and a simulation limit, a player makes the same moves
+	 * every time it is run, with a single thread or with separate trees per
+	 * thread.
+	 *
+	 * @param seed
+	 *            seed, 0 to pick a new one for every player.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setSeed(long seed) {
+
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 *
+	 * Returns the algorithm of the search threads' random number generators.
+	 *
+	 * @return random number generator.
+	 */
+	public RandomGenerator getGenerator() {
+
+		return generator;
+	}
+
+	/**
+	 *
+	 * Sets the algorithm of the search threads' random number generators.
+	 *
+	 * @param generator
+	 *            random number generator.
+	 *
+	 * @return this config.
+	 */
+	public SearchConfig setGenerator(RandomGenerator generator) {
+
+		if (generator == null) {
+
+			throw new IllegalArgumentException("Generator must not be null");
+		}
+
+		this.generator = generator;
+		return this;
+	}
+}
@@ -0,0 +1,533 @@
+package my.project.othello;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ *
+ * Statistics of every search run in the program, such as how many
+ * simulations were run, how deep they went and where their time was spent.
+ * There is one SearchMetrics object per program, readable over JMX and in the
+ * Prometheus text format.
+ * <p>
+ * Search threads record into a Recorder of their own, so the hot loops never
+ * share a cache line or take a lock. Readers add up the recorders of all
+ * threads, which may be a few simulations behind the searching threads. The
+ * recorder of a thread that has ended is added to the retired totals and
+ * dropped, so a program that starts new threads for every game does not keep
+ * one recorder per thread it ever ran. Statistics of whole moves are recorded
+ * once per move and kept under a lock.
+ *
+ * @author Aleksandr Popov
+ */
+public final class SearchMetrics implements SearchMetricsMBean {
+
+	private static final String OBJECT_NAME = "my.project.othello:type=SearchMetrics";
+
+	// number of recent moves the latency percentiles are taken over
+	private static final int LATENCY_WINDOW = 1024;
+
+	// upper bounds of the depth histogram buckets exported to Prometheus
+	private static final int[] DEPTH_BUCKETS = { 1, 2, 4, 8, 16, 32, 64 };
+
+	private static final String[] PHASES = { "selection", "expansion", "rollout", "backprop" };
+
+	// created after the constants above, which sizing the recorders needs
+	private static final SearchMetrics INSTANCE = new SearchMetrics();
+
+	// recorders of live threads, and the totals of the threads that ended,
+	// both guarded by the lock on retired
+	private final List<Recorder> recorders = new ArrayList<Recorder>();
+	private final long[] retired = new long[Recorder.SLOTS];
+
+	private final ThreadLocal<Recorder> recorder = new ThreadLocal<Recorder>() {
+
+		@Override
+		protected Recorder initialValue() {
+
+			Recorder r = new Recorder(Thread.currentThread());
+
+			synchronized (retired) {
+
+				retireDead();
+				recorders.add(r);
+			}
+
+			return r;
+		}
+	};
+
+	private final long[] latencies = new long[LATENCY_WINDOW];
+	private long moves = 0;
+	private long moveNanos = 0;
+	private long reusedSimulations = 0;
+	private long totalReusedSimulations = 0;
+	private double simulationsPerSecond = 0;
+
+	private SearchMetrics() {
+
+	}
+
+	/**
+	 *
+	 * Returns the metrics of the program.
+	 *
+	 * @return the only SearchMetrics object.
+	 */
+	public static SearchMetrics get() {
+
+		return INSTANCE;
+	}
+
+	/**
+	 *
+	 * Returns the recorder of the calling thread.
+	 *
+	 * @return recorder only the calling thread writes to.
+	 */
+	public static Recorder recorder() {
+
+		return INSTANCE.recorder.get();
+	}
+
+	/**
+	 *
+	 * Registers the metrics with the platform MBean server, unless they are
+	 * registered already.
+	 */
+	public static void registerMBean() {
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+
+			if (!server.isRegistered(name)) {
+
+				server.registerMBean(INSTANCE, name);
+			}
+		} catch (JMException jme) {
+
+			throw new IllegalStateException("Could not register " + OBJECT_NAME, jme);
+		}
+	}
+
+	/**
+	 *
+	 * Records a decided move.
+	 *
+	 * @param nanos
+	 *            time (in nanoseconds) taken to decide the move.
+	 * @param simulations
+	 *            simulations run for the move.
+	 * @param reused
+	 *            simulations reused from the previous tree.
+	 */
+	public synchronized void recordMove(long nanos, long simulations, long reused) {
+
+		latencies[(int) (moves % LATENCY_WINDOW)] = nanos;
+		moves++;
+		moveNanos += nanos;
+		reusedSimulations = reused;
+		totalReusedSimulations += reused;
+		simulationsPerSecond = nanos > 0 ? simulations * 1e9 / nanos : 0;
+	}
+
+	public long getSimulations() {
+
+		return sum(Recorder.SIMULATIONS);
+	}
+
+	public long getNodesAllocated() {
+
+		return sum(Recorder.NODES);
+	}
+
+	public long getNodesEvicted() {
+
+		return sum(Recorder.EVICTED);
+	}
+
+	public synchronized long getMoves() {
+
+		return moves;
+	}
+
+	public synchronized double getSimulationsPerSecond() {
+
+		return simulationsPerSecond;
+	}
+
+	public synchronized long getReusedSimulations() {
+
+		return reusedSimulations;
+	}
+
+	public double getMeanDepth() {
+
+		long[] histogram = getDepthHistogram();
+		long count = 0;
+		long total = 0;
+
+		for (int depth = 0; depth < histogram.length; depth++) {
+
+			count += histogram[depth];
+			total += depth * histogram[depth];
+		}
+
+		return count == 0 ? 0 : (double) total / count;
+	}
+
+	public long[] getDepthHistogram() {
+
+		long[] histogram = new long[Recorder.MAX_DEPTH + 1];
+
+		for (int depth = 0; depth < histogram.length; depth++) {
+
+			histogram[depth] = sum(Recorder.DEPTHS + depth);
+		}
+
+		return histogram;
+	}
+
+	public double getSelectionNanos() {
+
+		return phaseNanos(0);
+	}
+
+	public double getExpansionNanos() {
+
+		return phaseNanos(1);
+	}
+
+	public double getRolloutNanos() {
+
+		return phaseNanos(2);
+	}
+
+	public double getBackpropNanos() {
+
+		return phaseNanos(3);
+	}
+
+	public double getMoveMillisP50() {
+
+		return percentile(0.5) / 1e6;
+	}
+
+	public double getMoveMillisP90() {
+
+		return percentile(0.9) / 1e6;
+	}
+
+	public double getMoveMillisP99() {
+
+		return percentile(0.99) / 1e6;
+	}
+
+	/**
+	 *
+	 * Writes every metric in the Prometheus text exposition format.
+	 *
+	 * @return metrics as text that Prometheus can scrape.
+	 */
+	public String toPrometheus() {
+
+		StringBuilder sb = new StringBuilder();
+
+		metric(sb, "othello_simulations_total", "counter", "Simulations run.", getSimulations());
+		metric(sb, "othello_nodes_allocated_total", "counter", "Search tree nodes created.", getNodesAllocated());
+		metric(sb, "othello_nodes_evicted_total", "counter", "Search tree nodes cut off to stay under the budget.",
+				getNodesEvicted());
+
+		long[] histogram = getDepthHistogram();
+		long count = 0;
+		long total = 0;
+		int bucket = 0;
+
+		sb.append("# HELP othello_simulation_depth Nodes on the path of a simulation.\n");
+		sb.append("# TYPE othello_simulation_depth histogram\n");
+
+		for (int depth = 0; depth < histogram.length; depth++) {
+
+			count += histogram[depth];
+			total += depth * histogram[depth];
+
+			if (depth == DEPTH_BUCKETS[bucket]) {
+
+				sb.append("othello_simulation_depth_bucket{le=\"").append(depth).append("\"} ").append(count)
+						.append('\n');
+				bucket++;
+			}
+		}
+
+		sb.append("othello_simulation_depth_bucket{le=\"+Inf\"} ").append(count).append('\n');
+		sb.append("othello_simulation_depth_sum ").append(total).append('\n');
+		sb.append("othello_simulation_depth_count ").append(count).append('\n');
+
+		sb.append("# HELP othello_phase_seconds Time spent in each phase of the sampled simulations.\n");
+		sb.append("# TYPE othello_phase_seconds summary\n");
+
+		long samples = sum(Recorder.SAMPLES);
+
+		for (int phase = 0; phase < PHASES.length; phase++) {
+
+			sb.append("othello_phase_seconds_sum{phase=\"").append(PHASES[phase]).append("\"} ")
+					.append(format(sum(Recorder.PHASE_NANOS + phase) / 1e9)).append('\n');
+			sb.append("othello_phase_seconds_count{phase=\"").append(PHASES[phase]).append("\"} ").append(samples)
+					.append('\n');
+		}
+
+		synchronized (this) {
+
+			metric(sb, "othello_reused_simulations", "gauge", "Simulations reused from the previous tree at the last move.",
+					reusedSimulations);
+			metric(sb, "othello_reused_simulations_total", "counter", "Simulations reused from previous trees.",
+					totalReusedSimulations);
+			metric(sb, "othello_simulations_per_second", "gauge", "Simulations per second during the last move.",
+					simulationsPerSecond);
+
+			sb.append("# HELP othello_move_seconds Time taken to decide a move.\n");
+			sb.append("# TYPE othello_move_seconds summary\n");
+
+			double[] quantiles = { 0.5, 0.9, 0.99 };
+
+			for (double q : quantiles) {
+
+				sb.append("othello_move_seconds{quantile=\"").append(q).append("\"} ")
+						.append(format(percentile(q) / 1e9)).append('\n');
+			}
+
+			sb.append("othello_move_seconds_sum ").append(format(moveNanos / 1e9)).append('\n');
+			sb.append("othello_move_seconds_count ").append(moves).append('\n');
+		}
+
+		return sb.toString();
+	}
+
+	private static void metric(StringBuilder sb, String name, String type, String help, double value) {
+
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		sb.append(name).append(' ').append(format(value)).append('\n');
+	}
+
+	private static String format(double value) {
+
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+
+			return Long.toString((long) value);
+		}
+
+		return String.format(Locale.ROOT, "%.6g", value);
+	}
+
+	/**
+	 *
+	 * Adds up one slot of every thread's recorder.
+	 *
+	 * @param slot
+	 *            index of the slot.
+	 *
+	 * @return sum over all threads.
+	 */
+	private long sum(int slot) {
+
+		synchronized (retired) {
+
+			retireDead();
+
+			long total = retired[slot];
+
+			for (Recorder r : recorders) {
+
+				total += r.slots.get(slot);
+			}
+
+			return total;
+		}
+	}
+
+	/**
+	 *
+	 * Adds the recorders of threads that have ended to the retired totals and
+	 * drops them. A thread that is seen to have ended made all of its updates
+	 * visible, so none of them is lost. Must hold the lock on retired.
+	 */
+	private void retireDead() {
+
+		Iterator<Recorder> it = recorders.iterator();
+
+		while (it.hasNext()) {
+
+			Recorder r = it.next();
+
+			if (!r.owner.isAlive()) {
+
+				for (int slot = 0; slot < Recorder.SLOTS; slot++) {
+
+					retired[slot] += r.slots.get(slot);
+				}
+
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 *
+	 * Returns the average time a sampled simulation spent in one phase.
+	 *
+	 * @param phase
+	 *            index of the phase in PHASES.
+	 *
+	 * @return average time in nanoseconds, 0 before any simulation is sampled.
+	 */
+	private double phaseNanos(int phase) {
+
+		long samples = sum(Recorder.SAMPLES);
+
+		return samples == 0 ? 0 : (double) sum(Recorder.PHASE_NANOS + phase) / samples;
+	}
+
+	/**
+	 *
+	 * Returns a percentile of the time taken by recent moves.
+	 *
+	 * @param q
+	 *            percentile as a fraction.
+	 *
+	 * @return time in nanoseconds, 0 before the first move.
+	 */
+	private synchronized double percentile(double q) {
+
+		int n = (int) Math.min(moves, LATENCY_WINDOW);
+
+		if (n == 0) {
+
+			return 0;
+		}
+
+		long[] sorted = Arrays.copyOf(latencies, n);
+		Arrays.sort(sorted);
+
+		return sorted[Math.min(n - 1, (int) Math.ceil(q * n) - 1)];
+	}
+
+	/**
+	 *
+	 * Counters of a single search thread. Only the owning thread writes to a
+	 * recorder, so every update is a plain ordered store rather than an atomic
+	 * read-modify-write.
+	 */
+	public static final class Recorder {
+
+		private static final int MAX_DEPTH = 64;
+
+		private static final int SIMULATIONS = 0;
+		private static final int NODES = 1;
+		private static final int SAMPLES = 2;
+		private static final int EVICTED = 3;
+		private static final int PHASE_NANOS = 4;
+		private static final int DEPTHS = PHASE_NANOS + PHASES.length;
+		private static final int SLOTS = DEPTHS + MAX_DEPTH + 1;
+
+		private final AtomicLongArray slots = new AtomicLongArray(SLOTS);
+
+		// thread that writes to this recorder
+		private final Thread owner;
+
+		private Recorder(Thread owner) {
+
+			this.owner = owner;
+		}
+
+		private void add(int slot, long n) {
+
+			slots.lazySet(slot, slots.get(slot) + n);
+		}
+
+		/**
+		 *
+		 * Records a finished simulation.
+		 *
+		 * @param depth
+		 *            number of nodes on the path of the simulation.
+		 */
+		public void simulation(int depth) {
+
+			add(SIMULATIONS, 1);
+			add(DEPTHS + Math.min(depth, MAX_DEPTH), 1);
+		}
+
+		/**
+		 *
+		 * Records several simulations that were played out from the same leaf.
+		 *
+		 * @param depth
+		 *            number of nodes on the path to the leaf.
+		 * @param count
+		 *            number of simulations.
+		 */
+		public void simulations(int depth, int count) {
+
+			add(SIMULATIONS, count);
+			add(DEPTHS + Math.min(depth, MAX_DEPTH), count);
+		}
+
+		/**
+		 *
+		 * Records newly created nodes.
+		 *
+		 * @param count
+		 *            number of nodes.
+		 */
+		public void nodes(int count) {
+
+			add(NODES, count);
+		}
+
+		/**
+		 *
+		 * Records nodes cut off a tree to keep it under its budget.
+		 *
+		 * @param count
+		 *            number of nodes.
+		 */
+		public void evicted(long count) {
+
+			add(EVICTED, count);
+		}
+
+		/**
+		 *
+		 * Records how long a sampled simulation spent in each phase.
+		 *
+		 * @param selection
+		 *            time (in nanoseconds) spent selecting nodes.
+		 * @param expansion
+		 *            time (in nanoseconds) spent expanding nodes and creating
+		 *            children.
+		 * @param rollout
+		 *            time (in nanoseconds) spent playing out the game.
+		 * @param backprop
+		 *            time (in nanoseconds) spent updating statistics.
+		 */
+		public void phases(long selection, long expansion, long rollout, long backprop) {
+
+			add(SAMPLES, 1);
+			add(PHASE_NANOS, selection);
+			add(PHASE_NANOS + 1, expansion);
+			add(PHASE_NANOS + 2, rollout);
+			add(PHASE_NANOS + 3, backprop);
+		}
+	}
+}
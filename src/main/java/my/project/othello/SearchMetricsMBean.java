@@ -0,0 +1,108 @@
+package my.project.othello;
+
+/**
+ *
+ * Management interface of SearchMetrics, through which the search statistics
+ * are read over JMX.
+ *
+ * @author Aleksandr Popov
+ */
+public interface SearchMetricsMBean {
+
+	/**
+	 *
+	 * @return simulations run since the program started.
+	 */
+	long getSimulations();
+
+	/**
+	 *
+	 * @return nodes created since the program started, in Node trees and node
+	 *         pools.
+	 */
+	long getNodesAllocated();
+
+	/**
+	 *
+	 * @return nodes cut off search trees to keep them under their budget.
+	 */
+	long getNodesEvicted();
+
+	/**
+	 *
+	 * @return moves decided since the program started.
+	 */
+	long getMoves();
+
+	/**
+	 *
+	 * @return simulations per second during the last move.
+	 */
+	double getSimulationsPerSecond();
+
+	/**
+	 *
+	 * @return simulations reused from the previous tree at the last move.
+	 */
+	long getReusedSimulations();
+
+	/**
+	 *
+	 * @return average number of nodes on the path of a simulation.
+	 */
+	double getMeanDepth();
+
+	/**
+	 *
+	 * @return simulations by the number of nodes on their path, index 0 to 64.
+	 */
+	long[] getDepthHistogram();
+
+	/**
+	 *
+	 * @return average time (in nanoseconds) a simulation spends selecting
+	 *         nodes.
+	 */
+	double getSelectionNanos();
+
+	/**
+	 *
+	 * @return average time (in nanoseconds) a simulation spends expanding
+	 *         nodes and creating children.
+	 */
+	double getExpansionNanos();
+
+	/**
+	 *
+	 * @return average time (in nanoseconds) a simulation spends playing out
+	 *         the game.
+	 */
+	double getRolloutNanos();
+
+	/**
+	 *
+	 * @return average time (in nanoseconds) a simulation spends updating
+	 *         statistics.
+	 */
+	double getBackpropNanos();
+
+	/**
+	 *
+	 * @return median time (in milliseconds) taken to decide a recent move.
+	 */
+	double getMoveMillisP50();
+
+	/**
+	 *
+	 * @return 90th percentile of the time (in milliseconds) taken to decide a
+	 *         recent move.
+	 */
+	double getMoveMillisP90();
+
+	/**
+	 *
+	 * @return 99th percentile of the time (in milliseconds) taken to decide a
+	 *         recent move.
+	 */
+	double getMoveMillisP99();
+}
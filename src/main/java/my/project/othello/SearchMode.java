@@ -0,0 +1,29 @@
+package my.project.othello;
+
+/**
+ *
+ * Ways a MonteCarloPlayer can spread its simulations across several threads.
+ *
+ * @author Aleksandr Popov
+ */
+public enum SearchMode {
+
+	/**
+	 * Every thread grows its own tree from the current game state and the
+	 * statistics of the root moves are merged once time has run out.
+	 */
+	ROOT_PARALLEL,
+
+	/**
+	 * All threads descend and grow one shared tree, using virtual loss to keep
+	 * them on different paths.
+	 */
+	TREE_PARALLEL,
+
+	/**
+	 * One thread grows the tree and every time it reaches a leaf a batch of
+	 * playouts is run from that leaf on all threads, with the combined result
+	 * backpropogated once.
+	 */
+	LEAF_PARALLEL
+}
@@ -0,0 +1,209 @@
+package my.project.othello;
+
+/**
+ *
+ * Decides how long a MonteCarloPlayer may think about each move. Either every
+ * move gets the same fixed budget, or the player is on a game clock (total
+ * time plus an increment per move) and each move's budget is taken from the
+ * time remaining, spread over the moves the player still has to make.
+ * <p>
+ * Every move has a soft and a hard deadline. The search stops at the soft
+ * deadline unless it is unstable, in which case it may keep going until the
+ * hard deadline. The hard deadline always leaves a reserve on the clock, and
+ * all times are measured with System.nanoTime.
+ *
+ * @author Aleksandr Popov
+ */
+public class TimeManager {
+
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	// kept back on a game clock for the time it takes to return a move
+	private static final long RESERVE_NANOS = 50 * NANOS_PER_MILLI;
+
+	// kept back from a fixed budget, at most this much
+	private static final long MAX_MARGIN_NANOS = 10 * NANOS_PER_MILLI;
+
+	private final boolean fixed;
+	private final long moveNanos;
+	private final long incrementNanos;
+	private long remainingNanos;
+
+	private long moveStart;
+	private long softDeadline;
+	private long hardDeadline;
+
+	/**
+	 *
+	 * Constructor for a TimeManager that gives every move the same budget.
+	 *
+	 * @param moveMillis
+	 *            time (in milliseconds) the player has to make each move.
+	 */
+	public TimeManager(long moveMillis) {
+
+		if (moveMillis < 0) {
+
+			throw new IllegalArgumentException("Time per move must not be negative: " + moveMillis);
+		}
+
+		fixed = true;
+		moveNanos = moveMillis * NANOS_PER_MILLI;
+		incrementNanos = 0;
+		remainingNanos = Long.MAX_VALUE;
+	}
+
+	/**
+	 *
+	 * Constructor for a TimeManager that plays on a game clock.
+	 *
+	 * @param totalMillis
+	 *            time (in milliseconds) on the clock at the start of the game.
+	 * @param incrementMillis
+	 *            time (in milliseconds) added to the clock after every move.
+	 */
+	public TimeManager(long totalMillis, long incrementMillis) {
+
+		if (totalMillis < 0 || incrementMillis < 0) {
+
+			throw new IllegalArgumentException("Clock times must not be negative: " + totalMillis + ", "
+					+ incrementMillis);
+		}
+
+		fixed = false;
+		moveNanos = 0;
+		incrementNanos = incrementMillis * NANOS_PER_MILLI;
+		remainingNanos = totalMillis * NANOS_PER_MILLI;
+	}
+
+	/**
+	 *
+	 * Starts the timer for a move and sets its deadlines. Must be called as
+	 * soon as the player is asked for a move, so that everything done before
+	 * the search counts against the budget.
+	 *
+	 * @param emptySquares
+	 *            number of empty squares on the board.
+	 */
+	public void startMove(int emptySquares) {
+
+		moveStart = System.nanoTime();
+
+		if (fixed) {
+
+			long budget = moveNanos - Math.min(moveNanos / 20, MAX_MARGIN_NANOS);
+
+			softDeadline = moveStart + budget;
+			hardDeadline = softDeadline;
+			return;
+		}
+
+		// player makes every other move on the squares that are left
+		long movesLeft = Math.max(1, (emptySquares + 1) / 2);
+		long usable = Math.max(0, remainingNanos - RESERVE_NANOS);
+		long soft = usable / (movesLeft + 1) + incrementNanos * 3 / 4;
+		long hard = Math.min(soft * 3, usable / 3 + incrementNanos);
+
+		soft = Math.min(soft, usable);
+		hard = Math.max(soft, Math.min(hard, usable));
+
+		softDeadline = moveStart + soft;
+		hardDeadline = moveStart + hard;
+	}
+
+	/**
+	 *
+	 * Checks whether the search has to stop.
+	 *
+	 * @param now
+	 *            current value of System.nanoTime.
+	 * @param stable
+	 *            whether the search has settled on a move. Only matters
+	 *            between the soft and the hard deadline.
+	 *
+	 * @return true if the search has to stop.
+	 */
+	public boolean timeUp(long now, boolean stable) {
+
+		if (now - hardDeadline >= 0) {
+
+			return true;
+		}
+
+		return now - softDeadline >= 0 && stable;
+	}
+
+	/**
+	 *
+	 * Returns whether the soft deadline of the current move has passed.
+	 *
+	 * @param now
+	 *            current value of System.nanoTime.
+	 *
+	 * @return true if the soft deadline has passed.
+	 */
+	public boolean pastSoftDeadline(long now) {
+
+		return now - softDeadline >= 0;
+	}
+
+	/**
+	 *
+	 * Returns the time at which a search that has to stop before the soft
+	 * deadline should give up, leaving a share of the move's budget for
+	 * another search to fall back on.
+	 *
+	 * @param share
+	 *            fraction of the time up to the soft deadline to use, between
+	 *            0 and 1.
+	 *
+	 * @return value of System.nanoTime at which to give up.
+	 */
+	public long getDeadline(double share) {
+
+		return moveStart + (long) ((softDeadline - moveStart) * share);
+	}
+
+	/**
+	 *
+	 * Stops the timer for a move and charges the time used to the game clock,
+	 * then adds the increment.
+	 *
+	 * @return time (in milliseconds) used for the move.
+	 */
+	public long endMove() {
+
+		long used = System.nanoTime() - moveStart;
+
+		if (!fixed) {
+
+			remainingNanos = Math.max(0, remainingNanos - used) + incrementNanos;
+		}
+
+		return used / NANOS_PER_MILLI;
+	}
+
+	/**
+	 *
+	 * Returns whether the player is on a game clock rather than a fixed budget
+	 * per move.
+	 *
+	 * @return true if the player is on a game clock.
+	 */
+	public boolean isGameClock() {
+
+		return !fixed;
+	}
+
+	/**
+	 *
+	 * Returns the time left on the game clock.
+	 *
+	 * @return time (in milliseconds) left, meaningless with a fixed budget per
+	 *         move.
+	 */
+	public long getRemainingMillis() {
+
+		return remainingNanos / NANOS_PER_MILLI;
+	}
+}
@@ -0,0 +1,737 @@
+package my.project.othello;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ *
+ * Plays a match between two MonteCarloPlayer configurations without any user
+ * input. Many games run at once, each on its own thread, and every game starts
+ * from one of a set of opening positions. Each opening is played twice with
+ * the colors swapped, so neither configuration profits from an opening that
+ * favors one side.
+ * <p>
+ * After every game the match runs a sequential probability ratio test of
+ * whether the first configuration is elo0 or elo1 stronger than the second,
+ * and stops as soon as the test accepts either one.
+ * <p>
+ * Usage: Tournament [-games n] [-concurrency n] [-ms n] [-plies n] [-elo0 e]
+ * [-elo1 e] [-alpha a] [-beta b] [-first config] [-second config]
+ * [-metrics port], where a config is a comma separated list of key=value
+ * settings with the keys threads, mode, batch, table, pool, exploration,
+ * policy, limit, endgame, seed, generator and book (a file written by
+ * OpeningBookBuilder). With -metrics the search metrics are registered over
+ * JMX and served for Prometheus on the given port while the match runs.
+ *
+ * @author Aleksandr Popov
+ */
+public class Tournament {
+
+	// fixed seed so every match plays the openings in the same order
+	private static final long OPENING_SEED = 0x0be11a5L;
+
+	// the test's normal approximation is poor for a handful of games
+	private static final int MIN_GAMES = 20;
+
+	private final SearchConfig first;
+	private final SearchConfig second;
+	private final long moveMillis;
+	private final List<Opening> openings;
+	private double elo0 = 0;
+	private double elo1 = 10;
+	private double alpha = 0.05;
+	private double beta = 0.05;
+	private volatile boolean stopped = false;
+
+	// memory each player's tree may fill when its config sets no budget
+	private long playerMemory = 0;
+
+	/**
+	 *
+	 * Constructor for a Tournament object.
+	 *
+	 * @param first
+	 *            search settings of the first player.
+	 * @param second
+	 *            search settings of the second player.
+	 * @param moveMillis
+	 *            time (in milliseconds) each player has to make a move.
+	 * @param openingPlies
+	 *            number of moves made to reach the opening positions.
+	 */
+	public Tournament(SearchConfig first, SearchConfig second, long moveMillis, int openingPlies) {
+
+		if (moveMillis < 1) {
+
+			throw new IllegalArgumentException("Time per move must be at least 1 ms: " + moveMillis);
+		}
+
+		this.first = first;
+		this.second = second;
+		this.moveMillis = moveMillis;
+		this.openings = openings(openingPlies);
+	}
+
+	/**
+	 *
+	 * Sets the hypotheses and error rates of the sequential probability ratio
+	 * test.
+	 *
+	 * @param elo0
+	 *            Elo difference under the null hypothesis.
+	 * @param elo1
+	 *            Elo difference under the alternative hypothesis, greater than
+	 *            elo0.
+	 * @param alpha
+	 *            chance of accepting the alternative hypothesis when the null
+	 *            hypothesis holds.
+	 * @param beta
+	 *            chance of accepting the null hypothesis when the alternative
+	 *            hypothesis holds.
+	 */
+	public void setTest(double elo0, double elo1, double alpha, double beta) {
+
+		if (elo1 <= elo0) {
+
+			throw new IllegalArgumentException("elo1 must be greater than elo0: " + elo0 + ", " + elo1);
+		}
+
+		if (alpha <= 0 || alpha >= 0.5 || beta <= 0 || beta >= 0.5) {
+
+			throw new IllegalArgumentException("Error rates must be between 0 and 0.5: " + alpha + ", " + beta);
+		}
+
+		this.elo0 = elo0;
+		this.elo1 = elo1;
+		this.alpha = alpha;
+		this.beta = beta;
+	}
+
+	/**
+	 *
+	 * Returns the number of distinct opening positions games start from.
+	 *
+	 * @return number of openings.
+	 */
+	public int getOpeningCount() {
+
+		return openings.size();
+	}
+
+	/**
+	 *
+	 * Plays the match and prints the standing every few games.
+	 *
+	 * @param maxGames
+	 *            number of games played if the test never comes to a decision.
+	 * @param concurrency
+	 *            number of games played at once.
+	 *
+	 * @return results of the games that were played.
+	 */
+	public MatchStats run(int maxGames, int concurrency) {
+
+		if (maxGames < 1 || concurrency < 1) {
+
+			throw new IllegalArgumentException("Games and concurrency must be at least 1: " + maxGames + ", "
+					+ concurrency);
+		}
+
+		double lower = Math.log(beta / (1 - alpha));
+		double upper = Math.log((1 - beta) / alpha);
+		int reportInterval = Math.max(10, concurrency);
+		MatchStats stats = new MatchStats();
+		ExecutorService games = Executors.newFixedThreadPool(concurrency);
+		CompletionService<char[]> results = new ExecutorCompletionService<char[]>(games);
+
+		stopped = false;
+
+		// both players of every running game share a quarter of the heap
+		playerMemory = Runtime.getRuntime().maxMemory() / 4 / (2L * concurrency);
+
+		for (int i = 0; i < maxGames; i++) {
+
+			results.submit(gameTask(i));
+		}
+
+		try {
+			for (int i = 0; i < maxGames; i++) {
+
+				char[] result = results.take().get();
+
+				stats.add(result[0], result[1]);
+				double llr = stats.getLlr(elo0, elo1);
+
+				if (stats.getGames() >= MIN_GAMES && (llr <= lower || llr >= upper)) {
+
+					stopped = true;
+				}
+
+				if (stopped || stats.getGames() % reportInterval == 0 || stats.getGames() == maxGames) {
+
+					printStanding(stats, llr, lower, upper);
+				}
+
+				if (stopped) {
+
+					break;
+				}
+			}
+		} catch (InterruptedException ie) {
+
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException ee) {
+
+			throw new IllegalStateException("Game failed", ee.getCause());
+		} finally {
+
+			stopped = true;
+			games.shutdownNow();
+		}
+
+		return stats;
+	}
+
+	/**
+	 *
+	 * Creates a task that plays one game of the match. Games come in pairs that
+	 * start from the same opening, with the first player as X in the first
+	 * game of a pair and as O in the second.
+	 *
+	 * @param game
+	 *            number of the game in the match.
+	 *
+	 * @return task that returns the winner and the first player's piece type.
+	 */
+	private Callable<char[]> gameTask(final int game) {
+
+		return new Callable<char[]>() {
+
+			public char[] call() {
+
+				Opening opening = openings.get(game / 2 % openings.size());
+				char firstPiece = game % 2 == 0 ? 'X' : 'O';
+
+				SearchConfig xConfig = gameConfig(firstPiece == 'X' ? first : second, game);
+				SearchConfig oConfig = gameConfig(firstPiece == 'X' ? second : first, game);
+
+				return new char[] { playGame(opening, xConfig, oConfig), firstPiece };
+			}
+		};
+	}
+
+	/**
+	 *
+	 * Returns the search settings of a player in one game. A seeded player gets
+	 * a seed of its own for every game, as games that repeat an opening would
+	 * otherwise be played the same way and counted as separate results. A
+	 * player without a node budget gets its share of the heap.
+	 *
+	 * @param config
+	 *            search settings of the player in the match.
+	 * @param game
+	 *            number of the game in the match.
+	 *
+	 * @return search settings for the game.
+	 */
+	private SearchConfig gameConfig(SearchConfig config, int game) {
+
+		SearchConfig copy = new SearchConfig(config);
+
+		if (config.getSeed() != 0) {
+
+			copy.setSeed(config.getSeed() ^ RandomSource.mix(game + 1));
+		}
+
+		if (config.getNodeBudget() == 0) {
+
+			copy.setMemoryBudget(playerMemory);
+		}
+
+		return copy;
+	}
+
+	/**
+	 *
+	 * Plays a game from an opening position to the end, or until the match is
+	 * stopped.
+	 *
+	 * @param opening
+	 *            position the game starts from.
+	 * @param xConfig
+	 *            search settings of the X player.
+	 * @param oConfig
+	 *            search settings of the O player.
+	 *
+	 * @return piece type of the player that won, 'T' for a tie.
+	 */
+	private char playGame(Opening opening, SearchConfig xConfig, SearchConfig oConfig) {
+
+		MonteCarloPlayer xPlayer = new MonteCarloPlayer('X', new TimeManager(moveMillis), false, xConfig);
+		MonteCarloPlayer oPlayer = new MonteCarloPlayer('O', new TimeManager(moveMillis), false, oConfig);
+		Board board = new Board(opening.xBits, opening.oBits);
+		Player toMove = opening.piece == 'X' ? xPlayer : oPlayer;
+		boolean passed = false;
+
+		xPlayer.setQuiet(true);
+		oPlayer.setQuiet(true);
+
+		try {
+			while (!stopped) {
+
+				toMove.analyzeMoves(board);
+
+				// player to move has to pass
+				if (!toMove.hasMoves()) {
+
+					// neither player can move, game is over
+					if (passed) {
+
+						break;
+					}
+
+					passed = true;
+				}
+
+				else {
+
+					int move = toMove.getInput();
+
+					board.updateBoard(toMove.getPiece(), move, toMove.getFlips(move));
+					passed = false;
+				}
+
+				toMove.clearMoves();
+				toMove = toMove == xPlayer ? oPlayer : xPlayer;
+			}
+		} finally {
+
+			xPlayer.shutdown();
+			oPlayer.shutdown();
+		}
+
+		return Board.getWinner(board.getBits('X'), board.getBits('O'));
+	}
+
+	/**
+	 *
+	 * Prints the results so far, the Elo difference they imply and the state of
+	 * the sequential probability ratio test.
+	 *
+	 * @param stats
+	 *            results so far.
+	 * @param llr
+	 *            current log-likelihood ratio.
+	 * @param lower
+	 *            bound at which the null hypothesis is accepted.
+	 * @param upper
+	 *            bound at which the alternative hypothesis is accepted.
+	 */
+	private static void printStanding(MatchStats stats, double llr, double lower, double upper) {
+
+		System.out.printf("Games %d: +%d =%d -%d  Elo %.1f +/- %.1f  LLR %.2f [%.2f, %.2f]%n", stats.getGames(),
+				stats.getWins(), stats.getDraws(), stats.getLosses(), stats.getElo(), stats.getEloError(), llr,
+				lower, upper);
+	}
+
+	/**
+	 *
+	 * Finds every position reached after a number of moves from the starting
+	 * position. Positions that are mirror images or rotations of each other
+	 * are only kept once, and the positions are shuffled with a fixed seed.
+	 *
+	 * @param plies
+	 *            number of moves to make.
+	 *
+	 * @return distinct opening positions.
+	 */
+	private static List<Opening> openings(int plies) {
+
+		if (plies < 0) {
+
+			throw new IllegalArgumentException("Opening plies must not be negative: " + plies);
+		}
+
+		List<Opening> openings = new ArrayList<Opening>();
+		Set<String> seen = new HashSet<String>();
+
+		addOpenings(BitBoard.START_X, BitBoard.START_O, 'X', plies, false, openings, seen);
+
+		if (openings.isEmpty()) {
+
+			throw new IllegalArgumentException("Every game is over after " + plies + " moves");
+		}
+
+		Collections.shuffle(openings, new Random(OPENING_SEED));
+
+		return openings;
+	}
+
+	/**
+	 *
+	 * Walks every sequence of moves from a position and collects the positions
+	 * at the end of them that are not over yet.
+	 *
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
+	 * @param piece
+	 *            piece type that is next to move.
+	 * @param plies
+	 *            number of moves left to make.
+	 * @param passed
+	 *            whether the move before was a pass.
+	 * @param openings
+	 *            positions collected so far.
+	 * @param seen
+	 *            keys of the positions collected so far and their symmetries.
+	 */
+	private static void addOpenings(long xBits, long oBits, char piece, int plies, boolean passed,
+			List<Opening> openings, Set<String> seen) {
+
+		long own = piece == 'X' ? xBits : oBits;
+		long opp = piece == 'X' ? oBits : xBits;
+		long moves = BitBoard.legalMoves(own, opp);
+		char other = piece == 'X' ? 'O' : 'X';
+
+		if (moves == 0) {
+
+			// game is over
+			if (passed) {
+
+				return;
+			}
+
+			if (plies > 0) {
+
+				addOpenings(xBits, oBits, other, plies - 1, true, openings, seen);
+				return;
+			}
+		}
+
+		if (plies == 0) {
+
+			if (seen.add(key(xBits, oBits, piece))) {
+
+				// marks every symmetry of the position as seen
+				long tx = BitBoard.transpose(xBits);
+				long to = BitBoard.transpose(oBits);
+
+				seen.add(key(tx, to, piece));
+				seen.add(key(BitBoard.rotate(xBits), BitBoard.rotate(oBits), piece));
+				seen.add(key(BitBoard.rotate(tx), BitBoard.rotate(to), piece));
+				openings.add(new Opening(xBits, oBits, piece));
+			}
+
+			return;
+		}
+
+		while (moves != 0) {
+
+			int square = Long.numberOfTrailingZeros(moves);
+			long changed = BitBoard.flips(own, opp, square) | 1L << square;
+			moves &= moves - 1;
+
+			long newOwn = own | changed;
+			long newOpp = opp & ~changed;
+
+			addOpenings(piece == 'X' ? newOwn : newOpp, piece == 'X' ? newOpp : newOwn, other, plies - 1, false,
+					openings, seen);
+		}
+	}
+
+	private static String key(long xBits, long oBits, char piece) {
+
+		return xBits + ":" + oBits + ":" + piece;
+	}
+
+	/**
+	 *
+	 * Position a game of the match starts from.
+	 */
+	private static final class Opening {
+
+		private final long xBits;
+		private final long oBits;
+		private final char piece;
+
+		private Opening(long xBits, long oBits, char piece) {
+
+			this.xBits = xBits;
+			this.oBits = oBits;
+			this.piece = piece;
+		}
+	}
+
+	/**
+	 *
+	 * Builds search settings from a comma separated list of key=value pairs.
+	 *
+	 * @param spec
+	 *            settings such as "threads=2,mode=TREE_PARALLEL".
+	 *
+	 * @return search settings, the defaults for an empty list.
+	 */
+	public static SearchConfig parseConfig(String spec) {
+
+		SearchConfig config = new SearchConfig();
+
+		for (String setting : spec.split(",")) {
+
+			if (setting.trim().isEmpty()) {
+
+				continue;
+			}
+
+			String[] pair = setting.split("=", 2);
+
+			if (pair.length != 2) {
+
+				throw new IllegalArgumentException("Setting must be key=value: " + setting);
+			}
+
+			String key = pair[0].trim();
+			String value = pair[1].trim();
+
+			if (key.equals("threads")) {
+
+				config.setThreads(Integer.parseInt(value));
+			}
+
+			else if (key.equals("mode")) {
+
+				config.setMode(SearchMode.valueOf(value.toUpperCase()));
+			}
+
+			else if (key.equals("batch")) {
+
+				config.setBatchSize(Integer.parseInt(value));
+			}
+
+			else if (key.equals("table")) {
+
+				config.setTableSize(Integer.parseInt(value));
+			}
+
+			else if (key.equals("pool")) {
+
+				config.setPoolSize(Integer.parseInt(value));
+			}
+
+			else if (key.equals("exploration")) {
+
+				config.setExploration(Double.parseDouble(value));
+			}
+
+			else if (key.equals("policy")) {
+
+				config.setMovePolicy(MovePolicy.valueOf(value.toUpperCase()));
+			}
+
+			else if (key.equals("limit")) {
+
+				config.setSimulationLimit(Integer.parseInt(value));
+			}
+
+			else if (key.equals("endgame")) {
+
+				config.setEndgameEmpties(Integer.parseInt(value));
+			}
+
+			else if (key.equals("seed")) {
+
+				config.setSeed(Long.parseLong(value));
+			}
+
+			else if (key.equals("generator")) {
+
+				config.setGenerator(RandomGenerator.valueOf(value.toUpperCase()));
+			}
+
+			else if (key.equals("book")) {
+
+				try {
+					config.setOpeningBook(OpeningBook.open(Paths.get(value)));
+				} catch (IOException e) {
+
+					throw new IllegalArgumentException("Can not read opening book: " + value, e);
+				}
+			}
+
+			else {
+
+				throw new IllegalArgumentException("Unknown setting: " + key);
+			}
+		}
+
+		return config;
+	}
+
+	/**
+	 *
+	 * Plays a match with the settings given on the command line and prints
+	 * which hypothesis the test accepted.
+	 *
+	 * @param args
+	 *            pairs of option names and values.
+	 */
+	public static void main(String[] args) {
+
+		int games = 1000;
+		int concurrency = Runtime.getRuntime().availableProcessors();
+		long moveMillis = 100;
+		int plies = 4;
+		int metricsPort = -1;
+		double elo0 = 0;
+		double elo1 = 10;
+		double alpha = 0.05;
+		double beta = 0.05;
+		SearchConfig firstConfig = new SearchConfig();
+		SearchConfig secondConfig = new SearchConfig();
+
+		try {
+			if (args.length % 2 != 0) {
+
+				throw new IllegalArgumentException("Missing value for " + args[args.length - 1]);
+			}
+
+			for (int i = 0; i < args.length; i += 2) {
+
+				String option = args[i];
+				String value = args[i + 1];
+
+				if (option.equals("-games")) {
+
+					games = Integer.parseInt(value);
+				}
+
+				else if (option.equals("-concurrency")) {
+
+					concurrency = Integer.parseInt(value);
+				}
+
+				else if (option.equals("-ms")) {
+
+					moveMillis = Long.parseLong(value);
+				}
+
+				else if (option.equals("-plies")) {
+
+					plies = Integer.parseInt(value);
+				}
+
+				else if (option.equals("-elo0")) {
+
+					elo0 = Double.parseDouble(value);
+				}
+
+				else if (option.equals("-elo1")) {
+
+					elo1 = Double.parseDouble(value);
+				}
+
+				else if (option.equals("-alpha")) {
+
+					alpha = Double.parseDouble(value);
+				}
+
+				else if (option.equals("-beta")) {
+
+					beta = Double.parseDouble(value);
+				}
+
+				else if (option.equals("-first")) {
+
+					firstConfig = parseConfig(value);
+				}
+
+				else if (option.equals("-second")) {
+
+					secondConfig = parseConfig(value);
+				}
+
+				else if (option.equals("-metrics")) {
+
+					metricsPort = Integer.parseInt(value);
+				}
+
+				else {
+
+					throw new IllegalArgumentException("Unknown option: " + option);
+				}
+			}
+		} catch (IllegalArgumentException iae) {
+
+			System.err.println(iae.getMessage());
+			System.err.println("Usage: Tournament [-games n] [-concurrency n] [-ms n] [-plies n] [-elo0 e] [-elo1 e]"
+					+ " [-alpha a] [-beta b] [-first config] [-second config] [-metrics port]");
+			return;
+		}
+
+		Tournament tournament = new Tournament(firstConfig, secondConfig, moveMillis, plies);
+		tournament.setTest(elo0, elo1, alpha, beta);
+
+		System.out.println("Playing up to " + games + " games, " + concurrency + " at a time, from "
+				+ tournament.getOpeningCount() + " openings with " + moveMillis + " ms per move");
+
+		MetricsEndpoint endpoint = null;
+
+		if (metricsPort >= 0) {
+
+			SearchMetrics.registerMBean();
+
+			try {
+				endpoint = new MetricsEndpoint(metricsPort);
+			} catch (IOException ioe) {
+
+				System.err.println("Could not serve metrics on port " + metricsPort + ": " + ioe.getMessage());
+				return;
+			}
+
+			endpoint.start();
+			System.out.println("Serving metrics at http://localhost:" + endpoint.getPort() + "/metrics");
+		}
+
+		MatchStats stats;
+
+		try {
+			stats = tournament.run(games, concurrency);
+		} finally {
+
+			if (endpoint != null) {
+
+				endpoint.stop();
+			}
+		}
+
+		double llr = stats.getGames() >= MIN_GAMES ? stats.getLlr(elo0, elo1) : 0;
+
+		if (llr >= Math.log((1 - beta) / alpha)) {
+
+			System.out.println("H1 accepted: first is at least " + elo1 + " Elo stronger than second");
+		}
+
+		else if (llr <= Math.log(beta / (1 - alpha))) {
+
+			System.out.println("H0 accepted: first is at most " + elo0 + " Elo stronger than second");
+		}
+
+		else {
+
+			System.out.println("No decision after " + stats.getGames() + " games");
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package my.project.othello;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ *
+ * Bounded table of nodes keyed by the Zobrist hash of their position. When
+ * the child of a move is about to be created, a position that was already
+ * reached through a different order of moves is taken from the table instead
+ * of being created again, so the search tree becomes a graph in which
+ * transposed positions share one node and its statistics.
+ * <p>
+ * Each hash maps to a bucket of two slots. A new node takes an empty slot or
+ * replaces the less simulated of the two, so the table never grows past its
+ * capacity. The table may be used by several search threads at once.
+ *
+ * @author Aleksandr Popov
+ */
+public class TranspositionTable {
+
+	private final AtomicReferenceArray<Node> slots;
+	private final int mask;
+
+	/**
+	 *
+	 * Constructor for a TranspositionTable object.
+	 *
+	 * @param capacity
+	 *            maximum number of nodes the table holds, rounded up to a power
+	 *            of two.
+	 */
+	public TranspositionTable(int capacity) {
+
+		if (capacity < 2) {
+
+			throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity - 1) << 1;
+
+		slots = new AtomicReferenceArray<Node>(size);
+		mask = size - 2;
+	}
+
+	/**
+	 *
+	 * Returns the node stored for a position, if there is one.
+	 *
+	 * @param hash
+	 *            Zobrist hash of the position.
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
+	 *
+	 * @return node for the position, or null if the table does not hold one.
+	 */
+	public Node get(long hash, long xBits, long oBits) {
+
+		int bucket = (int) hash & mask;
+
+		for (int i = bucket; i < bucket + 2; i++) {
+
+			Node node = slots.get(i);
+
+			if (node != null && node.matches(hash, xBits, oBits)) {
+
+				return node;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 *
+	 * Stores a node unless another thread stored a node for the same position
+	 * first, in which case that node is returned instead.
+	 *
+	 * @param node
+	 *            newly created node.
+	 *
+	 * @return node that should be used for the position.
+	 */
+	public Node putIfAbsent(Node node) {
+
+		long hash = node.getHash();
+		int bucket = (int) hash & mask;
+
+		while (true) {
+
+			Node first = slots.get(bucket);
+			Node second = slots.get(bucket + 1);
+
+			if (first != null && first.matches(hash, node.getBits('X'), node.getBits('O'))) {
+
+				return first;
+			}
+
+			if (second != null && second.matches(hash, node.getBits('X'), node.getBits('O'))) {
+
+				return second;
+			}
+
+			// replaces the less simulated entry of the bucket
+			int slot = bucket;
+			Node replaced = first;
+
+			if (first != null && (second == null || second.getSimulations() < first.getSimulations())) {
+
+				slot = bucket + 1;
+				replaced = second;
+			}
+
+			if (slots.compareAndSet(slot, replaced, node)) {
+
+				return node;
+			}
+		}
+	}
+
+	/**
+	 *
+	 * Removes every node from the table.
+	 */
+	public void clear() {
+
+		for (int i = 0; i < slots.length(); i++) {
+
+			slots.set(i, null);
+		}
+	}
+}
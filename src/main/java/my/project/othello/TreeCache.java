@@ -0,0 +1,246 @@
+package my.project.othello;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Keeps the search trees of recent searches by the Zobrist hash of their
+ * positions, so that a search of a position that was searched before, or of
+ * a position a few moves after it, carries on from the earlier tree instead
+ * of starting from nothing.
+ * <p>
+ * A tree can be found by its root and by every simulated position in the
+ * first levels below it. Taking a tree out of the cache removes all of its
+ * positions, so no two searches ever grow the same tree at once. The cache
+ * holds at most a budget of nodes and drops the oldest trees to stay under
+ * it. It may be used by several threads at once.
+ *
+ * @author Aleksandr Popov
+ */
+public class TreeCache {
+
+	// levels below the root whose positions a tree can be found by
+	private static final int INDEX_DEPTH = 2;
+
+	private final long budget;
+	private final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+
+	// trees in the order they were put in, oldest first
+	private final LinkedHashSet<Tree> trees = new LinkedHashSet<Tree>();
+	private long nodes = 0;
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 *
+	 * Tree in the cache, with the hashes of the positions it can be found by.
+	 */
+	private static final class Tree {
+
+		private final long nodes;
+		private final List<Long> hashes = new ArrayList<Long>();
+
+		private Tree(long nodes) {
+
+			this.nodes = nodes;
+		}
+	}
+
+	/**
+	 *
+	 * Node of a position that a tree can be found by.
+	 */
+	private static final class Entry {
+
+		private final Node node;
+		private final Tree tree;
+
+		private Entry(Node node, Tree tree) {
+
+			this.node = node;
+			this.tree = tree;
+		}
+	}
+
+	/**
+	 *
+	 * Constructor for a TreeCache object.
+	 *
+	 * @param budget
+	 *            most nodes the trees in the cache may hold together.
+	 */
+	public TreeCache(long budget) {
+
+		if (budget < 1) {
+
+			throw new IllegalArgumentException("Node budget must be at least 1: " + budget);
+		}
+
+		this.budget = budget;
+	}
+
+	/**
+	 *
+	 * Takes the tree that holds a position out of the cache.
+	 *
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
+	 * @param piece
+	 *            piece type that is next to move.
+	 *
+	 * @return node of the position, with the statistics and the subtree of the
+	 *         earlier search, or null if no tree in the cache holds it.
+	 */
+	public synchronized Node take(long xBits, long oBits, char piece) {
+
+		long hash = Zobrist.hash(xBits, oBits, piece);
+		Entry entry = entries.get(hash);
+
+		if (entry == null || !entry.node.matches(hash, xBits, oBits) || entry.node.getNextMovePiece() != piece) {
+
+			misses++;
+			return null;
+		}
+
+		hits++;
+		remove(entry.tree);
+
+		return entry.node;
+	}
+
+	/**
+	 *
+	 * Puts a tree into the cache, dropping the oldest trees if the cache is
+	 * then over budget. A tree larger than the whole budget is not kept.
+	 *
+	 * @param root
+	 *            root of the tree.
+	 * @param treeNodes
+	 *            number of nodes in the tree, or more.
+	 */
+	public synchronized void put(Node root, long treeNodes) {
+
+		if (treeNodes > budget) {
+
+			return;
+		}
+
+		Tree tree = new Tree(treeNodes);
+
+		index(root, tree, INDEX_DEPTH);
+		trees.add(tree);
+		nodes += treeNodes;
+
+		Iterator<Tree> oldest = trees.iterator();
+
+		while (nodes > budget) {
+
+			Tree dropped = oldest.next();
+
+			oldest.remove();
+			forget(dropped);
+		}
+	}
+
+	/**
+	 *
+	 * Makes a node and the simulated nodes a few levels below it findable. A
+	 * position that is also held by another tree is found in the newer one.
+	 */
+	private void index(Node node, Tree tree, int depth) {
+
+		entries.put(node.getHash(), new Entry(node, tree));
+		tree.hashes.add(node.getHash());
+
+		if (depth == 0) {
+
+			return;
+		}
+
+		for (int i = 0; i < node.getChildCount(); i++) {
+
+			Node child = node.getChildAt(i);
+
+			if (child != null && child.getSimulations() > 0) {
+
+				index(child, tree, depth - 1);
+			}
+		}
+	}
+
+	private void remove(Tree tree) {
+
+		trees.remove(tree);
+		forget(tree);
+	}
+
+	/**
+	 *
+	 * Removes the positions of a tree that is no longer in the list of trees.
+	 */
+	private void forget(Tree tree) {
+
+		for (Long hash : tree.hashes) {
+
+			Entry entry = entries.get(hash);
+
+			if (entry != null && entry.tree == tree) {
+
+				entries.remove(hash);
+			}
+		}
+
+		nodes -= tree.nodes;
+	}
+
+	/**
+	 *
+	 * Returns the number of trees in the cache.
+	 *
+	 * @return number of trees.
+	 */
+	public synchronized int getTrees() {
+
+		return trees.size();
+	}
+
+	/**
+	 *
+	 * Returns the number of nodes the trees in the cache hold together.
+	 *
+	 * @return number of nodes, or more.
+	 */
+	public synchronized long getNodes() {
+
+		return nodes;
+	}
+
+	/**
+	 *
+	 * Returns the number of positions that were found in the cache.
+	 *
+	 * @return number of hits.
+	 */
+	public synchronized long getHits() {
+
+		return hits;
+	}
+
+	/**
+	 *
+	 * Returns the number of positions that were not found in the cache.
+	 *
+	 * @return number of misses.
+	 */
+	public synchronized long getMisses() {
+
+		return misses;
+	}
+}
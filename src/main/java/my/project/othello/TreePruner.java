@@ -0,0 +1,302 @@
+package my.project.othello;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Keeps a search tree of Node objects under a budget of nodes. The search
+ * reports every node it creates, and once the tree holds more nodes than the
+ * budget allows, the least simulated subtrees are cut off until the tree is
+ * back down to three quarters of the budget. The nodes at the top of a cut
+ * subtree keep their statistics and grow new children if the search comes
+ * back to them, so the search carries on instead of running out of memory.
+ * <p>
+ * The number of nodes is an upper bound between prunes: nodes dropped when
+ * the tree is re-rooted are only noticed by the next prune, which counts the
+ * tree exactly. Only one thread prunes at a time, the others keep searching.
+ *
+ * @author Aleksandr Popov
+ */
+public class TreePruner {
+
+	// rough size of a node with its share of a child list
+	public static final long BYTES_PER_NODE = 104;
+
+	// most rounds of cutting in one prune, each round cuts deeper
+	private static final int MAX_ROUNDS = 4;
+
+	// numbers of the passes of every pruner, so that a tree handed from one
+	// player to another never looks visited already
+	private static final AtomicInteger PASSES = new AtomicInteger();
+
+	private final long budget;
+	private final long target;
+	private final AtomicLong nodes = new AtomicLong();
+	private final AtomicLong evicted = new AtomicLong();
+	private final AtomicBoolean pruning = new AtomicBoolean();
+	private int pass = 0;
+
+	// scratch space of the prune, one entry per generated node
+	private long[] entries = new long[1024];
+	private int numEntries;
+
+	/**
+	 *
+	 * Constructor for a TreePruner object.
+	 *
+	 * @param budget
+	 *            most nodes the tree may hold.
+	 */
+	public TreePruner(long budget) {
+
+		if (budget < 2) {
+
+			throw new IllegalArgumentException("Node budget must be at least 2: " + budget);
+		}
+
+		this.budget = budget;
+		this.target = budget - budget / 4;
+	}
+
+	/**
+	 *
+	 * Starts counting a new tree that only holds its root.
+	 */
+	public void newTree() {
+
+		nodes.set(1);
+	}
+
+	/**
+	 *
+	 * Counts nodes added to the tree.
+	 *
+	 * @param count
+	 *            number of nodes created.
+	 *
+	 * @return true if the tree is over budget.
+	 */
+	public boolean created(int count) {
+
+		return nodes.addAndGet(count) > budget;
+	}
+
+	/**
+	 *
+	 * Returns the number of nodes in the tree, or more if nodes were dropped
+	 * since the last prune.
+	 *
+	 * @return number of nodes.
+	 */
+	public long getNodes() {
+
+		return nodes.get();
+	}
+
+	/**
+	 *
+	 * Returns the number of nodes cut off the tree so far.
+	 *
+	 * @return number of evicted nodes.
+	 */
+	public long getEvicted() {
+
+		return evicted.get();
+	}
+
+	/**
+	 *
+	 * Cuts off the least simulated subtrees until the tree holds no more than
+	 * three quarters of the budget. Returns at once if another thread is
+	 * pruning already.
+	 *
+	 * @param root
+	 *            root of the tree, which is never cut off.
+	 * @param table
+	 *            transposition table of the tree, or null. It is cleared so
+	 *            that it does not keep cut off nodes alive.
+	 *
+	 * @return number of nodes cut off.
+	 */
+	public long prune(Node root, TranspositionTable table) {
+
+		if (!pruning.compareAndSet(false, true)) {
+
+			return 0;
+		}
+
+		try {
+			long before = nodes.get();
+			long counted = count(root);
+			long size = counted;
+
+			for (int round = 0; round < MAX_ROUNDS && size > target; round++) {
+
+				size = cut(root, threshold(size - target));
+			}
+
+			if (size < counted && table != null) {
+
+				table.clear();
+			}
+
+			// keeps nodes that other threads created during the prune
+			nodes.addAndGet(size - before);
+			evicted.addAndGet(counted - size);
+			SearchMetrics.recorder().evicted(counted - size);
+
+			return counted - size;
+		} finally {
+
+			pruning.set(false);
+		}
+	}
+
+	/**
+	 *
+	 * Counts the nodes of the tree and records the simulations and number of
+	 * children of every node below the root that has children.
+	 *
+	 * @param root
+	 *            root of the tree.
+	 *
+	 * @return number of nodes.
+	 */
+	private long count(Node root) {
+
+		numEntries = 0;
+		pass = PASSES.incrementAndGet();
+
+		return visit(root, root, -1);
+	}
+
+	/**
+	 *
+	 * Cuts off the children of every node below the root with fewer
+	 * simulations than a threshold, and counts the nodes that are left.
+	 *
+	 * @param root
+	 *            root of the tree.
+	 * @param threshold
+	 *            nodes with fewer simulations than this lose their children.
+	 *
+	 * @return number of nodes left.
+	 */
+	private long cut(Node root, long threshold) {
+
+		numEntries = 0;
+		pass = PASSES.incrementAndGet();
+
+		return visit(root, root, threshold);
+	}
+
+	/**
+	 *
+	 * Visits every node below a node once, either recording it or cutting it
+	 * off.
+	 *
+	 * @param node
+	 *            node to visit.
+	 * @param root
+	 *            root of the tree.
+	 * @param threshold
+	 *            nodes with fewer simulations than this lose their children,
+	 *            -1 to only record nodes.
+	 *
+	 * @return number of nodes visited.
+	 */
+	private long visit(Node node, Node root, long threshold) {
+
+		if (!node.mark(pass)) {
+
+			return 0;
+		}
+
+		int count = node.getChildCount();
+		int created = 0;
+
+		for (int i = 0; i < count; i++) {
+
+			if (node.getChildAt(i) != null) {
+
+				created++;
+			}
+		}
+
+		if (created == 0) {
+
+			return 1;
+		}
+
+		if (node != root) {
+
+			if (node.getSimulations() < threshold && node.collapse()) {
+
+				return 1;
+			}
+
+			record(node.getSimulations(), created);
+		}
+
+		long visited = 1;
+
+		for (int i = 0; i < count; i++) {
+
+			Node child = node.getChildAt(i);
+
+			// moves no simulation has gone through have no child
+			if (child != null) {
+
+				visited += visit(child, root, threshold);
+			}
+		}
+
+		return visited;
+	}
+
+	private void record(long simulations, int children) {
+
+		if (numEntries == entries.length) {
+
+			entries = Arrays.copyOf(entries, numEntries * 2);
+		}
+
+		// sorts by simulations, then by number of children
+		entries[numEntries++] = simulations << 8 | children;
+	}
+
+	/**
+	 *
+	 * Picks the number of simulations below which nodes lose their children,
+	 * so that the children of the nodes below it add up to the excess. Cutting
+	 * a node also removes the nodes under its children, but nested cuts are
+	 * counted twice, so the threshold may not free enough and is raised in the
+	 * next round.
+	 *
+	 * @param excess
+	 *            number of nodes to cut off.
+	 *
+	 * @return simulation threshold.
+	 */
+	private long threshold(long excess) {
+
+		Arrays.sort(entries, 0, numEntries);
+
+		long freed = 0;
+
+		for (int i = 0; i < numEntries; i++) {
+
+			freed += entries[i] & 0xff;
+
+			if (freed >= excess) {
+
+				return (entries[i] >>> 8) + 1;
+			}
+		}
+
+		return Long.MAX_VALUE;
+	}
+}
@@ -0,0 +1,264 @@
+package my.project.othello;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ *
+ * Saves the top levels of a search tree to a file and grows the tree again
+ * from it, so that the statistics of a search survive a restart of the
+ * program.
+ * <p>
+ * Only the root's position is stored in full. Every other node is stored as
+ * the square of the move that leads to it (Move.PASS for a pass), its
+ * simulations and wins, and the number of its children that follow, in depth
+ * first order. Children that were never simulated are left out, as the search
+ * creates them again at no cost. A node shared by several parents through
+ * the transposition table is written with its subtree once, later copies
+ * only hold its statistics.
+ *
+ * @author Aleksandr Popov
+ */
+public final class TreeSnapshot {
+
+	// "OTS1"
+	private static final int MAGIC = 0x4f545331;
+
+	private final Node root;
+	private final long nodes;
+
+	private TreeSnapshot(Node root, long nodes) {
+
+		this.root = root;
+		this.nodes = nodes;
+	}
+
+	/**
+	 *
+	 * Returns the root of the tree that was read.
+	 *
+	 * @return root node.
+	 */
+	public Node getRoot() {
+
+		return root;
+	}
+
+	/**
+	 *
+	 * Returns the number of nodes created while reading the tree.
+	 *
+	 * @return number of nodes.
+	 */
+	public long getNodes() {
+
+		return nodes;
+	}
+
+	/**
+	 *
+	 * Writes the top levels of a tree to a file. The tree may be searched by
+	 * other threads while it is written, in which case the statistics are
+	 * taken at slightly different times. The file is written next to its final
+	 * location and then moved into place, so a crash never leaves a half
+	 * written file behind.
+	 *
+	 * @param root
+	 *            root of the tree.
+	 * @param depth
+	 *            number of levels below the root to write.
+	 * @param file
+	 *            file to write.
+	 *
+	 * @return number of nodes written.
+	 *
+	 * @throws IOException
+	 *             if the file can not be written.
+	 */
+	public static long write(Node root, int depth, Path file) throws IOException {
+
+		Path absolute = file.toAbsolutePath();
+		Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+			long nodes;
+
+			try {
+				out.writeInt(MAGIC);
+				out.writeLong(root.getBits('X'));
+				out.writeLong(root.getBits('O'));
+				out.writeByte(root.getNextMovePiece());
+
+				nodes = writeNode(out, root, depth, Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>()));
+			} finally {
+
+				out.close();
+			}
+
+			try {
+				Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+
+				Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			return nodes;
+		} finally {
+
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 *
+	 * Writes the statistics of a node followed by its simulated children.
+	 *
+	 * @param out
+	 *            stream to write to.
+	 * @param node
+	 *            node to write.
+	 * @param depth
+	 *            number of levels below the node to write.
+	 * @param written
+	 *            nodes whose children were written already.
+	 *
+	 * @return number of nodes written.
+	 */
+	private static long writeNode(DataOutputStream out, Node node, int depth, Set<Node> written)
+			throws IOException {
+
+		out.writeInt(node.getSimulations());
+		out.writeInt(node.getWins());
+
+		List<Node> simulated = new ArrayList<Node>();
+
+		if (depth > 0 && written.add(node)) {
+
+			for (Node child : node.getChildren()) {
+
+				if (child.getSimulations() > 0) {
+
+					simulated.add(child);
+				}
+			}
+		}
+
+		out.writeByte(simulated.size());
+
+		long nodes = 1;
+
+		for (Node child : simulated) {
+
+			out.writeByte(node.getMoveTo(child));
+			nodes += writeNode(out, child, depth - 1, written);
+		}
+
+		return nodes;
+	}
+
+	/**
+	 *
+	 * Grows a tree from a file written by write.
+	 *
+	 * @param file
+	 *            file to read.
+	 * @param table
+	 *            transposition table the new nodes are added to, or null.
+	 *
+	 * @return the tree that was read.
+	 *
+	 * @throws IOException
+	 *             if the file can not be read or does not hold a tree.
+	 */
+	public static TreeSnapshot read(Path file, TranspositionTable table) throws IOException {
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+
+		try {
+			if (in.readInt() != MAGIC) {
+
+				throw new IOException("Not a search tree: " + file);
+			}
+
+			long xBits = in.readLong();
+			long oBits = in.readLong();
+			char piece = (char) in.readByte();
+
+			if ((xBits & oBits) != 0 || (piece != 'X' && piece != 'O')) {
+
+				throw new IOException("Not a search tree: " + file);
+			}
+
+			Node root = new Node(xBits, oBits, piece, Move.NONE);
+			long[] nodes = new long[] { 1 };
+
+			readNode(in, root, table, nodes);
+
+			return new TreeSnapshot(root, nodes[0]);
+		} finally {
+
+			in.close();
+		}
+	}
+
+	/**
+	 *
+	 * Reads the statistics of a node and grows its children from the file.
+	 *
+	 * @param in
+	 *            stream to read from.
+	 * @param node
+	 *            node the statistics belong to.
+	 * @param table
+	 *            transposition table the new nodes are added to, or null.
+	 * @param nodes
+	 *            number of nodes created so far, in its first element.
+	 */
+	private static void readNode(DataInputStream in, Node node, TranspositionTable table, long[] nodes)
+			throws IOException {
+
+		int simulations = in.readInt();
+		int wins = in.readInt();
+		int children = in.readUnsignedByte();
+
+		// node taken from the table already has the statistics it was saved with
+		if (node.getSimulations() == 0) {
+
+			node.updateStats(wins, simulations);
+		}
+
+		if (children == 0) {
+
+			return;
+		}
+
+		node.expand();
+
+		for (int i = 0; i < children; i++) {
+
+			int move = in.readUnsignedByte();
+			int index = node.indexOf(move);
+
+			if (index < 0) {
+
+				throw new IOException("Search tree holds an illegal move: " + move);
+			}
+
+			nodes[0] += node.addChild(index, table);
+			readNode(in, node.getChildAt(index), table, nodes);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package my.project.othello;
+
+import java.util.Random;
+
+/**
+ *
+ * Zobrist hashing of reversi positions. Every square has a random key for each
+ * piece type and one more key marks that O is to move. A position's hash is
+ * the XOR of the keys of its pieces, so making a move only has to XOR in the
+ * keys of the squares that changed.
+ *
+ * @author Aleksandr Popov
+ */
+public final class Zobrist {
+
+	private static final long[] X_KEYS = new long[64];
+	private static final long[] O_KEYS = new long[64];
+
+	// XOR of both keys of a square, used when a piece is flipped
+	private static final long[] FLIP_KEYS = new long[64];
+
+	private static final long O_TO_MOVE;
+
+	// fixed seed so hashes are the same in every run
+	static {
+
+		Random r = new Random(0x5eed0f07e110L);
+
+		for (int sq = 0; sq < 64; sq++) {
+
+			X_KEYS[sq] = r.nextLong();
+			O_KEYS[sq] = r.nextLong();
+			FLIP_KEYS[sq] = X_KEYS[sq] ^ O_KEYS[sq];
+		}
+
+		O_TO_MOVE = r.nextLong();
+	}
+
+	private Zobrist() {
+
+	}
+
+	/**
+	 *
+	 * Computes the hash of a position from scratch.
+	 *
+	 * @param xBits
+	 *            bitboard of the X pieces.
+	 * @param oBits
+	 *            bitboard of the O pieces.
+	 * @param piece
+	 *            piece type that is next to move.
+	 *
+	 * @return hash of the position.
+	 */
+	public static long hash(long xBits, long oBits, char piece) {
+
+		long hash = piece == 'O' ? O_TO_MOVE : 0;
+
+		while (xBits != 0) {
+
+			hash ^= X_KEYS[Long.numberOfTrailingZeros(xBits)];
+			xBits &= xBits - 1;
+		}
+
+		while (oBits != 0) {
+
+			hash ^= O_KEYS[Long.numberOfTrailingZeros(oBits)];
+			oBits &= oBits - 1;
+		}
+
+		return hash;
+	}
+
+	/**
+	 *
+	 * Updates a hash for a move. The side to move is switched along with the
+	 * pieces.
+	 *
+	 * @param hash
+	 *            hash of the position before the move.
+	 * @param piece
+	 *            piece type that is making the move.
+	 * @param square
+	 *            square (row * 8 + col) the piece is placed on.
+	 * @param flipped
+	 *            bitboard of the pieces flipped by the move.
+	 *
+	 * @return hash of the position after the move.
+	 */
+	public static long move(long hash, char piece, int square, long flipped) {
+
+		hash ^= (piece == 'X' ? X_KEYS[square] : O_KEYS[square]) ^ O_TO_MOVE;
+
+		while (flipped != 0) {
+
+			hash ^= FLIP_KEYS[Long.numberOfTrailingZeros(flipped)];
+			flipped &= flipped - 1;
+		}
+
+		return hash;
+	}
+
+	/**
+	 *
+	 * Updates a hash for a pass, where only the side to move changes.
+	 *
+	 * @param hash
+	 *            hash of the position before the pass.
+	 *
+	 * @return hash of the position after the pass.
+	 */
+	public static long pass(long hash) {
+
+		return hash ^ O_TO_MOVE;
+	}
+}